@@ -33,6 +33,16 @@ public class AuthenticationIdentity {
     private String identityCode;
     private String country;
 
+    public AuthenticationIdentity() {
+    }
+
+    AuthenticationIdentity(AuthenticationIdentity identity) {
+        this.givenName = identity.givenName;
+        this.surName = identity.surName;
+        this.identityCode = identity.identityCode;
+        this.country = identity.country;
+    }
+
     public String getGivenName() {
         return givenName;
     }
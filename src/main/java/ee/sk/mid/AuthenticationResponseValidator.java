@@ -44,16 +44,26 @@ public class AuthenticationResponseValidator {
 
     private static final Logger logger = LoggerFactory.getLogger(AuthenticationResponseValidator.class);
 
+    private final ParsedCertificateCache certificateCache;
+
+    public AuthenticationResponseValidator() {
+        this(null);
+    }
+
+    public AuthenticationResponseValidator(ParsedCertificateCache certificateCache) {
+        this.certificateCache = certificateCache;
+    }
+
     public MobileIdAuthenticationResult validate(MobileIdAuthentication authentication) {
         validateAuthentication(authentication);
         MobileIdAuthenticationResult authenticationResult = new MobileIdAuthenticationResult();
-        AuthenticationIdentity identity = constructAuthenticationIdentity(authentication.getCertificate());
-        authenticationResult.setAuthenticationIdentity(identity);
+        ParsedCertificate parsedCertificate = getParsedCertificate(authentication);
+        authenticationResult.setAuthenticationIdentity(parsedCertificate.getAuthenticationIdentity());
         if (!isResultOk(authentication)) {
             authenticationResult.setValid(false);
             authenticationResult.addError(MobileIdAuthenticationError.INVALID_RESULT);
         }
-        if (!isSignatureValid(authentication)) {
+        if (!isSignatureValid(parsedCertificate, authentication)) {
             authenticationResult.setValid(false);
             authenticationResult.addError(MobileIdAuthenticationError.SIGNATURE_VERIFICATION_FAILURE);
         }
@@ -64,6 +74,16 @@ public class AuthenticationResponseValidator {
         return authenticationResult;
     }
 
+    private ParsedCertificate getParsedCertificate(MobileIdAuthentication authentication) {
+        if (authentication.getParsedCertificate() != null) {
+            return authentication.getParsedCertificate();
+        }
+        if (certificateCache == null) {
+            return new ParsedCertificate(authentication.getCertificate());
+        }
+        return certificateCache.get(authentication.getCertificate());
+    }
+
     private void validateAuthentication(MobileIdAuthentication authentication) throws TechnicalErrorException {
         if (authentication.getCertificate() == null) {
             logger.error("Certificate is not present in the authentication response");
@@ -80,6 +100,10 @@ public class AuthenticationResponseValidator {
     }
 
     AuthenticationIdentity constructAuthenticationIdentity(X509Certificate certificate) throws TechnicalErrorException {
+        return extractAuthenticationIdentity(certificate);
+    }
+
+    static AuthenticationIdentity extractAuthenticationIdentity(X509Certificate certificate) throws TechnicalErrorException {
         AuthenticationIdentity identity = new AuthenticationIdentity();
         try {
             LdapName ln = new LdapName(certificate.getSubjectDN().getName());
@@ -109,7 +133,7 @@ public class AuthenticationResponseValidator {
         }
     }
 
-    private String getIdentityNumber(String serialNumber) {
+    private static String getIdentityNumber(String serialNumber) {
         return serialNumber.replaceAll("^PNO[A-Z][A-Z]-", "");
     }
 
@@ -117,14 +141,13 @@ public class AuthenticationResponseValidator {
         return "OK".equalsIgnoreCase(authentication.getResult());
     }
 
-    private boolean isSignatureValid(MobileIdAuthentication authentication) {
-        PublicKey publicKey = authentication.getCertificate().getPublicKey();
-
+    private boolean isSignatureValid(ParsedCertificate parsedCertificate, MobileIdAuthentication authentication) {
+        PublicKey publicKey = parsedCertificate.getPublicKey();
         switch (publicKey.getAlgorithm()) {
             case "RSA":
                 return verifyWithRSA(publicKey, authentication);
             case "EC":
-                return verifyWithECDSA(publicKey, authentication);
+                return verifyWithECDSA(parsedCertificate.getECPublicKeyParameters(), authentication);
             default:
                 throw new IllegalArgumentException("Unsupported algorithm " + publicKey.getAlgorithm());
         }
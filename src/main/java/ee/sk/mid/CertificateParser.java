@@ -31,10 +31,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
-import java.nio.charset.StandardCharsets;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
+import java.util.Base64;
 
 public class CertificateParser {
 
@@ -42,15 +42,38 @@ public class CertificateParser {
     public static final String BEGIN_CERT = "-----BEGIN CERTIFICATE-----";
     public static final String END_CERT = "-----END CERTIFICATE-----";
 
+    private static final ThreadLocal<CertificateFactory> CERTIFICATE_FACTORY = ThreadLocal.withInitial(CertificateParser::createCertificateFactory);
+
     public static X509Certificate parseX509Certificate(String certificateValue) throws TechnicalErrorException {
+        if (certificateValue == null) {
+            logger.error("Failed to parse X509 certificate: certificate is missing");
+            throw new TechnicalErrorException("Failed to parse X509 certificate: certificate is missing");
+        }
+        byte[] encoded;
+        try {
+            encoded = Base64.getMimeDecoder().decode(certificateValue);
+        } catch (IllegalArgumentException e) {
+            logger.error("Failed to decode X509 certificate of length " + certificateValue.length() + ". Error " + e.getMessage());
+            throw new TechnicalErrorException("Failed to decode X509 certificate of length " + certificateValue.length() + ". Error " + e.getMessage(), e);
+        }
+        return parseX509Certificate(encoded);
+    }
+
+    public static X509Certificate parseX509Certificate(byte[] encoded) throws TechnicalErrorException {
         logger.debug("Parsing X509 certificate");
-        String certificateString = BEGIN_CERT + "\n" + certificateValue + "\n" + END_CERT;
         try {
-            CertificateFactory factory = CertificateFactory.getInstance("X.509");
-            return (X509Certificate) factory.generateCertificate(new ByteArrayInputStream(certificateString.getBytes(StandardCharsets.UTF_8)));
+            return (X509Certificate) CERTIFICATE_FACTORY.get().generateCertificate(new ByteArrayInputStream(encoded));
+        } catch (CertificateException e) {
+            logger.error("Failed to parse X509 certificate of " + encoded.length + " bytes. Error " + e.getMessage());
+            throw new TechnicalErrorException("Failed to parse X509 certificate of " + encoded.length + " bytes. Error " + e.getMessage(), e);
+        }
+    }
+
+    private static CertificateFactory createCertificateFactory() {
+        try {
+            return CertificateFactory.getInstance("X.509");
         } catch (CertificateException e) {
-            logger.error("Failed to parse X509 certificate from " + certificateString + ". Error " + e.getMessage());
-            throw new TechnicalErrorException("Failed to parse X509 certificate from " + certificateString + ". Error " + e.getMessage(), e);
+            throw new TechnicalErrorException("X.509 certificate factory is not available", e);
         }
     }
 }
@@ -40,6 +40,7 @@ public class MobileIdAuthentication implements Serializable {
     private String signatureValueInBase64;
     private String algorithmName;
     private X509Certificate certificate;
+    private transient ParsedCertificate parsedCertificate;
 
     private MobileIdAuthentication(MobileIdAuthenticationBuilder builder) {
         this.result = builder.result;
@@ -48,6 +49,7 @@ public class MobileIdAuthentication implements Serializable {
         this.signatureValueInBase64 = builder.signatureValueInBase64;
         this.algorithmName = builder.algorithmName;
         this.certificate = builder.certificate;
+        this.parsedCertificate = builder.parsedCertificate;
     }
 
     public byte[] getSignatureValue() throws InvalidBase64CharacterException {
@@ -73,6 +75,10 @@ public class MobileIdAuthentication implements Serializable {
         return certificate;
     }
 
+    ParsedCertificate getParsedCertificate() {
+        return parsedCertificate;
+    }
+
     public String getSignedHashInBase64() {
         return signedHashInBase64;
     }
@@ -92,6 +98,7 @@ public class MobileIdAuthentication implements Serializable {
         private String signatureValueInBase64;
         private String algorithmName;
         private X509Certificate certificate;
+        private ParsedCertificate parsedCertificate;
 
         private MobileIdAuthenticationBuilder() {
         }
@@ -123,6 +130,13 @@ public class MobileIdAuthentication implements Serializable {
 
         public MobileIdAuthenticationBuilder withCertificate(X509Certificate certificate) {
             this.certificate = certificate;
+            this.parsedCertificate = null;
+            return this;
+        }
+
+        public MobileIdAuthenticationBuilder withParsedCertificate(ParsedCertificate parsedCertificate) {
+            this.certificate = parsedCertificate.getCertificate();
+            this.parsedCertificate = parsedCertificate;
             return this;
         }
 
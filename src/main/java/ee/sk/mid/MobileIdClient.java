@@ -27,22 +27,43 @@ package ee.sk.mid;
  */
 
 import ee.sk.mid.exception.*;
+import ee.sk.mid.rest.ConnectionPool;
+import ee.sk.mid.rest.ConnectionPoolConfig;
+import ee.sk.mid.rest.ConnectionPoolStats;
+import ee.sk.mid.rest.DaemonThreadFactory;
+import ee.sk.mid.rest.Deadline;
+import ee.sk.mid.rest.MobileIdAsyncConnector;
 import ee.sk.mid.rest.MobileIdConnector;
 import ee.sk.mid.rest.MobileIdRestConnector;
+import ee.sk.mid.rest.PollingStrategy;
+import ee.sk.mid.rest.ScheduledSessionStatusPoller;
 import ee.sk.mid.rest.SessionStatusPoller;
 import ee.sk.mid.rest.dao.SessionSignature;
 import ee.sk.mid.rest.dao.SessionStatus;
+import ee.sk.mid.rest.dao.request.AuthenticationRequest;
+import ee.sk.mid.rest.dao.request.SignatureRequest;
+import ee.sk.mid.rest.dao.response.AuthenticationResponse;
 import ee.sk.mid.rest.dao.response.CertificateChoiceResponse;
+import ee.sk.mid.rest.dao.response.SignatureResponse;
 import org.glassfish.jersey.client.ClientConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.security.cert.X509Certificate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 import static org.apache.commons.lang3.StringUtils.equalsIgnoreCase;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
-public class MobileIdClient {
+public class MobileIdClient implements Closeable {
 
     private static final Logger logger = LoggerFactory.getLogger(MobileIdClient.class);
 
@@ -50,28 +71,232 @@ public class MobileIdClient {
     private String relyingPartyName;
     private String hostUrl;
     private ClientConfig networkConnectionConfig;
+    private ClientConfig sessionStatusNetworkConnectionConfig;
     private int pollingSleepTimeoutSeconds;
+    private int longPollingTimeoutSeconds;
+    private PollingStrategy pollingStrategy;
+    private ConnectionPool connectionPool;
+    private ConnectionPool sessionStatusConnectionPool;
     private MobileIdConnector connector;
+    private MobileIdRestConnector restConnector;
     private SessionStatusPoller sessionStatusPoller;
+    private VirtualThreadExecution virtualThreadExecution;
+    private ScheduledSessionStatusPoller scheduledSessionStatusPoller;
+    private ParsedCertificateCache certificateCache;
+    private AuthenticationResponseValidator authenticationResponseValidator;
+    private Executor asyncExecutor;
+    private volatile ExecutorService ownedAsyncExecutor;
 
     private MobileIdClient(MobileIdClientBuilder builder) {
         this.relyingPartyUUID = builder.relyingPartyUUID;
         this.relyingPartyName = builder.relyingPartyName;
         this.hostUrl = builder.hostUrl;
         this.networkConnectionConfig = builder.networkConnectionConfig;
+        this.sessionStatusNetworkConnectionConfig = builder.sessionStatusNetworkConnectionConfig;
         this.pollingSleepTimeoutSeconds = builder.pollingSleepTimeoutSeconds;
+        this.longPollingTimeoutSeconds = builder.longPollingTimeoutSeconds;
+        this.pollingStrategy = builder.pollingStrategy;
         this.connector = builder.connector;
+        this.certificateCache = builder.certificateCache;
+        this.authenticationResponseValidator = new AuthenticationResponseValidator(certificateCache);
+        this.asyncExecutor = builder.asyncExecutor;
+        if (builder.connectionPoolConfig != null) {
+            this.connectionPool = new ConnectionPool(builder.connectionPoolConfig);
+        }
+        if (builder.sessionStatusConnectionPoolConfig != null) {
+            this.sessionStatusConnectionPool = new ConnectionPool(builder.sessionStatusConnectionPoolConfig);
+        }
+        if (builder.virtualThreadExecutionInstance != null) {
+            this.virtualThreadExecution = builder.virtualThreadExecutionInstance;
+        } else if (builder.virtualThreadExecution) {
+            this.virtualThreadExecution = new VirtualThreadExecution();
+        }
 
         this.createSessionStatusPoller();
     }
 
     public MobileIdConnector getMobileIdConnector() {
         if (null == connector) {
-            this.connector = new MobileIdRestConnector(hostUrl, networkConnectionConfig);
+            this.restConnector = new MobileIdRestConnector(hostUrl, createNetworkConnectionConfig(), createSessionStatusNetworkConnectionConfig(), null);
+            this.connector = restConnector;
         }
         return connector;
     }
 
+    public ConnectionPoolStats getConnectionPoolStats() {
+        return connectionPool == null ? null : connectionPool.getStats();
+    }
+
+    public ConnectionPoolStats getSessionStatusConnectionPoolStats() {
+        return sessionStatusConnectionPool == null ? null : sessionStatusConnectionPool.getStats();
+    }
+
+    public ParsedCertificateCache getCertificateCache() {
+        return certificateCache;
+    }
+
+    public VirtualThreadExecution getVirtualThreadExecution() {
+        return virtualThreadExecution;
+    }
+
+    public CompletableFuture<MobileIdAuthenticationResult> authenticateOnVirtualThread(AuthenticationRequest request) {
+        return authenticateOnVirtualThread(request, Deadline.none());
+    }
+
+    public CompletableFuture<MobileIdAuthenticationResult> authenticateOnVirtualThread(AuthenticationRequest request, Deadline deadline) {
+        return requireVirtualThreadExecution().submit(() -> {
+            AuthenticationResponse response = getMobileIdConnector().authenticate(request, deadline);
+            SessionStatus sessionStatus = sessionStatusPoller.fetchFinalAuthenticationSessionStatus(response.getSessionID(), deadline);
+            return authenticationResponseValidator.validate(
+                    createMobileIdAuthentication(sessionStatus, request.getHash(), request.getHashType()));
+        });
+    }
+
+    public CompletableFuture<MobileIdSignature> signOnVirtualThread(SignatureRequest request) {
+        return signOnVirtualThread(request, Deadline.none());
+    }
+
+    public CompletableFuture<MobileIdSignature> signOnVirtualThread(SignatureRequest request, Deadline deadline) {
+        return requireVirtualThreadExecution().submit(() -> {
+            SignatureResponse response = getMobileIdConnector().sign(request, deadline);
+            SessionStatus sessionStatus = sessionStatusPoller.fetchFinalSignatureSessionStatus(response.getSessionID(), deadline);
+            return createMobileIdSignature(sessionStatus);
+        });
+    }
+
+    private VirtualThreadExecution requireVirtualThreadExecution() {
+        if (virtualThreadExecution == null) {
+            logger.error("Virtual thread execution is not enabled for the client");
+            throw new TechnicalErrorException("Virtual thread execution is not enabled for the client");
+        }
+        return virtualThreadExecution;
+    }
+
+    public synchronized ScheduledSessionStatusPoller getScheduledSessionStatusPoller() {
+        if (scheduledSessionStatusPoller == null) {
+            scheduledSessionStatusPoller = new ScheduledSessionStatusPoller(getMobileIdConnector());
+            scheduledSessionStatusPoller.setPollingSleepTimeoutMillis(TimeUnit.SECONDS.toMillis(pollingSleepTimeoutSeconds));
+            if (pollingStrategy != null) {
+                scheduledSessionStatusPoller.setPollingStrategy(pollingStrategy);
+            }
+        }
+        return scheduledSessionStatusPoller;
+    }
+
+    public CompletableFuture<MobileIdAuthenticationResult> authenticateAsync(AuthenticationRequest request) {
+        return authenticateAsync(request, Deadline.none());
+    }
+
+    public CompletableFuture<MobileIdAuthenticationResult> authenticateAsync(AuthenticationRequest request, Deadline deadline) {
+        MobileIdConnector mobileIdConnector = getMobileIdConnector();
+        CompletableFuture<AuthenticationResponse> initiation = MobileIdAsyncConnector.supportsAsync(mobileIdConnector)
+                ? ((MobileIdAsyncConnector) mobileIdConnector).authenticateAsync(request, deadline)
+                : CompletableFuture.supplyAsync(() -> mobileIdConnector.authenticate(request, deadline), getAsyncExecutor());
+
+        return pollUntilComplete(initiation, AuthenticationResponse::getSessionID, SessionStatusPoller.AUTHENTICATION_SESSION_PATH, deadline,
+                sessionStatus -> authenticationResponseValidator.validate(
+                        createMobileIdAuthentication(sessionStatus, request.getHash(), request.getHashType())));
+    }
+
+    public CompletableFuture<MobileIdSignature> signAsync(SignatureRequest request) {
+        return signAsync(request, Deadline.none());
+    }
+
+    public CompletableFuture<MobileIdSignature> signAsync(SignatureRequest request, Deadline deadline) {
+        MobileIdConnector mobileIdConnector = getMobileIdConnector();
+        CompletableFuture<SignatureResponse> initiation = MobileIdAsyncConnector.supportsAsync(mobileIdConnector)
+                ? ((MobileIdAsyncConnector) mobileIdConnector).signAsync(request, deadline)
+                : CompletableFuture.supplyAsync(() -> mobileIdConnector.sign(request, deadline), getAsyncExecutor());
+
+        return pollUntilComplete(initiation, SignatureResponse::getSessionID, SessionStatusPoller.SIGNATURE_SESSION_PATH, deadline,
+                this::createMobileIdSignature);
+    }
+
+    private synchronized Executor getAsyncExecutor() {
+        if (asyncExecutor == null) {
+            ownedAsyncExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory("mid-async-request"));
+            asyncExecutor = ownedAsyncExecutor;
+        }
+        return asyncExecutor;
+    }
+
+    private <R, T> CompletableFuture<T> pollUntilComplete(CompletableFuture<R> initiation, Function<R, String> sessionId,
+                                                          String path, Deadline deadline, Function<SessionStatus, T> completion) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<?>> currentStage = new AtomicReference<>(initiation);
+
+        initiation
+                .thenCompose(response -> {
+                    CompletableFuture<SessionStatus> polling = getScheduledSessionStatusPoller().fetchFinalSessionStatus(sessionId.apply(response), path, deadline);
+                    currentStage.set(polling);
+                    if (result.isCancelled()) {
+                        polling.cancel(false);
+                    }
+                    return polling;
+                })
+                .thenApply(completion)
+                .whenComplete((value, throwable) -> {
+                    if (throwable != null) {
+                        result.completeExceptionally(unwrap(throwable));
+                    } else {
+                        result.complete(value);
+                    }
+                });
+
+        result.whenComplete((value, throwable) -> {
+            if (result.isCancelled()) {
+                logger.debug("Mobile-ID flow was cancelled");
+                currentStage.get().cancel(false);
+            }
+        });
+        return result;
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+    }
+
+    @Override
+    public void close() {
+        if (scheduledSessionStatusPoller != null) {
+            scheduledSessionStatusPoller.close();
+        }
+        if (virtualThreadExecution != null) {
+            virtualThreadExecution.close();
+        }
+        if (ownedAsyncExecutor != null) {
+            ownedAsyncExecutor.shutdownNow();
+        }
+        if (restConnector != null) {
+            restConnector.close();
+        }
+        if (connectionPool != null) {
+            connectionPool.close();
+        }
+        if (sessionStatusConnectionPool != null) {
+            sessionStatusConnectionPool.close();
+        }
+    }
+
+    private ClientConfig createNetworkConnectionConfig() {
+        if (connectionPool == null) {
+            return networkConnectionConfig;
+        }
+        return connectionPool.configure(networkConnectionConfig);
+    }
+
+    private ClientConfig createSessionStatusNetworkConnectionConfig() {
+        if (sessionStatusConnectionPool == null && sessionStatusNetworkConnectionConfig == null) {
+            return null;
+        }
+        ClientConfig clientConfig = sessionStatusNetworkConnectionConfig != null ? sessionStatusNetworkConnectionConfig : networkConnectionConfig;
+        ConnectionPool pool = sessionStatusConnectionPool != null ? sessionStatusConnectionPool : connectionPool;
+        if (pool == null) {
+            return clientConfig != null ? clientConfig : new ClientConfig();
+        }
+        return pool.configure(clientConfig);
+    }
+
     public SessionStatusPoller getSessionStatusPoller() {
         return sessionStatusPoller;
     }
@@ -89,6 +314,10 @@ public class MobileIdClient {
     private SessionStatusPoller createSessionStatusPoller() {
         SessionStatusPoller sessionStatusPoller = new SessionStatusPoller(this.getMobileIdConnector());
         sessionStatusPoller.setPollingSleepTimeSeconds(pollingSleepTimeoutSeconds);
+        sessionStatusPoller.setLongPollingTimeoutSeconds(longPollingTimeoutSeconds);
+        if (pollingStrategy != null) {
+            sessionStatusPoller.setPollingStrategy(pollingStrategy);
+        }
         this.sessionStatusPoller = sessionStatusPoller;
         return sessionStatusPoller;
     }
@@ -96,7 +325,7 @@ public class MobileIdClient {
     public X509Certificate createMobileIdCertificate(CertificateChoiceResponse certificateChoiceResponse) {
         validateCertificateResult(certificateChoiceResponse.getResult());
         validateCertificateResponse(certificateChoiceResponse);
-        return CertificateParser.parseX509Certificate(certificateChoiceResponse.getCert());
+        return parseCertificate(certificateChoiceResponse.getCert()).getCertificate();
     }
 
     public MobileIdSignature createMobileIdSignature(SessionStatus sessionStatus) {
@@ -112,18 +341,25 @@ public class MobileIdClient {
     public MobileIdAuthentication createMobileIdAuthentication(SessionStatus sessionStatus, String hashInBase64, HashType hashType) {
         validateResponse(sessionStatus);
         SessionSignature sessionSignature = sessionStatus.getSignature();
-        X509Certificate certificate = CertificateParser.parseX509Certificate(sessionStatus.getCert());
+        ParsedCertificate certificate = parseCertificate(sessionStatus.getCert());
 
         return MobileIdAuthentication.newBuilder()
             .withResult(sessionStatus.getResult())
             .withSignatureValueInBase64(sessionSignature.getValue())
             .withAlgorithmName(sessionSignature.getAlgorithm())
-            .withCertificate(certificate)
+            .withParsedCertificate(certificate)
             .withSignedHashInBase64(hashInBase64)
             .withHashType(hashType)
             .build();
     }
 
+    private ParsedCertificate parseCertificate(String certificateInBase64) {
+        if (certificateCache == null) {
+            return new ParsedCertificate(CertificateParser.parseX509Certificate(certificateInBase64));
+        }
+        return certificateCache.get(certificateInBase64);
+    }
+
     private void validateCertificateResult(String result) throws MobileIdException {
         if (equalsIgnoreCase(result, "NOT_FOUND")) {
             logger.error("No certificate for the user was found");
@@ -160,8 +396,17 @@ public class MobileIdClient {
         private String relyingPartyName;
         private String hostUrl;
         private ClientConfig networkConnectionConfig;
+        private ClientConfig sessionStatusNetworkConnectionConfig;
         private int pollingSleepTimeoutSeconds = 1;
+        private int longPollingTimeoutSeconds = 0;
+        private PollingStrategy pollingStrategy;
         private MobileIdConnector connector;
+        private ConnectionPoolConfig connectionPoolConfig;
+        private ConnectionPoolConfig sessionStatusConnectionPoolConfig;
+        private boolean virtualThreadExecution;
+        private VirtualThreadExecution virtualThreadExecutionInstance;
+        private ParsedCertificateCache certificateCache;
+        private Executor asyncExecutor;
 
         private MobileIdClientBuilder() {}
 
@@ -185,11 +430,56 @@ public class MobileIdClient {
             return this;
         }
 
+        public MobileIdClientBuilder withConnectionPoolConfig(ConnectionPoolConfig connectionPoolConfig) {
+            this.connectionPoolConfig = connectionPoolConfig;
+            return this;
+        }
+
+        public MobileIdClientBuilder withSessionStatusNetworkConnectionConfig(ClientConfig sessionStatusNetworkConnectionConfig) {
+            this.sessionStatusNetworkConnectionConfig = sessionStatusNetworkConnectionConfig;
+            return this;
+        }
+
+        public MobileIdClientBuilder withSessionStatusConnectionPoolConfig(ConnectionPoolConfig sessionStatusConnectionPoolConfig) {
+            this.sessionStatusConnectionPoolConfig = sessionStatusConnectionPoolConfig;
+            return this;
+        }
+
         public MobileIdClientBuilder withPollingSleepTimeoutSeconds(int pollingSleepTimeoutSeconds) {
             this.pollingSleepTimeoutSeconds = pollingSleepTimeoutSeconds;
             return this;
         }
 
+        public MobileIdClientBuilder withLongPollingTimeoutSeconds(int longPollingTimeoutSeconds) {
+            this.longPollingTimeoutSeconds = longPollingTimeoutSeconds;
+            return this;
+        }
+
+        public MobileIdClientBuilder withPollingStrategy(PollingStrategy pollingStrategy) {
+            this.pollingStrategy = pollingStrategy;
+            return this;
+        }
+
+        public MobileIdClientBuilder withVirtualThreadExecution(boolean virtualThreadExecution) {
+            this.virtualThreadExecution = virtualThreadExecution;
+            return this;
+        }
+
+        public MobileIdClientBuilder withCertificateCache(ParsedCertificateCache certificateCache) {
+            this.certificateCache = certificateCache;
+            return this;
+        }
+
+        public MobileIdClientBuilder withVirtualThreadExecution(VirtualThreadExecution virtualThreadExecution) {
+            this.virtualThreadExecutionInstance = virtualThreadExecution;
+            return this;
+        }
+
+        public MobileIdClientBuilder withAsyncExecutor(Executor asyncExecutor) {
+            this.asyncExecutor = asyncExecutor;
+            return this;
+        }
+
         public MobileIdClientBuilder withMobileIdConnector(MobileIdConnector mobileIdConnector) {
             this.connector = mobileIdConnector;
             return this;
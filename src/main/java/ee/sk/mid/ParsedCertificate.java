@@ -0,0 +1,71 @@
+package ee.sk.mid;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import org.bouncycastle.crypto.params.ECPublicKeyParameters;
+
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+
+public class ParsedCertificate {
+
+    private final X509Certificate certificate;
+    private final PublicKey publicKey;
+    private volatile AuthenticationIdentity authenticationIdentity;
+    private volatile ECPublicKeyParameters ecPublicKeyParameters;
+
+    ParsedCertificate(X509Certificate certificate) {
+        this.certificate = certificate;
+        this.publicKey = certificate.getPublicKey();
+    }
+
+    public X509Certificate getCertificate() {
+        return certificate;
+    }
+
+    public PublicKey getPublicKey() {
+        return publicKey;
+    }
+
+    public AuthenticationIdentity getAuthenticationIdentity() {
+        AuthenticationIdentity identity = authenticationIdentity;
+        if (identity == null) {
+            identity = AuthenticationResponseValidator.extractAuthenticationIdentity(certificate);
+            authenticationIdentity = identity;
+        }
+        return new AuthenticationIdentity(identity);
+    }
+
+    ECPublicKeyParameters getECPublicKeyParameters() {
+        ECPublicKeyParameters parameters = ecPublicKeyParameters;
+        if (parameters == null) {
+            parameters = SignatureVerifier.toECPublicKeyParameters(publicKey);
+            ecPublicKeyParameters = parameters;
+        }
+        return parameters;
+    }
+}
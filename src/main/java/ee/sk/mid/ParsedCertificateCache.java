@@ -0,0 +1,216 @@
+package ee.sk.mid;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.exception.TechnicalErrorException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ParsedCertificateCache {
+
+    private final int maximumSize;
+    private final int protectedSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Fingerprint, ParsedCertificate> probation = new LinkedHashMap<>();
+    private final LinkedHashMap<Fingerprint, ParsedCertificate> protectedSegment = new LinkedHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private ParsedCertificateCache(ParsedCertificateCacheBuilder builder) {
+        if (builder.maximumSize < 1) {
+            throw new TechnicalErrorException("Maximum size of parsed certificate cache must be positive");
+        }
+        this.maximumSize = builder.maximumSize;
+        this.protectedSize = (int) (builder.maximumSize * builder.protectedRatio);
+    }
+
+    public ParsedCertificate get(String certificateInBase64) throws TechnicalErrorException {
+        byte[] encoded;
+        try {
+            encoded = Base64.getMimeDecoder().decode(certificateInBase64);
+        } catch (IllegalArgumentException e) {
+            return new ParsedCertificate(CertificateParser.parseX509Certificate(certificateInBase64));
+        }
+        Fingerprint fingerprint = new Fingerprint(encoded);
+        ParsedCertificate parsed = lookup(fingerprint);
+        if (parsed == null) {
+            parsed = add(fingerprint, new ParsedCertificate(CertificateParser.parseX509Certificate(encoded)));
+        }
+        return parsed;
+    }
+
+    public ParsedCertificate get(X509Certificate certificate) throws TechnicalErrorException {
+        Fingerprint fingerprint;
+        try {
+            fingerprint = new Fingerprint(certificate.getEncoded());
+        } catch (CertificateEncodingException e) {
+            return new ParsedCertificate(certificate);
+        }
+        ParsedCertificate parsed = lookup(fingerprint);
+        if (parsed == null) {
+            parsed = add(fingerprint, new ParsedCertificate(certificate));
+        }
+        return parsed;
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            probation.clear();
+            protectedSegment.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public ParsedCertificateCacheStats getStats() {
+        lock.lock();
+        try {
+            return new ParsedCertificateCacheStats(hits.sum(), misses.sum(), evictions.sum(), probation.size() + protectedSegment.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ParsedCertificate lookup(Fingerprint fingerprint) {
+        lock.lock();
+        try {
+            ParsedCertificate parsed = protectedSegment.remove(fingerprint);
+            if (parsed == null) {
+                parsed = probation.remove(fingerprint);
+            }
+            if (parsed == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            protectedSegment.put(fingerprint, parsed);
+            while (protectedSegment.size() > protectedSize) {
+                moveEldest(protectedSegment, probation);
+            }
+            return parsed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ParsedCertificate add(Fingerprint fingerprint, ParsedCertificate parsed) {
+        lock.lock();
+        try {
+            ParsedCertificate existing = protectedSegment.get(fingerprint);
+            if (existing == null) {
+                existing = probation.get(fingerprint);
+            }
+            if (existing != null) {
+                return existing;
+            }
+            probation.put(fingerprint, parsed);
+            evictOverflow();
+            return parsed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evictOverflow() {
+        while (probation.size() + protectedSegment.size() > maximumSize) {
+            LinkedHashMap<Fingerprint, ParsedCertificate> segment = probation.isEmpty() ? protectedSegment : probation;
+            Iterator<Fingerprint> eldest = segment.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private static void moveEldest(LinkedHashMap<Fingerprint, ParsedCertificate> from, LinkedHashMap<Fingerprint, ParsedCertificate> to) {
+        Iterator<Map.Entry<Fingerprint, ParsedCertificate>> eldest = from.entrySet().iterator();
+        Map.Entry<Fingerprint, ParsedCertificate> entry = eldest.next();
+        eldest.remove();
+        to.put(entry.getKey(), entry.getValue());
+    }
+
+    private static class Fingerprint {
+        private final byte[] digest;
+        private final int hashCode;
+
+        private Fingerprint(byte[] encoded) {
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256").digest(encoded);
+            } catch (NoSuchAlgorithmException e) {
+                throw new TechnicalErrorException("SHA-256 is not available", e);
+            }
+            this.hashCode = Arrays.hashCode(digest);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof Fingerprint && Arrays.equals(digest, ((Fingerprint) o).digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    public static ParsedCertificateCacheBuilder newBuilder() {
+        return new ParsedCertificateCacheBuilder();
+    }
+
+    public static class ParsedCertificateCacheBuilder {
+        private int maximumSize = 1000;
+        private double protectedRatio = 0.8;
+
+        private ParsedCertificateCacheBuilder() {}
+
+        public ParsedCertificateCacheBuilder withMaximumSize(int maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        public ParsedCertificateCacheBuilder withProtectedRatio(double protectedRatio) {
+            this.protectedRatio = protectedRatio;
+            return this;
+        }
+
+        public ParsedCertificateCache build() {
+            return new ParsedCertificateCache(this);
+        }
+    }
+}
@@ -29,28 +29,36 @@ package ee.sk.mid;
 import ee.sk.mid.exception.TechnicalErrorException;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang3.ArrayUtils;
-import org.bouncycastle.asn1.ASN1EncodableVector;
-import org.bouncycastle.asn1.ASN1Encoding;
-import org.bouncycastle.asn1.ASN1Integer;
-import org.bouncycastle.asn1.DERSequence;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.crypto.params.ECDomainParameters;
+import org.bouncycastle.crypto.params.ECPublicKeyParameters;
+import org.bouncycastle.crypto.signers.ECDSASigner;
+import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.util.BigIntegers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.math.BigInteger;
 import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
-import java.security.Security;
 import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECField;
+import java.security.spec.ECFieldF2m;
+import java.security.spec.ECFieldFp;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.EllipticCurve;
 
 public class SignatureVerifier {
 
     private static final Logger logger = LoggerFactory.getLogger(SignatureVerifier.class);
 
+    private static final ThreadLocal<Signature> RSA_SIGNATURE = ThreadLocal.withInitial(() -> createSignature("NONEwithRSA"));
+    private static final ThreadLocal<ECDSASigner> ECDSA_SIGNER = ThreadLocal.withInitial(ECDSASigner::new);
+
     public static boolean verifyWithRSA(PublicKey signersPublicKey, MobileIdAuthentication authentication) throws TechnicalErrorException {
         try {
-            Signature signature = Signature.getInstance("NONEwithRSA");
+            Signature signature = RSA_SIGNATURE.get();
             signature.initVerify(signersPublicKey);
             byte[] signedHash = Base64.decodeBase64(authentication.getSignedHashInBase64());
             byte[] signedDigest = addPadding(authentication.getHashType().getDigestInfoPrefix(), signedHash);
@@ -67,41 +75,58 @@ public class SignatureVerifier {
     }
 
     public static boolean verifyWithECDSA(PublicKey signersPublicKey, MobileIdAuthentication authentication) throws TechnicalErrorException {
-        try {
-            Security.addProvider(new BouncyCastleProvider());
-            Signature signature = Signature.getInstance("NONEwithECDSA", "BC");
-            signature.initVerify(signersPublicKey);
-            byte[] signedDigest = Base64.decodeBase64(authentication.getSignedHashInBase64());
-            signature.update(signedDigest);
-            return signature.verify(fromCVCEncoding(authentication.getSignatureValue()));
-        } catch (GeneralSecurityException e) {
-            logger.error("Signature verification with ECDSA failed");
-            throw new TechnicalErrorException("Signature verification with ECDSA failed", e);
-        }
+        return verifyWithECDSA(toECPublicKeyParameters(signersPublicKey), authentication);
     }
 
-    private static byte[] fromCVCEncoding(byte[] cvcEncoding) {
-        byte[][] elements = splitArrayInTheMiddle(cvcEncoding);
-        BigInteger r = new BigInteger(1, elements[0]);
-        BigInteger s = new BigInteger(1, elements[1]);
-        return encodeInAsn1(r, s);
+    static boolean verifyWithECDSA(ECPublicKeyParameters signersPublicKey, MobileIdAuthentication authentication) {
+        ECDSASigner signer = ECDSA_SIGNER.get();
+        signer.init(false, signersPublicKey);
+        byte[] signedDigest = Base64.decodeBase64(authentication.getSignedHashInBase64());
+        byte[] cvcEncoding = authentication.getSignatureValue();
+        int middle = cvcEncoding.length / 2;
+        BigInteger r = BigIntegers.fromUnsignedByteArray(cvcEncoding, 0, middle);
+        BigInteger s = BigIntegers.fromUnsignedByteArray(cvcEncoding, middle, cvcEncoding.length - middle);
+        return signer.verifySignature(signedDigest, r, s);
     }
 
-    private static byte[][] splitArrayInTheMiddle(byte[] array) {
-        return new byte[][] {
-                ArrayUtils.subarray(array, 0, array.length / 2),
-                ArrayUtils.subarray(array, array.length / 2, array.length)
-        };
+    static ECPublicKeyParameters toECPublicKeyParameters(PublicKey publicKey) throws TechnicalErrorException {
+        if (!(publicKey instanceof ECPublicKey)) {
+            logger.error("Signature verification with ECDSA failed, public key is not an EC key");
+            throw new TechnicalErrorException("Signature verification with ECDSA failed, public key is not an EC key");
+        }
+        ECPublicKey ecPublicKey = (ECPublicKey) publicKey;
+        ECParameterSpec params = ecPublicKey.getParams();
+        try {
+            ECCurve curve = toECCurve(params.getCurve(), params.getOrder(), BigInteger.valueOf(params.getCofactor()));
+            ECDomainParameters domainParameters = new ECDomainParameters(curve,
+                    curve.createPoint(params.getGenerator().getAffineX(), params.getGenerator().getAffineY()),
+                    params.getOrder(), BigInteger.valueOf(params.getCofactor()));
+            return new ECPublicKeyParameters(curve.createPoint(ecPublicKey.getW().getAffineX(), ecPublicKey.getW().getAffineY()), domainParameters);
+        } catch (IllegalArgumentException e) {
+            logger.error("Signature verification with ECDSA failed, public key is invalid");
+            throw new TechnicalErrorException("Signature verification with ECDSA failed, public key is invalid", e);
+        }
+    }
+
+    private static ECCurve toECCurve(EllipticCurve curve, BigInteger order, BigInteger cofactor) {
+        ECField field = curve.getField();
+        if (field instanceof ECFieldFp) {
+            return new ECCurve.Fp(((ECFieldFp) field).getP(), curve.getA(), curve.getB(), order, cofactor);
+        }
+        ECFieldF2m binaryField = (ECFieldF2m) field;
+        int[] ks = binaryField.getMidTermsOfReductionPolynomial();
+        if (ks.length == 3) {
+            return new ECCurve.F2m(binaryField.getM(), ks[2], ks[1], ks[0], curve.getA(), curve.getB(), order, cofactor);
+        }
+        return new ECCurve.F2m(binaryField.getM(), ks[0], curve.getA(), curve.getB(), order, cofactor);
     }
 
-    private static byte[] encodeInAsn1(BigInteger r, BigInteger s) {
-        ASN1EncodableVector sequence = new ASN1EncodableVector();
-        sequence.add(new ASN1Integer(r));
-        sequence.add(new ASN1Integer(s));
+    private static Signature createSignature(String algorithm) {
         try {
-            return new DERSequence(sequence).getEncoded(ASN1Encoding.DER);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            return Signature.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            logger.error("Signature algorithm " + algorithm + " is not available");
+            throw new TechnicalErrorException("Signature algorithm " + algorithm + " is not available", e);
         }
     }
 }
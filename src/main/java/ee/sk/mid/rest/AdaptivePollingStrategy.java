@@ -0,0 +1,225 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+public class AdaptivePollingStrategy implements PollingStrategy {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptivePollingStrategy.class);
+    private static final int SCHEDULE_UPDATE_INTERVAL = 8;
+
+    private final long bucketWidthMillis;
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+    private final double initialQuantile;
+    private final double quantileStep;
+    private final int minSamples;
+    private final PollingStrategy warmUpStrategy;
+
+    private final long[] histogram;
+    private final long[] recentCompletionTimes;
+    private int recentCompletionCount;
+    private int nextSampleIndex;
+    private int samplesSinceScheduleUpdate;
+    private volatile long[] schedule;
+
+    private AdaptivePollingStrategy(AdaptivePollingStrategyBuilder builder) {
+        this.bucketWidthMillis = Math.max(1, builder.bucketWidth.toMillis());
+        this.minIntervalMillis = builder.minInterval.toMillis();
+        this.maxIntervalMillis = Math.max(minIntervalMillis, builder.maxInterval.toMillis());
+        this.initialQuantile = builder.initialQuantile;
+        this.quantileStep = builder.quantileStep;
+        this.minSamples = Math.max(1, builder.minSamples);
+        this.warmUpStrategy = builder.warmUpStrategy;
+        this.histogram = new long[(int) (builder.maxCompletionTime.toMillis() / bucketWidthMillis) + 1];
+        this.recentCompletionTimes = new long[Math.max(minSamples, builder.sampleWindow)];
+    }
+
+    @Override
+    public Duration getInitialDelay() {
+        long[] currentSchedule = schedule;
+        if (currentSchedule == null) {
+            return warmUpStrategy.getInitialDelay();
+        }
+        return Duration.ofMillis(currentSchedule[0]);
+    }
+
+    @Override
+    public Duration getNextDelay(Duration elapsed) {
+        long[] currentSchedule = schedule;
+        if (currentSchedule == null) {
+            return warmUpStrategy.getNextDelay(elapsed);
+        }
+        long elapsedMillis = elapsed.toMillis();
+        int index = Arrays.binarySearch(currentSchedule, elapsedMillis + minIntervalMillis);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        if (index == currentSchedule.length) {
+            return Duration.ofMillis(maxIntervalMillis);
+        }
+        return Duration.ofMillis(Math.min(currentSchedule[index] - elapsedMillis, maxIntervalMillis));
+    }
+
+    @Override
+    public synchronized void onSessionCompleted(Duration completionTime) {
+        long completionTimeMillis = Math.max(0, completionTime.toMillis());
+        if (recentCompletionCount == recentCompletionTimes.length) {
+            histogram[bucketOf(recentCompletionTimes[nextSampleIndex])]--;
+        } else {
+            recentCompletionCount++;
+        }
+        recentCompletionTimes[nextSampleIndex] = completionTimeMillis;
+        histogram[bucketOf(completionTimeMillis)]++;
+        nextSampleIndex = (nextSampleIndex + 1) % recentCompletionTimes.length;
+
+        if (recentCompletionCount >= minSamples && (schedule == null || ++samplesSinceScheduleUpdate >= SCHEDULE_UPDATE_INTERVAL)) {
+            samplesSinceScheduleUpdate = 0;
+            schedule = createSchedule();
+        }
+    }
+
+    synchronized long[] getSchedule() {
+        return schedule == null ? null : schedule.clone();
+    }
+
+    private int bucketOf(long completionTimeMillis) {
+        return (int) Math.min(completionTimeMillis / bucketWidthMillis, histogram.length - 1);
+    }
+
+    private long[] createSchedule() {
+        long[] offsets = new long[16];
+        int size = 0;
+        int bucket = 0;
+        long cumulativeCount = histogram[0];
+        long previousOffset = -1;
+        for (double quantile = initialQuantile; ; quantile += quantileStep) {
+            long requiredCount = (long) Math.ceil(Math.min(quantile, 1.0) * recentCompletionCount);
+            while (cumulativeCount < requiredCount && bucket < histogram.length - 1) {
+                cumulativeCount += histogram[++bucket];
+            }
+            long offset = (bucket + 1) * bucketWidthMillis;
+            if (previousOffset >= 0) {
+                offset = Math.max(offset, previousOffset + minIntervalMillis);
+                while (offset - previousOffset > maxIntervalMillis) {
+                    previousOffset += maxIntervalMillis;
+                    offsets = append(offsets, size++, previousOffset);
+                }
+            }
+            offsets = append(offsets, size++, offset);
+            previousOffset = offset;
+            if (quantile >= 1.0) {
+                break;
+            }
+        }
+        long[] newSchedule = Arrays.copyOf(offsets, size);
+        logger.debug("Polling schedule updated from " + recentCompletionCount + " completed session(s), first poll after "
+                + newSchedule[0] + " ms, " + newSchedule.length + " scheduled poll(s)");
+        return newSchedule;
+    }
+
+    private static long[] append(long[] offsets, int index, long offset) {
+        long[] result = index < offsets.length ? offsets : Arrays.copyOf(offsets, offsets.length * 2);
+        result[index] = offset;
+        return result;
+    }
+
+    public static AdaptivePollingStrategyBuilder newBuilder() {
+        return new AdaptivePollingStrategyBuilder();
+    }
+
+    public static class AdaptivePollingStrategyBuilder {
+        private Duration bucketWidth = Duration.ofMillis(100);
+        private Duration maxCompletionTime = Duration.ofMinutes(2);
+        private Duration minInterval = Duration.ofMillis(200);
+        private Duration maxInterval = Duration.ofSeconds(1);
+        private double initialQuantile = 0.05;
+        private double quantileStep = 0.1;
+        private int sampleWindow = 1000;
+        private int minSamples = 20;
+        private PollingStrategy warmUpStrategy = new FixedPollingStrategy(Duration.ofSeconds(1));
+
+        private AdaptivePollingStrategyBuilder() {}
+
+        public AdaptivePollingStrategyBuilder withBucketWidth(Duration bucketWidth) {
+            this.bucketWidth = bucketWidth;
+            return this;
+        }
+
+        public AdaptivePollingStrategyBuilder withMaxCompletionTime(Duration maxCompletionTime) {
+            this.maxCompletionTime = maxCompletionTime;
+            return this;
+        }
+
+        public AdaptivePollingStrategyBuilder withMinInterval(Duration minInterval) {
+            this.minInterval = minInterval;
+            return this;
+        }
+
+        public AdaptivePollingStrategyBuilder withMaxInterval(Duration maxInterval) {
+            this.maxInterval = maxInterval;
+            return this;
+        }
+
+        public AdaptivePollingStrategyBuilder withInitialQuantile(double initialQuantile) {
+            this.initialQuantile = initialQuantile;
+            return this;
+        }
+
+        public AdaptivePollingStrategyBuilder withQuantileStep(double quantileStep) {
+            this.quantileStep = quantileStep;
+            return this;
+        }
+
+        public AdaptivePollingStrategyBuilder withSampleWindow(int sampleWindow) {
+            this.sampleWindow = sampleWindow;
+            return this;
+        }
+
+        public AdaptivePollingStrategyBuilder withMinSamples(int minSamples) {
+            this.minSamples = minSamples;
+            return this;
+        }
+
+        public AdaptivePollingStrategyBuilder withWarmUpStrategy(PollingStrategy warmUpStrategy) {
+            this.warmUpStrategy = warmUpStrategy;
+            return this;
+        }
+
+        public AdaptivePollingStrategy build() {
+            if (quantileStep <= 0) {
+                throw new IllegalArgumentException("Quantile step must be positive");
+            }
+            return new AdaptivePollingStrategy(this);
+        }
+    }
+}
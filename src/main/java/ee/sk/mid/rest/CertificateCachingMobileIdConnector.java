@@ -0,0 +1,417 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.CertificateParser;
+import ee.sk.mid.exception.SessionNotFoundException;
+import ee.sk.mid.exception.TechnicalErrorException;
+import ee.sk.mid.rest.dao.SessionStatus;
+import ee.sk.mid.rest.dao.request.AuthenticationRequest;
+import ee.sk.mid.rest.dao.request.CertificateRequest;
+import ee.sk.mid.rest.dao.request.SessionStatusRequest;
+import ee.sk.mid.rest.dao.request.SignatureRequest;
+import ee.sk.mid.rest.dao.response.AuthenticationResponse;
+import ee.sk.mid.rest.dao.response.CertificateChoiceResponse;
+import ee.sk.mid.rest.dao.response.SignatureResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import static org.apache.commons.lang3.StringUtils.equalsIgnoreCase;
+
+public class CertificateCachingMobileIdConnector implements MobileIdConnector, MobileIdAsyncConnector, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CertificateCachingMobileIdConnector.class);
+    private static final int SWEEP_INTERVAL = 1024;
+
+    private final MobileIdConnector connector;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final double refreshAheadRatio;
+    private final ExecutorService refreshExecutor;
+    private final boolean ownsRefreshExecutor;
+    private final ConcurrentMap<CacheKey, CacheEntry> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder totalLoadTimeNanos = new LongAdder();
+
+    private CertificateCachingMobileIdConnector(CertificateCachingMobileIdConnectorBuilder builder) {
+        if (builder.connector == null) {
+            throw new TechnicalErrorException("Connector to cache certificates from must be set");
+        }
+        this.connector = builder.connector;
+        this.ttlNanos = builder.ttl.toNanos();
+        this.negativeTtlNanos = builder.negativeTtl.toNanos();
+        this.refreshAheadRatio = builder.refreshAheadRatio;
+        this.ownsRefreshExecutor = builder.refreshExecutor == null;
+        this.refreshExecutor = ownsRefreshExecutor ? Executors.newCachedThreadPool(new DaemonThreadFactory("mid-certificate-refresh")) : builder.refreshExecutor;
+    }
+
+    @Override
+    public CertificateChoiceResponse getCertificate(CertificateRequest request) {
+        return await(lookup(request, this::load));
+    }
+
+    @Override
+    public CompletableFuture<CertificateChoiceResponse> getCertificateAsync(CertificateRequest request) {
+        if (!isAsyncSupported()) {
+            return AsyncCalls.callBlocking(() -> getCertificate(request));
+        }
+        return lookup(request, this::loadAsync).thenApply(Function.identity());
+    }
+
+    @Override
+    public SignatureResponse sign(SignatureRequest request) {
+        return connector.sign(request);
+    }
+
+    @Override
+    public SignatureResponse sign(SignatureRequest request, Deadline deadline) {
+        return connector.sign(request, deadline);
+    }
+
+    @Override
+    public AuthenticationResponse authenticate(AuthenticationRequest request) {
+        return connector.authenticate(request);
+    }
+
+    @Override
+    public AuthenticationResponse authenticate(AuthenticationRequest request, Deadline deadline) {
+        return connector.authenticate(request, deadline);
+    }
+
+    @Override
+    public SessionStatus getSessionStatus(SessionStatusRequest request, String path) throws SessionNotFoundException {
+        return connector.getSessionStatus(request, path);
+    }
+
+    @Override
+    public SessionStatus getSessionStatus(SessionStatusRequest request, String path, Deadline deadline) throws SessionNotFoundException {
+        return connector.getSessionStatus(request, path, deadline);
+    }
+
+    @Override
+    public SessionStatus getAuthenticationSessionStatus(SessionStatusRequest request) throws SessionNotFoundException {
+        return connector.getAuthenticationSessionStatus(request);
+    }
+
+    @Override
+    public SessionStatus getSignatureSessionStatus(SessionStatusRequest request) throws SessionNotFoundException {
+        return connector.getSignatureSessionStatus(request);
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+        return MobileIdAsyncConnector.supportsAsync(connector);
+    }
+
+    @Override
+    public CompletableFuture<SignatureResponse> signAsync(SignatureRequest request) {
+        return signAsync(request, Deadline.none());
+    }
+
+    @Override
+    public CompletableFuture<SignatureResponse> signAsync(SignatureRequest request, Deadline deadline) {
+        if (!isAsyncSupported()) {
+            return AsyncCalls.callBlocking(() -> sign(request, deadline));
+        }
+        return ((MobileIdAsyncConnector) connector).signAsync(request, deadline);
+    }
+
+    @Override
+    public CompletableFuture<AuthenticationResponse> authenticateAsync(AuthenticationRequest request) {
+        return authenticateAsync(request, Deadline.none());
+    }
+
+    @Override
+    public CompletableFuture<AuthenticationResponse> authenticateAsync(AuthenticationRequest request, Deadline deadline) {
+        if (!isAsyncSupported()) {
+            return AsyncCalls.callBlocking(() -> authenticate(request, deadline));
+        }
+        return ((MobileIdAsyncConnector) connector).authenticateAsync(request, deadline);
+    }
+
+    @Override
+    public CompletableFuture<SessionStatus> getSessionStatusAsync(SessionStatusRequest request, String path) {
+        return getSessionStatusAsync(request, path, Deadline.none());
+    }
+
+    @Override
+    public CompletableFuture<SessionStatus> getSessionStatusAsync(SessionStatusRequest request, String path, Deadline deadline) {
+        if (!isAsyncSupported()) {
+            return AsyncCalls.callBlocking(() -> getSessionStatus(request, path, deadline));
+        }
+        return ((MobileIdAsyncConnector) connector).getSessionStatusAsync(request, path, deadline);
+    }
+
+    public CertificateCacheStats getStats() {
+        return new CertificateCacheStats(hits.sum(), misses.sum(), loads.sum(), loadFailures.sum(), refreshes.sum(),
+                totalLoadTimeNanos.sum(), entries.size());
+    }
+
+    public void invalidate(String phoneNumber, String nationalIdentityNumber) {
+        entries.remove(new CacheKey(phoneNumber, nationalIdentityNumber));
+    }
+
+    @Override
+    public void close() {
+        if (ownsRefreshExecutor) {
+            refreshExecutor.shutdownNow();
+        }
+    }
+
+    private CompletableFuture<CertificateChoiceResponse> lookup(CertificateRequest request, Loader loader) {
+        CacheKey key = new CacheKey(request.getPhoneNumber(), request.getNationalIdentityNumber());
+        while (true) {
+            CacheEntry entry = entries.get(key);
+            if (entry == null) {
+                CacheEntry loading = new CacheEntry();
+                entry = entries.putIfAbsent(key, loading);
+                if (entry == null) {
+                    misses.increment();
+                    loader.load(key, request, loading);
+                    return loading.response;
+                }
+            }
+            if (!entry.response.isDone()) {
+                hits.increment();
+                return entry.response;
+            }
+            long now = System.nanoTime();
+            if (now - entry.expiresAtNanos >= 0) {
+                entries.remove(key, entry);
+                continue;
+            }
+            hits.increment();
+            CacheEntry cached = entry;
+            if (now - cached.refreshAtNanos >= 0 && cached.refreshing.compareAndSet(false, true)) {
+                refreshExecutor.execute(() -> refresh(key, request, cached));
+            }
+            return cached.response;
+        }
+    }
+
+    private void load(CacheKey key, CertificateRequest request, CacheEntry entry) {
+        long startNanos = System.nanoTime();
+        CertificateChoiceResponse response;
+        try {
+            response = connector.getCertificate(request);
+        } catch (RuntimeException e) {
+            onLoadFailed(key, entry, startNanos, e);
+            return;
+        }
+        onLoaded(key, entry, startNanos, response);
+    }
+
+    private void loadAsync(CacheKey key, CertificateRequest request, CacheEntry entry) {
+        long startNanos = System.nanoTime();
+        ((MobileIdAsyncConnector) connector).getCertificateAsync(request).whenComplete((response, throwable) -> {
+            if (throwable == null) {
+                onLoaded(key, entry, startNanos, response);
+            } else {
+                onLoadFailed(key, entry, startNanos, AsyncCalls.unwrap(throwable));
+            }
+        });
+    }
+
+    private void onLoaded(CacheKey key, CacheEntry entry, long startNanos, CertificateChoiceResponse response) {
+        totalLoadTimeNanos.add(System.nanoTime() - startNanos);
+        loads.increment();
+        if (!entry.expireAfter(startNanos, getTtlNanos(response), refreshAheadRatio)) {
+            entries.remove(key, entry);
+        }
+        entry.response.complete(response);
+        if (loads.sum() % SWEEP_INTERVAL == 0) {
+            removeExpiredEntries();
+        }
+    }
+
+    private void onLoadFailed(CacheKey key, CacheEntry entry, long startNanos, RuntimeException e) {
+        totalLoadTimeNanos.add(System.nanoTime() - startNanos);
+        loadFailures.increment();
+        entries.remove(key, entry);
+        entry.response.completeExceptionally(e);
+    }
+
+    private void refresh(CacheKey key, CertificateRequest request, CacheEntry entry) {
+        logger.debug("Refreshing cached certificate for " + request.getPhoneNumber());
+        long startNanos = System.nanoTime();
+        try {
+            CertificateChoiceResponse response = connector.getCertificate(request);
+            totalLoadTimeNanos.add(System.nanoTime() - startNanos);
+            CacheEntry refreshed = new CacheEntry();
+            if (refreshed.expireAfter(startNanos, getTtlNanos(response), refreshAheadRatio)) {
+                refreshed.response.complete(response);
+                entries.replace(key, entry, refreshed);
+            } else {
+                entries.remove(key, entry);
+            }
+            refreshes.increment();
+        } catch (RuntimeException e) {
+            totalLoadTimeNanos.add(System.nanoTime() - startNanos);
+            loadFailures.increment();
+            logger.warn("Failed to refresh cached certificate for " + request.getPhoneNumber() + ": " + e.getMessage());
+            entry.refreshing.set(false);
+        }
+    }
+
+    private long getTtlNanos(CertificateChoiceResponse response) {
+        String result = response.getResult();
+        if (equalsIgnoreCase(result, "NOT_FOUND") || equalsIgnoreCase(result, "NOT_ACTIVE")) {
+            return negativeTtlNanos;
+        }
+        if (!equalsIgnoreCase(result, "OK") || response.getCert() == null) {
+            return 0;
+        }
+        try {
+            long validMillis = CertificateParser.parseX509Certificate(response.getCert()).getNotAfter().getTime() - System.currentTimeMillis();
+            return Math.min(ttlNanos, TimeUnit.MILLISECONDS.toNanos(validMillis));
+        } catch (TechnicalErrorException e) {
+            return 0;
+        }
+    }
+
+    private void removeExpiredEntries() {
+        long now = System.nanoTime();
+        entries.values().removeIf(entry -> entry.response.isDone() && now - entry.expiresAtNanos >= 0);
+    }
+
+    private static CertificateChoiceResponse await(CompletableFuture<CertificateChoiceResponse> response) {
+        try {
+            return response.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new TechnicalErrorException("Failed to get certificate: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private interface Loader {
+        void load(CacheKey key, CertificateRequest request, CacheEntry entry);
+    }
+
+    private static class CacheEntry {
+        private final CompletableFuture<CertificateChoiceResponse> response = new CompletableFuture<>();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile long expiresAtNanos;
+        private volatile long refreshAtNanos;
+
+        private boolean expireAfter(long startNanos, long ttlNanos, double refreshAheadRatio) {
+            expiresAtNanos = startNanos + ttlNanos;
+            refreshAtNanos = startNanos + (long) (ttlNanos * refreshAheadRatio);
+            return ttlNanos > 0;
+        }
+    }
+
+    private static class CacheKey {
+        private final String phoneNumber;
+        private final String nationalIdentityNumber;
+
+        private CacheKey(String phoneNumber, String nationalIdentityNumber) {
+            this.phoneNumber = phoneNumber;
+            this.nationalIdentityNumber = nationalIdentityNumber;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            return Objects.equals(phoneNumber, other.phoneNumber) && Objects.equals(nationalIdentityNumber, other.nationalIdentityNumber);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(phoneNumber, nationalIdentityNumber);
+        }
+    }
+
+    public static CertificateCachingMobileIdConnectorBuilder newBuilder() {
+        return new CertificateCachingMobileIdConnectorBuilder();
+    }
+
+    public static class CertificateCachingMobileIdConnectorBuilder {
+        private MobileIdConnector connector;
+        private Duration ttl = Duration.ofMinutes(10);
+        private Duration negativeTtl = Duration.ofSeconds(30);
+        private double refreshAheadRatio = 0.8;
+        private ExecutorService refreshExecutor;
+
+        private CertificateCachingMobileIdConnectorBuilder() {}
+
+        public CertificateCachingMobileIdConnectorBuilder withConnector(MobileIdConnector connector) {
+            this.connector = connector;
+            return this;
+        }
+
+        public CertificateCachingMobileIdConnectorBuilder withTtl(Duration ttl) {
+            this.ttl = ttl;
+            return this;
+        }
+
+        public CertificateCachingMobileIdConnectorBuilder withNegativeTtl(Duration negativeTtl) {
+            this.negativeTtl = negativeTtl;
+            return this;
+        }
+
+        public CertificateCachingMobileIdConnectorBuilder withRefreshAheadRatio(double refreshAheadRatio) {
+            this.refreshAheadRatio = refreshAheadRatio;
+            return this;
+        }
+
+        public CertificateCachingMobileIdConnectorBuilder withRefreshExecutor(ExecutorService refreshExecutor) {
+            this.refreshExecutor = refreshExecutor;
+            return this;
+        }
+
+        public CertificateCachingMobileIdConnector build() {
+            return new CertificateCachingMobileIdConnector(this);
+        }
+    }
+}
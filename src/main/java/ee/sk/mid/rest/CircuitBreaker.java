@@ -0,0 +1,214 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.exception.CircuitBreakerOpenException;
+import ee.sk.mid.exception.DeadlineExceededException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.ProcessingException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+public class CircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final CircuitBreakerConfig config;
+    private final long openDurationNanos;
+    private final boolean[] outcomes;
+
+    private State state = State.CLOSED;
+    private int recordedOutcomes;
+    private int nextOutcomeIndex;
+    private int failures;
+    private long openedAtNanos;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+    private long rejectedRequests;
+
+    public CircuitBreaker(String name, CircuitBreakerConfig config) {
+        this.name = name;
+        this.config = config;
+        this.openDurationNanos = config.getOpenDuration().toNanos();
+        this.outcomes = new boolean[Math.max(1, config.getSlidingWindowSize())];
+    }
+
+    public <T> T execute(Supplier<T> request) {
+        acquirePermission();
+        try {
+            T response = request.get();
+            onSuccess();
+            return response;
+        } catch (RuntimeException e) {
+            onOutcome(e);
+            throw e;
+        }
+    }
+
+    public <T> CompletableFuture<T> executeAsync(Supplier<CompletableFuture<T>> request) {
+        try {
+            acquirePermission();
+        } catch (CircuitBreakerOpenException e) {
+            CompletableFuture<T> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+        CompletableFuture<T> response;
+        try {
+            response = request.get();
+        } catch (RuntimeException e) {
+            onOutcome(e);
+            throw e;
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        response.whenComplete((value, throwable) -> {
+            if (throwable == null) {
+                onSuccess();
+                result.complete(value);
+            } else {
+                RuntimeException e = AsyncCalls.unwrap(throwable);
+                onOutcome(e);
+                result.completeExceptionally(e);
+            }
+        });
+        result.whenComplete((value, throwable) -> {
+            if (result.isCancelled()) {
+                response.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized double getFailureRate() {
+        return recordedOutcomes == 0 ? 0 : (double) failures / recordedOutcomes;
+    }
+
+    public synchronized long getRejectedRequests() {
+        return rejectedRequests;
+    }
+
+    private synchronized void acquirePermission() {
+        if (state == State.OPEN && System.nanoTime() - openedAtNanos >= openDurationNanos) {
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.CLOSED) {
+            return;
+        }
+        if (state == State.HALF_OPEN && halfOpenPermits > 0) {
+            halfOpenPermits--;
+            return;
+        }
+        rejectedRequests++;
+        throw new CircuitBreakerOpenException("Circuit breaker for " + name + " is open");
+    }
+
+    private void onOutcome(RuntimeException e) {
+        if (e instanceof CancellationException) {
+            onCancellation();
+        } else if (isFailure(e)) {
+            onFailure();
+        } else {
+            onSuccess();
+        }
+    }
+
+    private synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++halfOpenSuccesses >= config.getHalfOpenRequests()) {
+                transitionTo(State.CLOSED);
+            }
+        } else if (state == State.CLOSED) {
+            recordOutcome(false);
+        }
+    }
+
+    private synchronized void onCancellation() {
+        if (state == State.HALF_OPEN) {
+            halfOpenPermits++;
+        }
+    }
+
+    private synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.OPEN);
+        } else if (state == State.CLOSED) {
+            recordOutcome(true);
+            if (recordedOutcomes >= config.getMinimumRequests() && getFailureRate() >= config.getFailureRateThreshold()) {
+                transitionTo(State.OPEN);
+            }
+        }
+    }
+
+    private void recordOutcome(boolean failure) {
+        if (recordedOutcomes == outcomes.length) {
+            if (outcomes[nextOutcomeIndex]) {
+                failures--;
+            }
+        } else {
+            recordedOutcomes++;
+        }
+        outcomes[nextOutcomeIndex] = failure;
+        if (failure) {
+            failures++;
+        }
+        nextOutcomeIndex = (nextOutcomeIndex + 1) % outcomes.length;
+    }
+
+    private void transitionTo(State newState) {
+        logger.warn("Circuit breaker for " + name + " changed from " + state + " to " + newState);
+        state = newState;
+        if (newState == State.OPEN) {
+            openedAtNanos = System.nanoTime();
+        } else if (newState == State.HALF_OPEN) {
+            halfOpenPermits = config.getHalfOpenRequests();
+            halfOpenSuccesses = 0;
+        } else {
+            recordedOutcomes = 0;
+            nextOutcomeIndex = 0;
+            failures = 0;
+        }
+    }
+
+    static boolean isFailure(RuntimeException e) {
+        if (e instanceof DeadlineExceededException) {
+            return e.getCause() instanceof ProcessingException;
+        }
+        return ConnectorEndpoint.isEndpointFailure(e);
+    }
+}
@@ -0,0 +1,120 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import java.time.Duration;
+
+public class CircuitBreakerConfig {
+
+    private int slidingWindowSize;
+    private int minimumRequests;
+    private double failureRateThreshold;
+    private Duration openDuration;
+    private int halfOpenRequests;
+
+    private CircuitBreakerConfig(CircuitBreakerConfigBuilder builder) {
+        this.slidingWindowSize = builder.slidingWindowSize;
+        this.minimumRequests = builder.minimumRequests;
+        this.failureRateThreshold = builder.failureRateThreshold;
+        this.openDuration = builder.openDuration;
+        this.halfOpenRequests = builder.halfOpenRequests;
+    }
+
+    public int getSlidingWindowSize() {
+        return slidingWindowSize;
+    }
+
+    public int getMinimumRequests() {
+        return minimumRequests;
+    }
+
+    public double getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    public Duration getOpenDuration() {
+        return openDuration;
+    }
+
+    public int getHalfOpenRequests() {
+        return halfOpenRequests;
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreakerConfig{" +
+                "slidingWindowSize=" + slidingWindowSize +
+                ", minimumRequests=" + minimumRequests +
+                ", failureRateThreshold=" + failureRateThreshold +
+                ", openDuration=" + openDuration +
+                ", halfOpenRequests=" + halfOpenRequests +
+                '}';
+    }
+
+    public static CircuitBreakerConfigBuilder newBuilder() {
+        return new CircuitBreakerConfigBuilder();
+    }
+
+    public static class CircuitBreakerConfigBuilder {
+        private int slidingWindowSize = 20;
+        private int minimumRequests = 10;
+        private double failureRateThreshold = 0.5;
+        private Duration openDuration = Duration.ofSeconds(10);
+        private int halfOpenRequests = 3;
+
+        private CircuitBreakerConfigBuilder() {}
+
+        public CircuitBreakerConfigBuilder withSlidingWindowSize(int slidingWindowSize) {
+            this.slidingWindowSize = slidingWindowSize;
+            return this;
+        }
+
+        public CircuitBreakerConfigBuilder withMinimumRequests(int minimumRequests) {
+            this.minimumRequests = minimumRequests;
+            return this;
+        }
+
+        public CircuitBreakerConfigBuilder withFailureRateThreshold(double failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+
+        public CircuitBreakerConfigBuilder withOpenDuration(Duration openDuration) {
+            this.openDuration = openDuration;
+            return this;
+        }
+
+        public CircuitBreakerConfigBuilder withHalfOpenRequests(int halfOpenRequests) {
+            this.halfOpenRequests = halfOpenRequests;
+            return this;
+        }
+
+        public CircuitBreakerConfig build() {
+            return new CircuitBreakerConfig(this);
+        }
+    }
+}
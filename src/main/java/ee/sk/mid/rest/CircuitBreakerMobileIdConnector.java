@@ -0,0 +1,161 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.exception.SessionNotFoundException;
+import ee.sk.mid.rest.dao.SessionStatus;
+import ee.sk.mid.rest.dao.request.AuthenticationRequest;
+import ee.sk.mid.rest.dao.request.CertificateRequest;
+import ee.sk.mid.rest.dao.request.SessionStatusRequest;
+import ee.sk.mid.rest.dao.request.SignatureRequest;
+import ee.sk.mid.rest.dao.response.AuthenticationResponse;
+import ee.sk.mid.rest.dao.response.CertificateChoiceResponse;
+import ee.sk.mid.rest.dao.response.SignatureResponse;
+
+import java.util.concurrent.CompletableFuture;
+
+public class CircuitBreakerMobileIdConnector implements MobileIdConnector, MobileIdAsyncConnector {
+
+    private final MobileIdConnector connector;
+    private final CircuitBreaker initiationCircuitBreaker;
+    private final CircuitBreaker pollingCircuitBreaker;
+
+    public CircuitBreakerMobileIdConnector(MobileIdConnector connector) {
+        this(connector, CircuitBreakerConfig.newBuilder().build(), CircuitBreakerConfig.newBuilder().build());
+    }
+
+    public CircuitBreakerMobileIdConnector(MobileIdConnector connector, CircuitBreakerConfig initiationConfig, CircuitBreakerConfig pollingConfig) {
+        this.connector = connector;
+        this.initiationCircuitBreaker = new CircuitBreaker("initiation requests", initiationConfig);
+        this.pollingCircuitBreaker = new CircuitBreaker("session status requests", pollingConfig);
+    }
+
+    public CircuitBreaker getInitiationCircuitBreaker() {
+        return initiationCircuitBreaker;
+    }
+
+    public CircuitBreaker getPollingCircuitBreaker() {
+        return pollingCircuitBreaker;
+    }
+
+    @Override
+    public CertificateChoiceResponse getCertificate(CertificateRequest request) {
+        return initiationCircuitBreaker.execute(() -> connector.getCertificate(request));
+    }
+
+    @Override
+    public SignatureResponse sign(SignatureRequest request) {
+        return sign(request, Deadline.none());
+    }
+
+    @Override
+    public SignatureResponse sign(SignatureRequest request, Deadline deadline) {
+        return initiationCircuitBreaker.execute(() -> connector.sign(request, deadline));
+    }
+
+    @Override
+    public AuthenticationResponse authenticate(AuthenticationRequest request) {
+        return authenticate(request, Deadline.none());
+    }
+
+    @Override
+    public AuthenticationResponse authenticate(AuthenticationRequest request, Deadline deadline) {
+        return initiationCircuitBreaker.execute(() -> connector.authenticate(request, deadline));
+    }
+
+    @Override
+    public SessionStatus getSessionStatus(SessionStatusRequest request, String path) throws SessionNotFoundException {
+        return getSessionStatus(request, path, Deadline.none());
+    }
+
+    @Override
+    public SessionStatus getSessionStatus(SessionStatusRequest request, String path, Deadline deadline) throws SessionNotFoundException {
+        return pollingCircuitBreaker.execute(() -> connector.getSessionStatus(request, path, deadline));
+    }
+
+    @Override
+    public SessionStatus getAuthenticationSessionStatus(SessionStatusRequest request) throws SessionNotFoundException {
+        return getSessionStatus(request, SessionStatusPoller.AUTHENTICATION_SESSION_PATH);
+    }
+
+    @Override
+    public SessionStatus getSignatureSessionStatus(SessionStatusRequest request) throws SessionNotFoundException {
+        return getSessionStatus(request, SessionStatusPoller.SIGNATURE_SESSION_PATH);
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+        return MobileIdAsyncConnector.supportsAsync(connector);
+    }
+
+    @Override
+    public CompletableFuture<CertificateChoiceResponse> getCertificateAsync(CertificateRequest request) {
+        if (!isAsyncSupported()) {
+            return AsyncCalls.callBlocking(() -> getCertificate(request));
+        }
+        return initiationCircuitBreaker.executeAsync(() -> ((MobileIdAsyncConnector) connector).getCertificateAsync(request));
+    }
+
+    @Override
+    public CompletableFuture<SignatureResponse> signAsync(SignatureRequest request) {
+        return signAsync(request, Deadline.none());
+    }
+
+    @Override
+    public CompletableFuture<SignatureResponse> signAsync(SignatureRequest request, Deadline deadline) {
+        if (!isAsyncSupported()) {
+            return AsyncCalls.callBlocking(() -> sign(request, deadline));
+        }
+        return initiationCircuitBreaker.executeAsync(() -> ((MobileIdAsyncConnector) connector).signAsync(request, deadline));
+    }
+
+    @Override
+    public CompletableFuture<AuthenticationResponse> authenticateAsync(AuthenticationRequest request) {
+        return authenticateAsync(request, Deadline.none());
+    }
+
+    @Override
+    public CompletableFuture<AuthenticationResponse> authenticateAsync(AuthenticationRequest request, Deadline deadline) {
+        if (!isAsyncSupported()) {
+            return AsyncCalls.callBlocking(() -> authenticate(request, deadline));
+        }
+        return initiationCircuitBreaker.executeAsync(() -> ((MobileIdAsyncConnector) connector).authenticateAsync(request, deadline));
+    }
+
+    @Override
+    public CompletableFuture<SessionStatus> getSessionStatusAsync(SessionStatusRequest request, String path) {
+        return getSessionStatusAsync(request, path, Deadline.none());
+    }
+
+    @Override
+    public CompletableFuture<SessionStatus> getSessionStatusAsync(SessionStatusRequest request, String path, Deadline deadline) {
+        if (!isAsyncSupported()) {
+            return AsyncCalls.callBlocking(() -> getSessionStatus(request, path, deadline));
+        }
+        return pollingCircuitBreaker.executeAsync(() -> ((MobileIdAsyncConnector) connector).getSessionStatusAsync(request, path, deadline));
+    }
+}
@@ -0,0 +1,366 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.exception.DeadlineExceededException;
+import ee.sk.mid.exception.SessionNotFoundException;
+import ee.sk.mid.exception.TechnicalErrorException;
+import ee.sk.mid.rest.dao.SessionStatus;
+import ee.sk.mid.rest.dao.request.AuthenticationRequest;
+import ee.sk.mid.rest.dao.request.CertificateRequest;
+import ee.sk.mid.rest.dao.request.SessionStatusRequest;
+import ee.sk.mid.rest.dao.request.SignatureRequest;
+import ee.sk.mid.rest.dao.response.AuthenticationResponse;
+import ee.sk.mid.rest.dao.response.CertificateChoiceResponse;
+import ee.sk.mid.rest.dao.response.SignatureResponse;
+import org.glassfish.jersey.client.ClientConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.apache.commons.lang3.StringUtils.equalsIgnoreCase;
+
+public class CompositeMobileIdConnector implements MobileIdConnector, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompositeMobileIdConnector.class);
+    private static final int STICKY_SESSION_SWEEP_INTERVAL = 1024;
+
+    private final List<ConnectorEndpoint> endpoints;
+    private final List<Closeable> ownedConnectors;
+    private final Map<String, StickySession> stickySessions = new ConcurrentHashMap<>();
+    private final AtomicInteger stickySessionsAdded = new AtomicInteger();
+    private final long stickySessionTtlNanos;
+
+    private CompositeMobileIdConnector(CompositeMobileIdConnectorBuilder builder) {
+        if (builder.endpoints.isEmpty()) {
+            throw new TechnicalErrorException("At least one endpoint must be configured");
+        }
+        EndpointHealthConfig healthConfig = new EndpointHealthConfig(builder);
+        List<ConnectorEndpoint> configuredEndpoints = new ArrayList<>();
+        List<Closeable> closeables = new ArrayList<>();
+        for (EndpointDefinition definition : builder.endpoints) {
+            MobileIdConnector connector = definition.connector;
+            if (connector == null) {
+                MobileIdRestConnector restConnector = new MobileIdRestConnector(definition.name, builder.networkConnectionConfig);
+                closeables.add(restConnector);
+                connector = restConnector;
+            }
+            configuredEndpoints.add(new ConnectorEndpoint(definition.name, connector, healthConfig));
+        }
+        this.endpoints = Collections.unmodifiableList(configuredEndpoints);
+        this.ownedConnectors = closeables;
+        this.stickySessionTtlNanos = builder.stickySessionTtl.toNanos();
+    }
+
+    @Override
+    public CertificateChoiceResponse getCertificate(CertificateRequest request) {
+        return initiate(connector -> connector.getCertificate(request), null);
+    }
+
+    @Override
+    public SignatureResponse sign(SignatureRequest request) {
+        return sign(request, Deadline.none());
+    }
+
+    @Override
+    public SignatureResponse sign(SignatureRequest request, Deadline deadline) {
+        return initiate(connector -> connector.sign(request, deadline), SignatureResponse::getSessionID);
+    }
+
+    @Override
+    public AuthenticationResponse authenticate(AuthenticationRequest request) {
+        return authenticate(request, Deadline.none());
+    }
+
+    @Override
+    public AuthenticationResponse authenticate(AuthenticationRequest request, Deadline deadline) {
+        return initiate(connector -> connector.authenticate(request, deadline), AuthenticationResponse::getSessionID);
+    }
+
+    @Override
+    public SessionStatus getSessionStatus(SessionStatusRequest request, String path) throws SessionNotFoundException {
+        return getSessionStatus(request, path, Deadline.none());
+    }
+
+    @Override
+    public SessionStatus getSessionStatus(SessionStatusRequest request, String path, Deadline deadline) throws SessionNotFoundException {
+        String sessionId = request.getSessionID();
+        StickySession stickySession = stickySessions.get(sessionId);
+        ConnectorEndpoint endpoint = stickySession != null ? stickySession.endpoint : selectEndpoint(Collections.emptyList());
+        try {
+            SessionStatus sessionStatus = call(endpoint, connector -> connector.getSessionStatus(request, path, deadline), !request.isLongPolling());
+            if (!equalsIgnoreCase("RUNNING", sessionStatus.getState())) {
+                stickySessions.remove(sessionId);
+            }
+            return sessionStatus;
+        } catch (SessionNotFoundException e) {
+            stickySessions.remove(sessionId);
+            throw e;
+        }
+    }
+
+    @Override
+    public SessionStatus getAuthenticationSessionStatus(SessionStatusRequest request) throws SessionNotFoundException {
+        return getSessionStatus(request, SessionStatusPoller.AUTHENTICATION_SESSION_PATH);
+    }
+
+    @Override
+    public SessionStatus getSignatureSessionStatus(SessionStatusRequest request) throws SessionNotFoundException {
+        return getSessionStatus(request, SessionStatusPoller.SIGNATURE_SESSION_PATH);
+    }
+
+    public List<EndpointStats> getEndpointStats() {
+        List<EndpointStats> stats = new ArrayList<>(endpoints.size());
+        for (ConnectorEndpoint endpoint : endpoints) {
+            stats.add(endpoint.getStats());
+        }
+        return stats;
+    }
+
+    public int getStickySessionCount() {
+        return stickySessions.size();
+    }
+
+    @Override
+    public void close() {
+        for (Closeable connector : ownedConnectors) {
+            try {
+                connector.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close endpoint connector: " + e.getMessage());
+            }
+        }
+    }
+
+    private <T> T initiate(Function<MobileIdConnector, T> request, Function<T, String> sessionId) {
+        List<ConnectorEndpoint> tried = new ArrayList<>(endpoints.size());
+        while (true) {
+            ConnectorEndpoint endpoint = selectEndpoint(tried);
+            try {
+                T response = call(endpoint, request, true);
+                if (sessionId != null && sessionId.apply(response) != null) {
+                    addStickySession(sessionId.apply(response), endpoint);
+                }
+                return response;
+            } catch (RuntimeException e) {
+                tried.add(endpoint);
+                if (!ConnectorEndpoint.isConnectFailure(e) || tried.size() == endpoints.size()) {
+                    throw e;
+                }
+                logger.warn("Could not connect to endpoint " + endpoint.getName() + ", failing over: " + e.getMessage());
+            }
+        }
+    }
+
+    private static <T> T call(ConnectorEndpoint endpoint, Function<MobileIdConnector, T> request, boolean recordLatency) {
+        long startNanos = endpoint.start();
+        try {
+            T response = request.apply(endpoint.getConnector());
+            endpoint.onSuccess(startNanos, recordLatency);
+            return response;
+        } catch (DeadlineExceededException e) {
+            endpoint.onTimeout(startNanos);
+            throw e;
+        } catch (RuntimeException e) {
+            if (ConnectorEndpoint.isEndpointFailure(e)) {
+                endpoint.onFailure(startNanos, e);
+            } else {
+                endpoint.onSuccess(startNanos, recordLatency);
+            }
+            throw e;
+        }
+    }
+
+    private ConnectorEndpoint selectEndpoint(List<ConnectorEndpoint> excluded) {
+        long now = System.nanoTime();
+        List<ConnectorEndpoint> candidates = new ArrayList<>(endpoints.size());
+        ConnectorEndpoint leastRecentlyEjected = null;
+        for (ConnectorEndpoint endpoint : endpoints) {
+            if (excluded.contains(endpoint)) {
+                continue;
+            }
+            if (endpoint.isAvailable(now)) {
+                candidates.add(endpoint);
+            } else if (leastRecentlyEjected == null || endpoint.getEjectedUntilNanos() - leastRecentlyEjected.getEjectedUntilNanos() < 0) {
+                leastRecentlyEjected = endpoint;
+            }
+        }
+        if (candidates.isEmpty()) {
+            logger.warn("All endpoints are ejected, using " + leastRecentlyEjected.getName());
+            return leastRecentlyEjected;
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        ConnectorEndpoint firstEndpoint = candidates.get(first);
+        ConnectorEndpoint secondEndpoint = candidates.get(second);
+        return firstEndpoint.score(now) <= secondEndpoint.score(now) ? firstEndpoint : secondEndpoint;
+    }
+
+    private void addStickySession(String sessionId, ConnectorEndpoint endpoint) {
+        long now = System.nanoTime();
+        stickySessions.put(sessionId, new StickySession(endpoint, now));
+        if (stickySessionsAdded.incrementAndGet() % STICKY_SESSION_SWEEP_INTERVAL == 0) {
+            for (Iterator<StickySession> iterator = stickySessions.values().iterator(); iterator.hasNext(); ) {
+                if (now - iterator.next().createdNanos > stickySessionTtlNanos) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    public static CompositeMobileIdConnectorBuilder newBuilder() {
+        return new CompositeMobileIdConnectorBuilder();
+    }
+
+    private static class StickySession {
+
+        private final ConnectorEndpoint endpoint;
+        private final long createdNanos;
+
+        StickySession(ConnectorEndpoint endpoint, long createdNanos) {
+            this.endpoint = endpoint;
+            this.createdNanos = createdNanos;
+        }
+    }
+
+    private static class EndpointDefinition {
+
+        private final String name;
+        private final MobileIdConnector connector;
+
+        EndpointDefinition(String name, MobileIdConnector connector) {
+            this.name = name;
+            this.connector = connector;
+        }
+    }
+
+    static class EndpointHealthConfig {
+
+        final double alpha;
+        final int consecutiveFailuresToEject;
+        final double errorRateToEject;
+        final long baseEjectionNanos;
+        final long maxEjectionNanos;
+        final long latencyDecayNanos;
+
+        EndpointHealthConfig(CompositeMobileIdConnectorBuilder builder) {
+            this.alpha = builder.latencySmoothingFactor;
+            this.consecutiveFailuresToEject = builder.consecutiveFailuresToEject;
+            this.errorRateToEject = builder.errorRateToEject;
+            this.baseEjectionNanos = builder.baseEjectionTime.toNanos();
+            this.maxEjectionNanos = builder.maxEjectionTime.toNanos();
+            this.latencyDecayNanos = Math.max(1, builder.latencyDecayTime.toNanos());
+        }
+    }
+
+    public static class CompositeMobileIdConnectorBuilder {
+        private final List<EndpointDefinition> endpoints = new ArrayList<>();
+        private ClientConfig networkConnectionConfig;
+        private double latencySmoothingFactor = 0.2;
+        private int consecutiveFailuresToEject = 3;
+        private double errorRateToEject = 0.5;
+        private Duration baseEjectionTime = Duration.ofSeconds(1);
+        private Duration maxEjectionTime = Duration.ofSeconds(30);
+        private Duration latencyDecayTime = Duration.ofSeconds(10);
+        private Duration stickySessionTtl = Duration.ofMinutes(10);
+
+        private CompositeMobileIdConnectorBuilder() {}
+
+        public CompositeMobileIdConnectorBuilder withEndpoint(String endpointUrl) {
+            endpoints.add(new EndpointDefinition(endpointUrl, null));
+            return this;
+        }
+
+        public CompositeMobileIdConnectorBuilder withEndpoint(String name, MobileIdConnector connector) {
+            endpoints.add(new EndpointDefinition(name, connector));
+            return this;
+        }
+
+        public CompositeMobileIdConnectorBuilder withNetworkConnectionConfig(ClientConfig networkConnectionConfig) {
+            this.networkConnectionConfig = networkConnectionConfig;
+            return this;
+        }
+
+        public CompositeMobileIdConnectorBuilder withLatencySmoothingFactor(double latencySmoothingFactor) {
+            this.latencySmoothingFactor = latencySmoothingFactor;
+            return this;
+        }
+
+        public CompositeMobileIdConnectorBuilder withConsecutiveFailuresToEject(int consecutiveFailuresToEject) {
+            this.consecutiveFailuresToEject = consecutiveFailuresToEject;
+            return this;
+        }
+
+        public CompositeMobileIdConnectorBuilder withErrorRateToEject(double errorRateToEject) {
+            this.errorRateToEject = errorRateToEject;
+            return this;
+        }
+
+        public CompositeMobileIdConnectorBuilder withBaseEjectionTime(Duration baseEjectionTime) {
+            this.baseEjectionTime = baseEjectionTime;
+            return this;
+        }
+
+        public CompositeMobileIdConnectorBuilder withMaxEjectionTime(Duration maxEjectionTime) {
+            this.maxEjectionTime = maxEjectionTime;
+            return this;
+        }
+
+        public CompositeMobileIdConnectorBuilder withLatencyDecayTime(Duration latencyDecayTime) {
+            this.latencyDecayTime = latencyDecayTime;
+            return this;
+        }
+
+        public CompositeMobileIdConnectorBuilder withStickySessionTtl(Duration stickySessionTtl) {
+            this.stickySessionTtl = stickySessionTtl;
+            return this;
+        }
+
+        public CompositeMobileIdConnector build() {
+            return new CompositeMobileIdConnector(this);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.exception.ConcurrencyLimitExceededException;
+import ee.sk.mid.exception.DeadlineExceededException;
+import ee.sk.mid.exception.SessionNotFoundException;
+import ee.sk.mid.exception.TechnicalErrorException;
+import ee.sk.mid.rest.dao.SessionStatus;
+import ee.sk.mid.rest.dao.request.AuthenticationRequest;
+import ee.sk.mid.rest.dao.request.CertificateRequest;
+import ee.sk.mid.rest.dao.request.SessionStatusRequest;
+import ee.sk.mid.rest.dao.request.SignatureRequest;
+import ee.sk.mid.rest.dao.response.AuthenticationResponse;
+import ee.sk.mid.rest.dao.response.CertificateChoiceResponse;
+import ee.sk.mid.rest.dao.response.SignatureResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+public class ConcurrencyLimitingMobileIdConnector implements MobileIdConnector {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrencyLimitingMobileIdConnector.class);
+
+    private final MobileIdConnector connector;
+    private final VegasConcurrencyLimit concurrencyLimit;
+    private final long maxQueueTimeNanos;
+    private final int maxQueueSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+    private int inFlightRequests;
+    private int queuedRequests;
+    private long rejectedRequests;
+
+    private ConcurrencyLimitingMobileIdConnector(ConcurrencyLimitingMobileIdConnectorBuilder builder) {
+        if (builder.connector == null) {
+            throw new TechnicalErrorException("Connector to limit requests on must be set");
+        }
+        this.connector = builder.connector;
+        this.concurrencyLimit = new VegasConcurrencyLimit(builder.initialLimit, builder.minLimit, builder.maxLimit);
+        this.maxQueueTimeNanos = builder.maxQueueTime.toNanos();
+        this.maxQueueSize = builder.maxQueueSize;
+    }
+
+    @Override
+    public CertificateChoiceResponse getCertificate(CertificateRequest request) {
+        return execute(Deadline.none(), true, () -> connector.getCertificate(request));
+    }
+
+    @Override
+    public SignatureResponse sign(SignatureRequest request) {
+        return sign(request, Deadline.none());
+    }
+
+    @Override
+    public SignatureResponse sign(SignatureRequest request, Deadline deadline) {
+        return execute(deadline, true, () -> connector.sign(request, deadline));
+    }
+
+    @Override
+    public AuthenticationResponse authenticate(AuthenticationRequest request) {
+        return authenticate(request, Deadline.none());
+    }
+
+    @Override
+    public AuthenticationResponse authenticate(AuthenticationRequest request, Deadline deadline) {
+        return execute(deadline, true, () -> connector.authenticate(request, deadline));
+    }
+
+    @Override
+    public SessionStatus getSessionStatus(SessionStatusRequest request, String path) throws SessionNotFoundException {
+        return getSessionStatus(request, path, Deadline.none());
+    }
+
+    @Override
+    public SessionStatus getSessionStatus(SessionStatusRequest request, String path, Deadline deadline) throws SessionNotFoundException {
+        return execute(deadline, !request.isLongPolling(), () -> connector.getSessionStatus(request, path, deadline));
+    }
+
+    @Override
+    public SessionStatus getAuthenticationSessionStatus(SessionStatusRequest request) throws SessionNotFoundException {
+        return getSessionStatus(request, SessionStatusPoller.AUTHENTICATION_SESSION_PATH);
+    }
+
+    @Override
+    public SessionStatus getSignatureSessionStatus(SessionStatusRequest request) throws SessionNotFoundException {
+        return getSessionStatus(request, SessionStatusPoller.SIGNATURE_SESSION_PATH);
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return concurrencyLimit.getLimit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public ConcurrencyLimitStats getStats() {
+        lock.lock();
+        try {
+            return new ConcurrencyLimitStats(concurrencyLimit.getLimit(), inFlightRequests, queuedRequests, rejectedRequests,
+                    concurrencyLimit.getNoLoadRttNanos() / 1_000_000.0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private <T> T execute(Deadline deadline, boolean sampleRtt, Supplier<T> request) {
+        acquire(deadline);
+        long startNanos = System.nanoTime();
+        boolean dropped = false;
+        try {
+            return request.get();
+        } catch (RuntimeException e) {
+            dropped = e instanceof DeadlineExceededException || ConnectorEndpoint.isEndpointFailure(e);
+            throw e;
+        } finally {
+            release(System.nanoTime() - startNanos, sampleRtt || dropped, dropped);
+        }
+    }
+
+    private void acquire(Deadline deadline) {
+        lock.lock();
+        try {
+            if (inFlightRequests < concurrencyLimit.getLimit()) {
+                inFlightRequests++;
+                return;
+            }
+            long waitNanos = Math.min(maxQueueTimeNanos, TimeUnit.MILLISECONDS.toNanos(deadline.getRemainingMillis()));
+            if (waitNanos <= 0 || queuedRequests >= maxQueueSize) {
+                throw reject();
+            }
+            queuedRequests++;
+            try {
+                while (inFlightRequests >= concurrencyLimit.getLimit()) {
+                    if (waitNanos <= 0) {
+                        throw reject();
+                    }
+                    waitNanos = permitReleased.awaitNanos(waitNanos);
+                }
+                inFlightRequests++;
+            } finally {
+                queuedRequests--;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while waiting for a request slot: " + e.getMessage());
+            throw new TechnicalErrorException("Interrupted while waiting for a request slot", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ConcurrencyLimitExceededException reject() {
+        rejectedRequests++;
+        logger.debug("Concurrency limit of " + concurrencyLimit.getLimit() + " requests reached, rejecting request");
+        return new ConcurrencyLimitExceededException("Concurrency limit of " + concurrencyLimit.getLimit() + " requests reached");
+    }
+
+    private void release(long rttNanos, boolean sampleRtt, boolean dropped) {
+        lock.lock();
+        try {
+            if (sampleRtt) {
+                int previousLimit = concurrencyLimit.getLimit();
+                concurrencyLimit.onSample(rttNanos, inFlightRequests, dropped);
+                if (concurrencyLimit.getLimit() != previousLimit) {
+                    logger.debug("Concurrency limit changed from " + previousLimit + " to " + concurrencyLimit.getLimit());
+                }
+            }
+            inFlightRequests--;
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static ConcurrencyLimitingMobileIdConnectorBuilder newBuilder() {
+        return new ConcurrencyLimitingMobileIdConnectorBuilder();
+    }
+
+    public static class ConcurrencyLimitingMobileIdConnectorBuilder {
+        private MobileIdConnector connector;
+        private int initialLimit = 20;
+        private int minLimit = 1;
+        private int maxLimit = 200;
+        private Duration maxQueueTime = Duration.ofSeconds(1);
+        private int maxQueueSize = 100;
+
+        private ConcurrencyLimitingMobileIdConnectorBuilder() {}
+
+        public ConcurrencyLimitingMobileIdConnectorBuilder withConnector(MobileIdConnector connector) {
+            this.connector = connector;
+            return this;
+        }
+
+        public ConcurrencyLimitingMobileIdConnectorBuilder withInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        public ConcurrencyLimitingMobileIdConnectorBuilder withMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        public ConcurrencyLimitingMobileIdConnectorBuilder withMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        public ConcurrencyLimitingMobileIdConnectorBuilder withMaxQueueTime(Duration maxQueueTime) {
+            this.maxQueueTime = maxQueueTime;
+            return this;
+        }
+
+        public ConcurrencyLimitingMobileIdConnectorBuilder withMaxQueueSize(int maxQueueSize) {
+            this.maxQueueSize = maxQueueSize;
+            return this;
+        }
+
+        public ConcurrencyLimitingMobileIdConnector build() {
+            return new ConcurrencyLimitingMobileIdConnector(this);
+        }
+    }
+}
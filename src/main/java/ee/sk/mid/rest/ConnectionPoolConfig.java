@@ -0,0 +1,118 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+public class ConnectionPoolConfig {
+
+    private int maxTotalConnections;
+    private int maxConnectionsPerRoute;
+    private int connectionTimeToLiveSeconds;
+    private int idleConnectionEvictionSeconds;
+    private int validateAfterInactivityMillis;
+
+    private ConnectionPoolConfig(ConnectionPoolConfigBuilder builder) {
+        this.maxTotalConnections = builder.maxTotalConnections;
+        this.maxConnectionsPerRoute = builder.maxConnectionsPerRoute;
+        this.connectionTimeToLiveSeconds = builder.connectionTimeToLiveSeconds;
+        this.idleConnectionEvictionSeconds = builder.idleConnectionEvictionSeconds;
+        this.validateAfterInactivityMillis = builder.validateAfterInactivityMillis;
+    }
+
+    public int getMaxTotalConnections() {
+        return maxTotalConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public int getConnectionTimeToLiveSeconds() {
+        return connectionTimeToLiveSeconds;
+    }
+
+    public int getIdleConnectionEvictionSeconds() {
+        return idleConnectionEvictionSeconds;
+    }
+
+    public int getValidateAfterInactivityMillis() {
+        return validateAfterInactivityMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPoolConfig{" +
+                "maxTotalConnections=" + maxTotalConnections +
+                ", maxConnectionsPerRoute=" + maxConnectionsPerRoute +
+                ", connectionTimeToLiveSeconds=" + connectionTimeToLiveSeconds +
+                ", idleConnectionEvictionSeconds=" + idleConnectionEvictionSeconds +
+                ", validateAfterInactivityMillis=" + validateAfterInactivityMillis +
+                '}';
+    }
+
+    public static ConnectionPoolConfigBuilder newBuilder() {
+        return new ConnectionPoolConfigBuilder();
+    }
+
+    public static class ConnectionPoolConfigBuilder {
+        private int maxTotalConnections = 20;
+        private int maxConnectionsPerRoute = 20;
+        private int connectionTimeToLiveSeconds = 60;
+        private int idleConnectionEvictionSeconds = 30;
+        private int validateAfterInactivityMillis = 2000;
+
+        private ConnectionPoolConfigBuilder() {}
+
+        public ConnectionPoolConfigBuilder withMaxTotalConnections(int maxTotalConnections) {
+            this.maxTotalConnections = maxTotalConnections;
+            return this;
+        }
+
+        public ConnectionPoolConfigBuilder withMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+            return this;
+        }
+
+        public ConnectionPoolConfigBuilder withConnectionTimeToLiveSeconds(int connectionTimeToLiveSeconds) {
+            this.connectionTimeToLiveSeconds = connectionTimeToLiveSeconds;
+            return this;
+        }
+
+        public ConnectionPoolConfigBuilder withIdleConnectionEvictionSeconds(int idleConnectionEvictionSeconds) {
+            this.idleConnectionEvictionSeconds = idleConnectionEvictionSeconds;
+            return this;
+        }
+
+        public ConnectionPoolConfigBuilder withValidateAfterInactivityMillis(int validateAfterInactivityMillis) {
+            this.validateAfterInactivityMillis = validateAfterInactivityMillis;
+            return this;
+        }
+
+        public ConnectionPoolConfig build() {
+            return new ConnectionPoolConfig(this);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.exception.ResponseRetrievingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.WebApplicationException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ConnectorEndpoint {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectorEndpoint.class);
+    private static final double ERROR_PENALTY = 10.0;
+    private static final double MIN_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final String name;
+    private final MobileIdConnector connector;
+    private final CompositeMobileIdConnector.EndpointHealthConfig config;
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+
+    private double latencyNanos;
+    private double errorRate;
+    private long lastUpdateNanos = System.nanoTime();
+    private int consecutiveFailures;
+    private int consecutiveEjections;
+    private long ejections;
+    private long ejectedUntilNanos;
+    private boolean ejected;
+
+    ConnectorEndpoint(String name, MobileIdConnector connector, CompositeMobileIdConnector.EndpointHealthConfig config) {
+        this.name = name;
+        this.connector = connector;
+        this.config = config;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    MobileIdConnector getConnector() {
+        return connector;
+    }
+
+    long start() {
+        inFlightRequests.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    void onSuccess(long startNanos, boolean recordLatency) {
+        long now = System.nanoTime();
+        inFlightRequests.decrementAndGet();
+        synchronized (this) {
+            if (recordLatency) {
+                updateLatency(now - startNanos, now);
+            }
+            errorRate = (1 - config.alpha) * errorRate;
+            consecutiveFailures = 0;
+            if (ejected && now - ejectedUntilNanos >= 0) {
+                logger.info("Endpoint " + name + " is readmitted");
+                ejected = false;
+                consecutiveEjections = 0;
+            }
+        }
+    }
+
+    void onFailure(long startNanos, RuntimeException e) {
+        long now = System.nanoTime();
+        inFlightRequests.decrementAndGet();
+        synchronized (this) {
+            updateLatency(now - startNanos, now);
+            if (ejected && now - ejectedUntilNanos < 0) {
+                return;
+            }
+            errorRate = config.alpha + (1 - config.alpha) * errorRate;
+            consecutiveFailures++;
+            boolean onProbation = ejected && now - ejectedUntilNanos >= 0;
+            if (onProbation || consecutiveFailures >= config.consecutiveFailuresToEject || errorRate >= config.errorRateToEject) {
+                eject(now, e);
+            }
+        }
+    }
+
+    void onTimeout(long startNanos) {
+        long now = System.nanoTime();
+        inFlightRequests.decrementAndGet();
+        synchronized (this) {
+            updateLatency(now - startNanos, now);
+        }
+    }
+
+    synchronized boolean isAvailable(long now) {
+        return !ejected || now - ejectedUntilNanos >= 0;
+    }
+
+    synchronized long getEjectedUntilNanos() {
+        return ejectedUntilNanos;
+    }
+
+    synchronized double score(long now) {
+        double decay = Math.exp(-(double) (now - lastUpdateNanos) / config.latencyDecayNanos);
+        return Math.max(latencyNanos * decay, MIN_LATENCY_NANOS) * (inFlightRequests.get() + 1) * (1 + ERROR_PENALTY * errorRate);
+    }
+
+    synchronized EndpointStats getStats() {
+        return new EndpointStats(name, latencyNanos / TimeUnit.MILLISECONDS.toNanos(1), errorRate, inFlightRequests.get(), ejected, ejections);
+    }
+
+    private void updateLatency(long elapsedNanos, long now) {
+        latencyNanos = latencyNanos == 0 ? elapsedNanos : config.alpha * elapsedNanos + (1 - config.alpha) * latencyNanos;
+        lastUpdateNanos = now;
+    }
+
+    private void eject(long now, RuntimeException e) {
+        long ejectionNanos = Math.min(config.maxEjectionNanos, config.baseEjectionNanos << Math.min(consecutiveEjections, 20));
+        ejected = true;
+        ejectedUntilNanos = now + ejectionNanos;
+        consecutiveEjections++;
+        ejections++;
+        consecutiveFailures = 0;
+        logger.warn("Endpoint " + name + " is ejected for " + TimeUnit.NANOSECONDS.toMillis(ejectionNanos) + " ms: " + e.getMessage());
+    }
+
+    static boolean isEndpointFailure(RuntimeException e) {
+        if (e instanceof ProcessingException || e instanceof ResponseRetrievingException) {
+            return true;
+        }
+        return e instanceof WebApplicationException && ((WebApplicationException) e).getResponse().getStatus() >= 500;
+    }
+
+    static boolean isConnectFailure(RuntimeException e) {
+        if (!(e instanceof ProcessingException)) {
+            return false;
+        }
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof NoRouteToHostException || cause instanceof UnknownHostException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
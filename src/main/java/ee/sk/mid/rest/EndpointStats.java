@@ -0,0 +1,82 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+public class EndpointStats {
+
+    private final String endpoint;
+    private final double latencyMillis;
+    private final double errorRate;
+    private final int inFlightRequests;
+    private final boolean ejected;
+    private final long ejections;
+
+    public EndpointStats(String endpoint, double latencyMillis, double errorRate, int inFlightRequests, boolean ejected, long ejections) {
+        this.endpoint = endpoint;
+        this.latencyMillis = latencyMillis;
+        this.errorRate = errorRate;
+        this.inFlightRequests = inFlightRequests;
+        this.ejected = ejected;
+        this.ejections = ejections;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public double getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public int getInFlightRequests() {
+        return inFlightRequests;
+    }
+
+    public boolean isEjected() {
+        return ejected;
+    }
+
+    public long getEjections() {
+        return ejections;
+    }
+
+    @Override
+    public String toString() {
+        return "EndpointStats{" +
+                "endpoint='" + endpoint + '\'' +
+                ", latencyMillis=" + latencyMillis +
+                ", errorRate=" + errorRate +
+                ", inFlightRequests=" + inFlightRequests +
+                ", ejected=" + ejected +
+                ", ejections=" + ejections +
+                '}';
+    }
+}
@@ -0,0 +1,62 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import java.time.Duration;
+
+public class FixedPollingStrategy implements PollingStrategy {
+
+    private final Duration initialDelay;
+    private final Duration interval;
+
+    public FixedPollingStrategy(Duration interval) {
+        this(Duration.ZERO, interval);
+    }
+
+    public FixedPollingStrategy(Duration initialDelay, Duration interval) {
+        this.initialDelay = initialDelay;
+        this.interval = interval;
+    }
+
+    @Override
+    public Duration getInitialDelay() {
+        return initialDelay;
+    }
+
+    @Override
+    public Duration getNextDelay(Duration elapsed) {
+        return interval;
+    }
+
+    @Override
+    public String toString() {
+        return "FixedPollingStrategy{" +
+                "initialDelay=" + initialDelay +
+                ", interval=" + interval +
+                '}';
+    }
+}
@@ -0,0 +1,454 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.exception.SessionNotFoundException;
+import ee.sk.mid.exception.TechnicalErrorException;
+import ee.sk.mid.rest.dao.SessionStatus;
+import ee.sk.mid.rest.dao.request.AuthenticationRequest;
+import ee.sk.mid.rest.dao.request.CertificateRequest;
+import ee.sk.mid.rest.dao.request.SessionStatusRequest;
+import ee.sk.mid.rest.dao.request.SignatureRequest;
+import ee.sk.mid.rest.dao.response.AuthenticationResponse;
+import ee.sk.mid.rest.dao.response.CertificateChoiceResponse;
+import ee.sk.mid.rest.dao.response.SignatureResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public class HedgingMobileIdConnector implements MobileIdConnector, MobileIdAsyncConnector, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(HedgingMobileIdConnector.class);
+    private static final int LATENCY_WINDOW = 512;
+
+    private final MobileIdConnector connector;
+    private final MobileIdConnector hedgeConnector;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final LatencyPercentileTracker latencyTracker;
+    private final long initialHedgeDelayNanos;
+    private final long minHedgeDelayNanos;
+    private final int minSamples;
+    private final RequestBudget hedgeBudget;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hedgedRequests = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    private HedgingMobileIdConnector(HedgingMobileIdConnectorBuilder builder) {
+        if (builder.connector == null) {
+            throw new TechnicalErrorException("Connector to hedge requests on must be set");
+        }
+        this.connector = builder.connector;
+        this.hedgeConnector = builder.hedgeConnector != null ? builder.hedgeConnector : builder.connector;
+        this.ownsScheduler = builder.scheduler == null;
+        this.scheduler = ownsScheduler ? Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("mid-hedge-timer")) : builder.scheduler;
+        this.ownsExecutor = builder.executor == null;
+        this.executor = ownsExecutor ? createRequestExecutor(builder.requestThreads) : builder.executor;
+        this.latencyTracker = new LatencyPercentileTracker(LATENCY_WINDOW, builder.latencyPercentile);
+        this.initialHedgeDelayNanos = builder.initialHedgeDelay.toNanos();
+        this.minHedgeDelayNanos = builder.minHedgeDelay.toNanos();
+        this.minSamples = builder.minSamples;
+        this.hedgeBudget = new RequestBudget(builder.maxHedgeRatio);
+    }
+
+    @Override
+    public CertificateChoiceResponse getCertificate(CertificateRequest request) {
+        return connector.getCertificate(request);
+    }
+
+    @Override
+    public SignatureResponse sign(SignatureRequest request) {
+        return connector.sign(request);
+    }
+
+    @Override
+    public SignatureResponse sign(SignatureRequest request, Deadline deadline) {
+        return connector.sign(request, deadline);
+    }
+
+    @Override
+    public AuthenticationResponse authenticate(AuthenticationRequest request) {
+        return connector.authenticate(request);
+    }
+
+    @Override
+    public AuthenticationResponse authenticate(AuthenticationRequest request, Deadline deadline) {
+        return connector.authenticate(request, deadline);
+    }
+
+    @Override
+    public SessionStatus getSessionStatus(SessionStatusRequest request, String path) throws SessionNotFoundException {
+        return getSessionStatus(request, path, Deadline.none());
+    }
+
+    @Override
+    public SessionStatus getSessionStatus(SessionStatusRequest request, String path, Deadline deadline) throws SessionNotFoundException {
+        if (request.isLongPolling()) {
+            return connector.getSessionStatus(request, path, deadline);
+        }
+        return await(getSessionStatusAsync(request, path, deadline));
+    }
+
+    @Override
+    public SessionStatus getAuthenticationSessionStatus(SessionStatusRequest request) throws SessionNotFoundException {
+        return getSessionStatus(request, SessionStatusPoller.AUTHENTICATION_SESSION_PATH);
+    }
+
+    @Override
+    public SessionStatus getSignatureSessionStatus(SessionStatusRequest request) throws SessionNotFoundException {
+        return getSessionStatus(request, SessionStatusPoller.SIGNATURE_SESSION_PATH);
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+        return MobileIdAsyncConnector.supportsAsync(connector);
+    }
+
+    @Override
+    public CompletableFuture<CertificateChoiceResponse> getCertificateAsync(CertificateRequest request) {
+        if (!isAsyncSupported()) {
+            return AsyncCalls.callBlocking(() -> getCertificate(request));
+        }
+        return ((MobileIdAsyncConnector) connector).getCertificateAsync(request);
+    }
+
+    @Override
+    public CompletableFuture<SignatureResponse> signAsync(SignatureRequest request) {
+        return signAsync(request, Deadline.none());
+    }
+
+    @Override
+    public CompletableFuture<SignatureResponse> signAsync(SignatureRequest request, Deadline deadline) {
+        if (!isAsyncSupported()) {
+            return AsyncCalls.callBlocking(() -> sign(request, deadline));
+        }
+        return ((MobileIdAsyncConnector) connector).signAsync(request, deadline);
+    }
+
+    @Override
+    public CompletableFuture<AuthenticationResponse> authenticateAsync(AuthenticationRequest request) {
+        return authenticateAsync(request, Deadline.none());
+    }
+
+    @Override
+    public CompletableFuture<AuthenticationResponse> authenticateAsync(AuthenticationRequest request, Deadline deadline) {
+        if (!isAsyncSupported()) {
+            return AsyncCalls.callBlocking(() -> authenticate(request, deadline));
+        }
+        return ((MobileIdAsyncConnector) connector).authenticateAsync(request, deadline);
+    }
+
+    @Override
+    public CompletableFuture<SessionStatus> getSessionStatusAsync(SessionStatusRequest request, String path) {
+        return getSessionStatusAsync(request, path, Deadline.none());
+    }
+
+    @Override
+    public CompletableFuture<SessionStatus> getSessionStatusAsync(SessionStatusRequest request, String path, Deadline deadline) {
+        if (request.isLongPolling()) {
+            if (!isAsyncSupported()) {
+                return AsyncCalls.callBlocking(() -> connector.getSessionStatus(request, path, deadline));
+            }
+            return ((MobileIdAsyncConnector) connector).getSessionStatusAsync(request, path, deadline);
+        }
+        requests.increment();
+        hedgeBudget.deposit();
+        CompletableFuture<SessionStatus> primary;
+        try {
+            primary = sendPrimary(request, path, deadline);
+        } catch (RejectedExecutionException e) {
+            logger.debug("No thread is free for session status request, sending it on the calling thread without hedging");
+            return AsyncCalls.callBlocking(() -> connector.getSessionStatus(request, path, deadline));
+        }
+        return hedge(primary, request, path, deadline);
+    }
+
+    public HedgingStats getStats() {
+        return new HedgingStats(requests.sum(), hedgedRequests.sum(), hedgeWins.sum(), TimeUnit.NANOSECONDS.toMillis(getHedgeDelayNanos()));
+    }
+
+    @Override
+    public void close() {
+        if (ownsScheduler) {
+            scheduler.shutdownNow();
+        }
+        if (ownsExecutor) {
+            executor.shutdownNow();
+        }
+    }
+
+    private CompletableFuture<SessionStatus> hedge(CompletableFuture<SessionStatus> primary, SessionStatusRequest request, String path, Deadline deadline) {
+        HedgedRequest hedgedRequest = new HedgedRequest(primary);
+        if (!primary.isDone()) {
+            hedgedRequest.hedgeTask = scheduleHedge(() -> {
+                if (hedgedRequest.result.isDone() || !tryAcquireHedge()) {
+                    return;
+                }
+                logger.debug("Session status request for " + request.getSessionID() + " is slow, sending hedged request");
+                hedgedRequest.addHedge(sendHedge(request, path, deadline));
+            });
+        }
+        return hedgedRequest.result;
+    }
+
+    private CompletableFuture<SessionStatus> sendPrimary(SessionStatusRequest request, String path, Deadline deadline) {
+        if (isAsyncSupported()) {
+            return ((MobileIdAsyncConnector) connector).getSessionStatusAsync(request, path, deadline);
+        }
+        return submit(connector, request, path, deadline);
+    }
+
+    private CompletableFuture<SessionStatus> sendHedge(SessionStatusRequest request, String path, Deadline deadline) {
+        if (MobileIdAsyncConnector.supportsAsync(hedgeConnector)) {
+            return ((MobileIdAsyncConnector) hedgeConnector).getSessionStatusAsync(request, path, deadline);
+        }
+        try {
+            return submit(hedgeConnector, request, path, deadline);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<SessionStatus> hedge = new CompletableFuture<>();
+            hedge.completeExceptionally(e);
+            return hedge;
+        }
+    }
+
+    private CompletableFuture<SessionStatus> submit(MobileIdConnector target, SessionStatusRequest request, String path, Deadline deadline) {
+        CompletableFuture<SessionStatus> response = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            try {
+                response.complete(target.getSessionStatus(request, path, deadline));
+            } catch (RuntimeException e) {
+                response.completeExceptionally(e);
+            }
+        });
+        response.whenComplete((sessionStatus, throwable) -> {
+            if (response.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return response;
+    }
+
+    private ScheduledFuture<?> scheduleHedge(Runnable hedgeTask) {
+        try {
+            return scheduler.schedule(hedgeTask, getHedgeDelayNanos(), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Hedged request could not be scheduled: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private long getHedgeDelayNanos() {
+        if (latencyTracker.getSampleCount() < minSamples) {
+            return initialHedgeDelayNanos;
+        }
+        return Math.max(minHedgeDelayNanos, latencyTracker.getPercentileNanos());
+    }
+
+    private boolean tryAcquireHedge() {
+        if (!hedgeBudget.tryAcquire()) {
+            logger.debug("Hedging budget is exhausted");
+            return false;
+        }
+        hedgedRequests.increment();
+        return true;
+    }
+
+    private static SessionStatus await(CompletableFuture<SessionStatus> sessionStatus) {
+        try {
+            return sessionStatus.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            sessionStatus.cancel(true);
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while waiting for session status: " + e.getMessage());
+            throw new TechnicalErrorException("Interrupted while waiting for session status", e);
+        }
+    }
+
+    private static RuntimeException unwrap(ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+            return (RuntimeException) e.getCause();
+        }
+        return new TechnicalErrorException("Failed to get session status: " + e.getCause().getMessage(), e.getCause());
+    }
+
+    private class HedgedRequest {
+        private final long startNanos = System.nanoTime();
+        private final CompletableFuture<SessionStatus> result = new CompletableFuture<>();
+        private final CompletableFuture<SessionStatus> primary;
+        private final AtomicInteger outstanding = new AtomicInteger(1);
+        private final AtomicBoolean settled = new AtomicBoolean();
+        private volatile CompletableFuture<SessionStatus> hedge;
+        private volatile ScheduledFuture<?> hedgeTask;
+
+        private HedgedRequest(CompletableFuture<SessionStatus> primary) {
+            this.primary = primary;
+            completeFrom(primary, false);
+            result.whenComplete((sessionStatus, throwable) -> cancelPending());
+        }
+
+        private void addHedge(CompletableFuture<SessionStatus> hedgeResponse) {
+            outstanding.incrementAndGet();
+            hedge = hedgeResponse;
+            completeFrom(hedgeResponse, true);
+            if (result.isDone()) {
+                hedgeResponse.cancel(true);
+            }
+        }
+
+        private void completeFrom(CompletableFuture<SessionStatus> candidate, boolean isHedge) {
+            candidate.whenComplete((sessionStatus, throwable) -> {
+                if (throwable == null) {
+                    if (!isHedge) {
+                        latencyTracker.record(System.nanoTime() - startNanos);
+                    }
+                    if (settled.compareAndSet(false, true)) {
+                        if (isHedge) {
+                            hedgeWins.increment();
+                        }
+                        cancelPending();
+                        result.complete(sessionStatus);
+                    }
+                } else if (outstanding.decrementAndGet() == 0) {
+                    result.completeExceptionally(throwable);
+                }
+            });
+        }
+
+        private void cancelPending() {
+            ScheduledFuture<?> scheduledHedge = hedgeTask;
+            if (scheduledHedge != null) {
+                scheduledHedge.cancel(false);
+            }
+            primary.cancel(true);
+            CompletableFuture<SessionStatus> hedgeResponse = hedge;
+            if (hedgeResponse != null) {
+                hedgeResponse.cancel(true);
+            }
+        }
+    }
+
+    private static ExecutorService createRequestExecutor(int requestThreads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(requestThreads, requestThreads, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), new DaemonThreadFactory("mid-hedged-request"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public static HedgingMobileIdConnectorBuilder newBuilder() {
+        return new HedgingMobileIdConnectorBuilder();
+    }
+
+    public static class HedgingMobileIdConnectorBuilder {
+        private MobileIdConnector connector;
+        private MobileIdConnector hedgeConnector;
+        private ScheduledExecutorService scheduler;
+        private ExecutorService executor;
+        private int requestThreads = 64;
+        private double latencyPercentile = 0.95;
+        private Duration initialHedgeDelay = Duration.ofMillis(500);
+        private Duration minHedgeDelay = Duration.ofMillis(20);
+        private int minSamples = 20;
+        private double maxHedgeRatio = 0.1;
+
+        private HedgingMobileIdConnectorBuilder() {}
+
+        public HedgingMobileIdConnectorBuilder withConnector(MobileIdConnector connector) {
+            this.connector = connector;
+            return this;
+        }
+
+        public HedgingMobileIdConnectorBuilder withHedgeConnector(MobileIdConnector hedgeConnector) {
+            this.hedgeConnector = hedgeConnector;
+            return this;
+        }
+
+        public HedgingMobileIdConnectorBuilder withScheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        public HedgingMobileIdConnectorBuilder withExecutor(ExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public HedgingMobileIdConnectorBuilder withRequestThreads(int requestThreads) {
+            this.requestThreads = requestThreads;
+            return this;
+        }
+
+        public HedgingMobileIdConnectorBuilder withLatencyPercentile(double latencyPercentile) {
+            this.latencyPercentile = latencyPercentile;
+            return this;
+        }
+
+        public HedgingMobileIdConnectorBuilder withInitialHedgeDelay(Duration initialHedgeDelay) {
+            this.initialHedgeDelay = initialHedgeDelay;
+            return this;
+        }
+
+        public HedgingMobileIdConnectorBuilder withMinHedgeDelay(Duration minHedgeDelay) {
+            this.minHedgeDelay = minHedgeDelay;
+            return this;
+        }
+
+        public HedgingMobileIdConnectorBuilder withMinSamples(int minSamples) {
+            this.minSamples = minSamples;
+            return this;
+        }
+
+        public HedgingMobileIdConnectorBuilder withMaxHedgeRatio(double maxHedgeRatio) {
+            this.maxHedgeRatio = maxHedgeRatio;
+            return this;
+        }
+
+        public HedgingMobileIdConnector build() {
+            return new HedgingMobileIdConnector(this);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+public class HedgingStats {
+
+    private final long requests;
+    private final long hedgedRequests;
+    private final long hedgeWins;
+    private final long hedgeDelayMillis;
+
+    public HedgingStats(long requests, long hedgedRequests, long hedgeWins, long hedgeDelayMillis) {
+        this.requests = requests;
+        this.hedgedRequests = hedgedRequests;
+        this.hedgeWins = hedgeWins;
+        this.hedgeDelayMillis = hedgeDelayMillis;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public long getHedgedRequests() {
+        return hedgedRequests;
+    }
+
+    public long getHedgeWins() {
+        return hedgeWins;
+    }
+
+    public long getHedgeDelayMillis() {
+        return hedgeDelayMillis;
+    }
+
+    public double getHedgeRate() {
+        return requests == 0 ? 0 : (double) hedgedRequests / requests;
+    }
+
+    public double getWinRate() {
+        return hedgedRequests == 0 ? 0 : (double) hedgeWins / hedgedRequests;
+    }
+
+    @Override
+    public String toString() {
+        return "HedgingStats{" +
+                "requests=" + requests +
+                ", hedgedRequests=" + hedgedRequests +
+                ", hedgeWins=" + hedgeWins +
+                ", hedgeDelayMillis=" + hedgeDelayMillis +
+                ", hedgeRate=" + getHedgeRate() +
+                ", winRate=" + getWinRate() +
+                '}';
+    }
+}
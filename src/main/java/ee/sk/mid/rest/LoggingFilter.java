@@ -102,10 +102,19 @@ public class LoggingFilter implements ClientRequestFilter, ClientResponseFilter,
         Charset charset = MessageUtils.getCharset(responseContext.getMediaType());
         InputStream entityStream = responseContext.getEntityStream();
         byte[] bodyBytes = readInputStreamBytes(entityStream);
+        closeEntityStream(entityStream);
         responseContext.setEntityStream(new ByteArrayInputStream(bodyBytes));
         logger.trace("Response body: " + new String(bodyBytes, charset));
     }
 
+    private void closeEntityStream(InputStream entityStream) {
+        try {
+            entityStream.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close response entity stream: " + e.getMessage());
+        }
+    }
+
     private byte[] readInputStreamBytes(InputStream entityStream) throws IOException {
         ByteArrayOutputStream result = new ByteArrayOutputStream();
         byte[] buffer = new byte[1024];
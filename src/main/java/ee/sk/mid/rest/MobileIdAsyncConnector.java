@@ -0,0 +1,77 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.rest.dao.SessionStatus;
+import ee.sk.mid.rest.dao.request.AuthenticationRequest;
+import ee.sk.mid.rest.dao.request.CertificateRequest;
+import ee.sk.mid.rest.dao.request.SessionStatusRequest;
+import ee.sk.mid.rest.dao.request.SignatureRequest;
+import ee.sk.mid.rest.dao.response.AuthenticationResponse;
+import ee.sk.mid.rest.dao.response.CertificateChoiceResponse;
+import ee.sk.mid.rest.dao.response.SignatureResponse;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface MobileIdAsyncConnector {
+
+    CompletableFuture<CertificateChoiceResponse> getCertificateAsync(CertificateRequest request);
+
+    CompletableFuture<SignatureResponse> signAsync(SignatureRequest request);
+
+    CompletableFuture<AuthenticationResponse> authenticateAsync(AuthenticationRequest request);
+
+    CompletableFuture<SessionStatus> getSessionStatusAsync(SessionStatusRequest request, String path);
+
+    default boolean isAsyncSupported() {
+        return true;
+    }
+
+    default CompletableFuture<SignatureResponse> signAsync(SignatureRequest request, Deadline deadline) {
+        return deadline.isExpired() ? deadline.expiredFuture("signature request") : signAsync(request);
+    }
+
+    default CompletableFuture<AuthenticationResponse> authenticateAsync(AuthenticationRequest request, Deadline deadline) {
+        return deadline.isExpired() ? deadline.expiredFuture("authentication request") : authenticateAsync(request);
+    }
+
+    default CompletableFuture<SessionStatus> getSessionStatusAsync(SessionStatusRequest request, String path, Deadline deadline) {
+        return deadline.isExpired() ? deadline.expiredFuture("session status request") : getSessionStatusAsync(request, path);
+    }
+
+    default CompletableFuture<SessionStatus> getAuthenticationSessionStatusAsync(SessionStatusRequest request) {
+        return getSessionStatusAsync(request, SessionStatusPoller.AUTHENTICATION_SESSION_PATH);
+    }
+
+    default CompletableFuture<SessionStatus> getSignatureSessionStatusAsync(SessionStatusRequest request) {
+        return getSessionStatusAsync(request, SessionStatusPoller.SIGNATURE_SESSION_PATH);
+    }
+
+    static boolean supportsAsync(MobileIdConnector connector) {
+        return connector instanceof MobileIdAsyncConnector && ((MobileIdAsyncConnector) connector).isAsyncSupported();
+    }
+}
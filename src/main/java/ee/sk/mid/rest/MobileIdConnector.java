@@ -49,4 +49,19 @@ public interface MobileIdConnector {
     SessionStatus getAuthenticationSessionStatus(SessionStatusRequest request) throws SessionNotFoundException;
 
     SessionStatus getSignatureSessionStatus(SessionStatusRequest request) throws SessionNotFoundException;
+
+    default SignatureResponse sign(SignatureRequest request, Deadline deadline) {
+        deadline.checkNotExpired("signature request");
+        return sign(request);
+    }
+
+    default AuthenticationResponse authenticate(AuthenticationRequest request, Deadline deadline) {
+        deadline.checkNotExpired("authentication request");
+        return authenticate(request);
+    }
+
+    default SessionStatus getSessionStatus(SessionStatusRequest request, String path, Deadline deadline) throws SessionNotFoundException {
+        deadline.checkNotExpired("session status request");
+        return getSessionStatus(request, path);
+    }
 }
@@ -36,70 +36,91 @@ import ee.sk.mid.rest.dao.response.AuthenticationResponse;
 import ee.sk.mid.rest.dao.response.CertificateChoiceResponse;
 import ee.sk.mid.rest.dao.response.SignatureResponse;
 import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.ws.rs.BadRequestException;
-import javax.ws.rs.InternalServerErrorException;
-import javax.ws.rs.NotAuthorizedException;
-import javax.ws.rs.NotFoundException;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.InvocationCallback;
+import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
-import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.core.Response;
+import java.io.Closeable;
 import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
 
-public class MobileIdRestConnector implements MobileIdConnector {
+public class MobileIdRestConnector implements MobileIdConnector, MobileIdAsyncConnector, Closeable {
 
     private static final Logger logger = LoggerFactory.getLogger(MobileIdRestConnector.class);
     private static final String CERTIFICATE_PATH = "/mid-api/certificate";
     private static final String SIGNATURE_PATH = "/mid-api/signature";
     private static final String AUTHENTICATION_PATH = "/mid-api/authentication";
+    private static final int LONG_POLLING_READ_TIMEOUT_MARGIN_MILLIS = 2000;
 
-    private String endpointUrl;
-    private ClientConfig clientConfig;
+    private final String endpointUrl;
+    private final Client client;
+    private final Client sessionStatusClient;
+    private final Executor completionExecutor;
+    private final ConcurrentMap<String, WebTarget> targets = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, WebTarget> sessionStatusTargets;
 
     public MobileIdRestConnector(String endpointUrl) {
-        this.endpointUrl = endpointUrl;
+        this(endpointUrl, null);
     }
 
     public MobileIdRestConnector(String endpointUrl, ClientConfig clientConfig) {
-        this(endpointUrl);
-        this.clientConfig = clientConfig;
+        this(endpointUrl, clientConfig, null);
+    }
+
+    public MobileIdRestConnector(String endpointUrl, ClientConfig clientConfig, Executor completionExecutor) {
+        this(endpointUrl, clientConfig, null, completionExecutor);
+    }
+
+    public MobileIdRestConnector(String endpointUrl, ClientConfig clientConfig, ClientConfig sessionStatusClientConfig, Executor completionExecutor) {
+        this.endpointUrl = endpointUrl;
+        this.client = createClient(clientConfig);
+        this.sessionStatusClient = sessionStatusClientConfig == null ? client : createClient(sessionStatusClientConfig);
+        this.sessionStatusTargets = sessionStatusClient == client ? targets : new ConcurrentHashMap<>();
+        this.completionExecutor = completionExecutor;
     }
 
     @Override
     public CertificateChoiceResponse getCertificate(CertificateRequest request) {
         logger.debug("Getting certificate for phone number: " + request.getPhoneNumber());
-        URI uri = UriBuilder
-                .fromUri(endpointUrl)
-                .path(CERTIFICATE_PATH)
-                .build();
-        return postCertificateRequest(uri, request);
+        return postCertificateRequest(getTarget(client, targets, CERTIFICATE_PATH), request);
     }
 
     @Override
     public SignatureResponse sign(SignatureRequest request) {
+        return sign(request, Deadline.none());
+    }
+
+    @Override
+    public SignatureResponse sign(SignatureRequest request, Deadline deadline) {
         logger.debug("Signing for phone number: " + request.getPhoneNumber());
-        URI uri = UriBuilder
-                .fromUri(endpointUrl)
-                .path(SIGNATURE_PATH)
-                .build();
-        return postSignatureRequest(uri, request);
+        return postSignatureRequest(getTarget(client, targets, SIGNATURE_PATH), request, deadline);
     }
 
     @Override
     public AuthenticationResponse authenticate(AuthenticationRequest request) {
+        return authenticate(request, Deadline.none());
+    }
+
+    @Override
+    public AuthenticationResponse authenticate(AuthenticationRequest request, Deadline deadline) {
         logger.debug("Authenticating for phone number " + request.getPhoneNumber());
-        URI uri = UriBuilder
-                .fromUri(endpointUrl)
-                .path(AUTHENTICATION_PATH)
-                .build();
-        return postAuthenticationRequest(uri, request);
+        return postAuthenticationRequest(getTarget(client, targets, AUTHENTICATION_PATH), request, deadline);
     }
 
     @Override
@@ -114,56 +135,272 @@ public class MobileIdRestConnector implements MobileIdConnector {
 
     @Override
     public SessionStatus getSessionStatus(SessionStatusRequest request, String path) throws SessionNotFoundException {
+        return getSessionStatus(request, path, Deadline.none());
+    }
+
+    @Override
+    public SessionStatus getSessionStatus(SessionStatusRequest request, String path, Deadline deadline) throws SessionNotFoundException {
         logger.debug("Getting session status for " + request.getSessionID());
-        UriBuilder uriBuilder = UriBuilder
-                .fromUri(endpointUrl)
-                .path(path);
-        URI uri = uriBuilder.build(request.getSessionID());
+        deadline.checkNotExpired("session status request");
         try {
-            return prepareClient(uri).get(SessionStatus.class);
-        } catch (NotFoundException e) {
-            logger.error("Session " + request + " not found: " + e.getMessage());
-            throw new SessionNotFoundException();
+            return prepareSessionStatusRequest(request, path, deadline).get(SessionStatus.class);
+        } catch (WebApplicationException e) {
+            throw translateSessionStatusException(request, e);
+        } catch (ProcessingException e) {
+            throw translateProcessingException("session status request", deadline, e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<CertificateChoiceResponse> getCertificateAsync(CertificateRequest request) {
+        logger.debug("Getting certificate asynchronously for phone number: " + request.getPhoneNumber());
+        return postRequestAsync(getTarget(client, targets, CERTIFICATE_PATH), request, CertificateChoiceResponse.class, Deadline.none());
+    }
+
+    @Override
+    public CompletableFuture<SignatureResponse> signAsync(SignatureRequest request) {
+        return signAsync(request, Deadline.none());
+    }
+
+    @Override
+    public CompletableFuture<SignatureResponse> signAsync(SignatureRequest request, Deadline deadline) {
+        logger.debug("Signing asynchronously for phone number: " + request.getPhoneNumber());
+        return postRequestAsync(getTarget(client, targets, SIGNATURE_PATH), request, SignatureResponse.class, deadline);
+    }
+
+    @Override
+    public CompletableFuture<AuthenticationResponse> authenticateAsync(AuthenticationRequest request) {
+        return authenticateAsync(request, Deadline.none());
+    }
+
+    @Override
+    public CompletableFuture<AuthenticationResponse> authenticateAsync(AuthenticationRequest request, Deadline deadline) {
+        logger.debug("Authenticating asynchronously for phone number " + request.getPhoneNumber());
+        return postRequestAsync(getTarget(client, targets, AUTHENTICATION_PATH), request, AuthenticationResponse.class, deadline);
+    }
+
+    @Override
+    public CompletableFuture<SessionStatus> getSessionStatusAsync(SessionStatusRequest request, String path) {
+        return getSessionStatusAsync(request, path, Deadline.none());
+    }
+
+    @Override
+    public CompletableFuture<SessionStatus> getSessionStatusAsync(final SessionStatusRequest request, String path, Deadline deadline) {
+        logger.debug("Getting session status asynchronously for " + request.getSessionID());
+        if (deadline.isExpired()) {
+            return deadline.expiredFuture("session status request");
         }
+        final CompletableFuture<SessionStatus> future = new CompletableFuture<>();
+        Future<Response> invocation = prepareSessionStatusRequest(request, path, deadline).async().get(new ResponseCallback<SessionStatus>(future, SessionStatus.class, "session status request", deadline) {
+            @Override
+            RuntimeException translate(WebApplicationException e) {
+                return translateSessionStatusException(request, e);
+            }
+        });
+        return cancelOnCancellation(future, invocation);
     }
 
-    private CertificateChoiceResponse postCertificateRequest(URI uri, CertificateRequest request) {
-        return postRequest(uri, request, CertificateChoiceResponse.class);
+    @Override
+    public void close() {
+        logger.debug("Closing client for " + endpointUrl);
+        client.close();
+        if (sessionStatusClient != client) {
+            sessionStatusClient.close();
+        }
     }
 
-    private SignatureResponse postSignatureRequest(URI uri, SignatureRequest request) {
-        return postRequest(uri, request, SignatureResponse.class);
+    private CertificateChoiceResponse postCertificateRequest(WebTarget target, CertificateRequest request) {
+        return postRequest(target, request, CertificateChoiceResponse.class, Deadline.none());
     }
 
-    private AuthenticationResponse postAuthenticationRequest(URI uri, AuthenticationRequest request) {
-        return postRequest(uri, request, AuthenticationResponse.class);
+    private SignatureResponse postSignatureRequest(WebTarget target, SignatureRequest request, Deadline deadline) {
+        return postRequest(target, request, SignatureResponse.class, deadline);
     }
 
-    private <T, V> T postRequest(URI uri, V request, Class<T> responseType) throws MobileIdException {
+    private AuthenticationResponse postAuthenticationRequest(WebTarget target, AuthenticationRequest request, Deadline deadline) {
+        return postRequest(target, request, AuthenticationResponse.class, deadline);
+    }
+
+    private <T, V> T postRequest(WebTarget target, V request, Class<T> responseType, Deadline deadline) throws MobileIdException {
+        deadline.checkNotExpired("request to " + target.getUri());
         try {
             Entity<V> requestEntity = Entity.entity(request, MediaType.APPLICATION_JSON);
-            return prepareClient(uri).post(requestEntity, responseType);
-        } catch (InternalServerErrorException e) {
-            logger.error("Error getting response from cert-store/MSSP for URI " + uri + ": " + e.getMessage());
-            throw new ResponseRetrievingException();
-        } catch (NotFoundException e) {
-            logger.error("Response not found for URI " + uri + ": " + e.getMessage());
-            throw new ResponseNotFoundException();
-        } catch (BadRequestException e) {
-            logger.error("Request is invalid for URI " + uri + ": " + e.getMessage());
-            throw new ParameterMissingException();
-        } catch (NotAuthorizedException e) {
-            logger.error("Request is unauthorized for URI " + uri + ": " + e.getMessage());
-            throw new UnauthorizedException();
-        }
-    }
-
-    private Invocation.Builder prepareClient(URI uri) {
-        Client client = clientConfig == null ? ClientBuilder.newClient() : ClientBuilder.newClient(clientConfig);
-        return client
-                .register(new LoggingFilter())
-                .target(uri)
+            return withDeadline(client, prepareRequest(target), deadline, configuredTimeout(client, ClientProperties.READ_TIMEOUT)).post(requestEntity, responseType);
+        } catch (WebApplicationException e) {
+            throw translatePostException(target.getUri(), e);
+        } catch (ProcessingException e) {
+            throw translateProcessingException("request to " + target.getUri(), deadline, e);
+        }
+    }
+
+    private <T, V> CompletableFuture<T> postRequestAsync(final WebTarget target, V request, Class<T> responseType, Deadline deadline) {
+        if (deadline.isExpired()) {
+            return deadline.expiredFuture("request to " + target.getUri());
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Entity<V> requestEntity = Entity.entity(request, MediaType.APPLICATION_JSON);
+        Invocation.Builder invocation = withDeadline(client, prepareRequest(target), deadline, configuredTimeout(client, ClientProperties.READ_TIMEOUT));
+        Future<Response> response = invocation.async().post(requestEntity, new ResponseCallback<T>(future, responseType, "request to " + target.getUri(), deadline) {
+            @Override
+            RuntimeException translate(WebApplicationException e) {
+                return translatePostException(target.getUri(), e);
+            }
+        });
+        return cancelOnCancellation(future, response);
+    }
+
+    private RuntimeException translatePostException(URI uri, WebApplicationException e) {
+        switch (e.getResponse().getStatus()) {
+            case 500:
+                logger.error("Error getting response from cert-store/MSSP for URI " + uri + ": " + e.getMessage());
+                return new ResponseRetrievingException();
+            case 404:
+                logger.error("Response not found for URI " + uri + ": " + e.getMessage());
+                return new ResponseNotFoundException();
+            case 400:
+                logger.error("Request is invalid for URI " + uri + ": " + e.getMessage());
+                return new ParameterMissingException();
+            case 401:
+                logger.error("Request is unauthorized for URI " + uri + ": " + e.getMessage());
+                return new UnauthorizedException();
+            default:
+                return e;
+        }
+    }
+
+    private static RuntimeException translateProcessingException(String operation, Deadline deadline, ProcessingException e) {
+        if (deadline.isExpired()) {
+            logger.error("Deadline exceeded during " + operation + ": " + e.getMessage());
+            return new DeadlineExceededException("Deadline exceeded during " + operation, e);
+        }
+        return e;
+    }
+
+    private RuntimeException translateSessionStatusException(SessionStatusRequest request, WebApplicationException e) {
+        if (e.getResponse().getStatus() == 404) {
+            logger.error("Session " + request + " not found: " + e.getMessage());
+            return new SessionNotFoundException();
+        }
+        return e;
+    }
+
+    private WebTarget getTarget(Client client, ConcurrentMap<String, WebTarget> targets, String path) {
+        WebTarget target = targets.get(path);
+        if (target == null) {
+            WebTarget created = client.target(endpointUrl).path(path);
+            target = targets.putIfAbsent(path, created);
+            if (target == null) {
+                target = created;
+            }
+        }
+        return target;
+    }
+
+    private Invocation.Builder prepareSessionStatusRequest(SessionStatusRequest request, String path, Deadline deadline) {
+        WebTarget target = getTarget(sessionStatusClient, sessionStatusTargets, path).resolveTemplate("sessionId", request.getSessionID());
+        if (!request.isLongPolling()) {
+            return withDeadline(sessionStatusClient, prepareRequest(target), deadline, configuredTimeout(sessionStatusClient, ClientProperties.READ_TIMEOUT));
+        }
+        Invocation.Builder invocation = prepareRequest(target.queryParam("timeoutMs", request.getTimeoutMs()))
+                .property(ClientProperties.READ_TIMEOUT, request.getTimeoutMs() + LONG_POLLING_READ_TIMEOUT_MARGIN_MILLIS);
+        return withDeadline(sessionStatusClient, invocation, deadline, request.getTimeoutMs() + LONG_POLLING_READ_TIMEOUT_MARGIN_MILLIS);
+    }
+
+    private static Invocation.Builder withDeadline(Client client, Invocation.Builder invocation, Deadline deadline, int readTimeoutMillis) {
+        if (!deadline.isBounded()) {
+            return invocation;
+        }
+        int remainingMillis = (int) Math.max(1, Math.min(Integer.MAX_VALUE, deadline.getRemainingMillis()));
+        return invocation
+                .property(ClientProperties.READ_TIMEOUT, Math.min(remainingMillis, readTimeoutMillis))
+                .property(ClientProperties.CONNECT_TIMEOUT, Math.min(remainingMillis, configuredTimeout(client, ClientProperties.CONNECT_TIMEOUT)));
+    }
+
+    private static int configuredTimeout(Client client, String property) {
+        Object timeout = client.getConfiguration().getProperty(property);
+        if (timeout instanceof Number && ((Number) timeout).intValue() > 0) {
+            return ((Number) timeout).intValue();
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    private Invocation.Builder prepareRequest(WebTarget target) {
+        return target
                 .request()
                 .accept(APPLICATION_JSON_TYPE);
     }
+
+    private static <T> CompletableFuture<T> cancelOnCancellation(CompletableFuture<T> future, Future<Response> invocation) {
+        future.whenComplete((value, throwable) -> {
+            if (future.isCancelled()) {
+                invocation.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    private <T> void complete(final CompletableFuture<T> future, final T value) {
+        if (completionExecutor == null) {
+            future.complete(value);
+        } else {
+            completionExecutor.execute(() -> future.complete(value));
+        }
+    }
+
+    private void completeExceptionally(final CompletableFuture<?> future, final Throwable throwable) {
+        if (completionExecutor == null) {
+            future.completeExceptionally(throwable);
+        } else {
+            completionExecutor.execute(() -> future.completeExceptionally(throwable));
+        }
+    }
+
+    private static Client createClient(ClientConfig clientConfig) {
+        Client client = clientConfig == null ? ClientBuilder.newClient() : ClientBuilder.newClient(clientConfig);
+        return client.register(new LoggingFilter());
+    }
+
+    private abstract class ResponseCallback<T> implements InvocationCallback<Response> {
+
+        private final CompletableFuture<T> future;
+        private final Class<T> responseType;
+        private final String operation;
+        private final Deadline deadline;
+
+        ResponseCallback(CompletableFuture<T> future, Class<T> responseType, String operation, Deadline deadline) {
+            this.future = future;
+            this.responseType = responseType;
+            this.operation = operation;
+            this.deadline = deadline;
+        }
+
+        abstract RuntimeException translate(WebApplicationException e);
+
+        @Override
+        public void completed(Response response) {
+            if (future.isCancelled()) {
+                response.close();
+                return;
+            }
+            try {
+                if (response.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL) {
+                    complete(future, response.readEntity(responseType));
+                } else {
+                    response.close();
+                    completeExceptionally(future, translate(new WebApplicationException(response)));
+                }
+            } catch (RuntimeException e) {
+                completeExceptionally(future, e);
+            }
+        }
+
+        @Override
+        public void failed(Throwable throwable) {
+            if (throwable instanceof ProcessingException) {
+                completeExceptionally(future, translateProcessingException(operation, deadline, (ProcessingException) throwable));
+            } else {
+                completeExceptionally(future, throwable);
+            }
+        }
+    }
 }
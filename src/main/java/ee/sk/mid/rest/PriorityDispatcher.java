@@ -0,0 +1,311 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.exception.RequestShedException;
+import ee.sk.mid.exception.SessionNotFoundException;
+import ee.sk.mid.exception.TechnicalErrorException;
+import ee.sk.mid.rest.dao.SessionStatus;
+import ee.sk.mid.rest.dao.request.AuthenticationRequest;
+import ee.sk.mid.rest.dao.request.CertificateRequest;
+import ee.sk.mid.rest.dao.request.SessionStatusRequest;
+import ee.sk.mid.rest.dao.request.SignatureRequest;
+import ee.sk.mid.rest.dao.response.AuthenticationResponse;
+import ee.sk.mid.rest.dao.response.CertificateChoiceResponse;
+import ee.sk.mid.rest.dao.response.SignatureResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+public class PriorityDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(PriorityDispatcher.class);
+    private static final RequestPriority[] PRIORITIES = RequestPriority.values();
+
+    private final MobileIdConnector connector;
+    private final int maxConcurrentRequests;
+    private final int[] queueCapacities = new int[PRIORITIES.length];
+    private final int maxQueuedRequests;
+    private final long maxQueueTimeNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<Waiter>[] queues;
+    private final long[] shedRequests = new long[PRIORITIES.length];
+    private int inFlightRequests;
+    private int queuedRequests;
+
+    @SuppressWarnings("unchecked")
+    private PriorityDispatcher(PriorityDispatcherBuilder builder) {
+        if (builder.connector == null) {
+            throw new TechnicalErrorException("Connector to dispatch requests to must be set");
+        }
+        this.connector = builder.connector;
+        this.maxConcurrentRequests = builder.maxConcurrentRequests;
+        this.maxQueueTimeNanos = builder.maxQueueTime.toNanos();
+        this.queues = new ArrayDeque[PRIORITIES.length];
+        int totalQueueCapacity = 0;
+        for (RequestPriority priority : PRIORITIES) {
+            queueCapacities[priority.ordinal()] = builder.queueCapacities.get(priority);
+            queues[priority.ordinal()] = new ArrayDeque<>();
+            totalQueueCapacity += queueCapacities[priority.ordinal()];
+        }
+        this.maxQueuedRequests = builder.maxQueuedRequests != null ? builder.maxQueuedRequests : totalQueueCapacity;
+    }
+
+    public MobileIdConnector forPriority(RequestPriority priority) {
+        return new PriorityConnector(priority);
+    }
+
+    public PriorityDispatcherStats getStats() {
+        lock.lock();
+        try {
+            Map<RequestPriority, Integer> queued = new EnumMap<>(RequestPriority.class);
+            Map<RequestPriority, Long> shed = new EnumMap<>(RequestPriority.class);
+            for (RequestPriority priority : PRIORITIES) {
+                queued.put(priority, queues[priority.ordinal()].size());
+                shed.put(priority, shedRequests[priority.ordinal()]);
+            }
+            return new PriorityDispatcherStats(inFlightRequests, queued, shed);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private <T> T dispatch(RequestPriority priority, Deadline deadline, Supplier<T> request) {
+        acquire(priority, deadline);
+        try {
+            return request.get();
+        } finally {
+            release();
+        }
+    }
+
+    private void acquire(RequestPriority priority, Deadline deadline) {
+        lock.lock();
+        try {
+            if (inFlightRequests < maxConcurrentRequests) {
+                inFlightRequests++;
+                return;
+            }
+            long waitNanos = Math.min(maxQueueTimeNanos, TimeUnit.MILLISECONDS.toNanos(deadline.getRemainingMillis()));
+            if (waitNanos <= 0 || !makeRoom(priority)) {
+                throw shed(priority, "queue is full");
+            }
+            Waiter waiter = new Waiter(lock.newCondition());
+            queues[priority.ordinal()].addLast(waiter);
+            queuedRequests++;
+            try {
+                while (!waiter.granted && !waiter.shed) {
+                    if (waitNanos <= 0) {
+                        dequeue(priority, waiter);
+                        throw shed(priority, "request waited too long in queue");
+                    }
+                    waitNanos = waiter.condition.awaitNanos(waitNanos);
+                }
+            } catch (InterruptedException e) {
+                if (waiter.granted) {
+                    release();
+                } else if (!waiter.shed) {
+                    dequeue(priority, waiter);
+                }
+                Thread.currentThread().interrupt();
+                logger.error("Interrupted while waiting in " + priority + " queue: " + e.getMessage());
+                throw new TechnicalErrorException("Interrupted while waiting in " + priority + " queue", e);
+            }
+            if (waiter.shed) {
+                throw shed(priority, "request was shed for higher priority work");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean makeRoom(RequestPriority priority) {
+        if (queues[priority.ordinal()].size() < queueCapacities[priority.ordinal()] && queuedRequests < maxQueuedRequests) {
+            return true;
+        }
+        for (int lower = PRIORITIES.length - 1; lower > priority.ordinal(); lower--) {
+            Waiter victim = queues[lower].pollLast();
+            if (victim != null) {
+                queuedRequests--;
+                victim.shed = true;
+                victim.condition.signal();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void dequeue(RequestPriority priority, Waiter waiter) {
+        if (queues[priority.ordinal()].remove(waiter)) {
+            queuedRequests--;
+        }
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            for (ArrayDeque<Waiter> queue : queues) {
+                Waiter next = queue.pollFirst();
+                if (next != null) {
+                    queuedRequests--;
+                    next.granted = true;
+                    next.condition.signal();
+                    return;
+                }
+            }
+            inFlightRequests--;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private RequestShedException shed(RequestPriority priority, String reason) {
+        shedRequests[priority.ordinal()]++;
+        logger.warn("Shedding " + priority + " request: " + reason);
+        return new RequestShedException("Shed " + priority + " request: " + reason);
+    }
+
+    private static class Waiter {
+        private final Condition condition;
+        private boolean granted;
+        private boolean shed;
+
+        private Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+
+    private class PriorityConnector implements MobileIdConnector {
+
+        private final RequestPriority priority;
+
+        private PriorityConnector(RequestPriority priority) {
+            this.priority = priority;
+        }
+
+        @Override
+        public CertificateChoiceResponse getCertificate(CertificateRequest request) {
+            return dispatch(priority, Deadline.none(), () -> connector.getCertificate(request));
+        }
+
+        @Override
+        public SignatureResponse sign(SignatureRequest request) {
+            return sign(request, Deadline.none());
+        }
+
+        @Override
+        public SignatureResponse sign(SignatureRequest request, Deadline deadline) {
+            return dispatch(priority, deadline, () -> connector.sign(request, deadline));
+        }
+
+        @Override
+        public AuthenticationResponse authenticate(AuthenticationRequest request) {
+            return authenticate(request, Deadline.none());
+        }
+
+        @Override
+        public AuthenticationResponse authenticate(AuthenticationRequest request, Deadline deadline) {
+            return dispatch(priority, deadline, () -> connector.authenticate(request, deadline));
+        }
+
+        @Override
+        public SessionStatus getSessionStatus(SessionStatusRequest request, String path) throws SessionNotFoundException {
+            return connector.getSessionStatus(request, path);
+        }
+
+        @Override
+        public SessionStatus getSessionStatus(SessionStatusRequest request, String path, Deadline deadline) throws SessionNotFoundException {
+            return connector.getSessionStatus(request, path, deadline);
+        }
+
+        @Override
+        public SessionStatus getAuthenticationSessionStatus(SessionStatusRequest request) throws SessionNotFoundException {
+            return connector.getAuthenticationSessionStatus(request);
+        }
+
+        @Override
+        public SessionStatus getSignatureSessionStatus(SessionStatusRequest request) throws SessionNotFoundException {
+            return connector.getSignatureSessionStatus(request);
+        }
+    }
+
+    public static PriorityDispatcherBuilder newBuilder() {
+        return new PriorityDispatcherBuilder();
+    }
+
+    public static class PriorityDispatcherBuilder {
+        private MobileIdConnector connector;
+        private int maxConcurrentRequests = 10;
+        private Duration maxQueueTime = Duration.ofSeconds(10);
+        private Integer maxQueuedRequests;
+        private final Map<RequestPriority, Integer> queueCapacities = new EnumMap<>(RequestPriority.class);
+
+        private PriorityDispatcherBuilder() {
+            for (RequestPriority priority : PRIORITIES) {
+                queueCapacities.put(priority, 50);
+            }
+        }
+
+        public PriorityDispatcherBuilder withConnector(MobileIdConnector connector) {
+            this.connector = connector;
+            return this;
+        }
+
+        public PriorityDispatcherBuilder withMaxConcurrentRequests(int maxConcurrentRequests) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+            return this;
+        }
+
+        public PriorityDispatcherBuilder withMaxQueueTime(Duration maxQueueTime) {
+            this.maxQueueTime = maxQueueTime;
+            return this;
+        }
+
+        public PriorityDispatcherBuilder withQueueCapacity(RequestPriority priority, int queueCapacity) {
+            this.queueCapacities.put(priority, queueCapacity);
+            return this;
+        }
+
+        public PriorityDispatcherBuilder withMaxQueuedRequests(int maxQueuedRequests) {
+            this.maxQueuedRequests = maxQueuedRequests;
+            return this;
+        }
+
+        public PriorityDispatcher build() {
+            return new PriorityDispatcher(this);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import java.util.Map;
+
+public class PriorityDispatcherStats {
+
+    private final int inFlightRequests;
+    private final Map<RequestPriority, Integer> queuedRequests;
+    private final Map<RequestPriority, Long> shedRequests;
+
+    public PriorityDispatcherStats(int inFlightRequests, Map<RequestPriority, Integer> queuedRequests, Map<RequestPriority, Long> shedRequests) {
+        this.inFlightRequests = inFlightRequests;
+        this.queuedRequests = queuedRequests;
+        this.shedRequests = shedRequests;
+    }
+
+    public int getInFlightRequests() {
+        return inFlightRequests;
+    }
+
+    public int getQueuedRequests(RequestPriority priority) {
+        return queuedRequests.getOrDefault(priority, 0);
+    }
+
+    public long getShedRequests(RequestPriority priority) {
+        return shedRequests.getOrDefault(priority, 0L);
+    }
+
+    @Override
+    public String toString() {
+        return "PriorityDispatcherStats{" +
+                "inFlightRequests=" + inFlightRequests +
+                ", queuedRequests=" + queuedRequests +
+                ", shedRequests=" + shedRequests +
+                '}';
+    }
+}
@@ -0,0 +1,154 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.exception.RateLimitExceededException;
+import ee.sk.mid.exception.TechnicalErrorException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+
+public class RateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimiter.class);
+    private static final double MIN_RATE_RATIO = 0.01;
+    private static final double RECOVERY_RATIO = 0.05;
+
+    private final String name;
+    private final double maxPermitsPerSecond;
+    private final double burst;
+    private final long maxWaitNanos;
+    private final long defaultRetryAfterNanos;
+
+    private double permitsPerSecond;
+    private double permits;
+    private long lastRefillNanos;
+    private long throttledUntilNanos;
+    private long rejectedRequests;
+    private long throttledResponses;
+
+    public RateLimiter(String name, RateLimiterConfig config) {
+        this.name = name;
+        this.maxPermitsPerSecond = config.getPermitsPerSecond();
+        this.burst = Math.max(1, config.getBurst());
+        this.maxWaitNanos = config.getMaxWait().toNanos();
+        this.defaultRetryAfterNanos = config.getDefaultRetryAfter().toNanos();
+        this.permitsPerSecond = maxPermitsPerSecond;
+        this.permits = burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    public void acquire(Deadline deadline) {
+        long waitNanos = reserve(Math.min(maxWaitNanos, TimeUnit.MILLISECONDS.toNanos(deadline.getRemainingMillis())));
+        if (waitNanos <= 0) {
+            return;
+        }
+        logger.debug("Waiting " + TimeUnit.NANOSECONDS.toMillis(waitNanos) + " ms for a permit for " + name);
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while waiting for a permit for " + name + ": " + e.getMessage());
+            throw new TechnicalErrorException("Interrupted while waiting for a permit for " + name, e);
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (permitsPerSecond < maxPermitsPerSecond) {
+            refill(System.nanoTime());
+            permitsPerSecond = Math.min(maxPermitsPerSecond, permitsPerSecond + maxPermitsPerSecond * RECOVERY_RATIO);
+        }
+    }
+
+    public synchronized void onThrottled(String retryAfter) {
+        long now = System.nanoTime();
+        refill(now);
+        throttledResponses++;
+        long retryAfterNanos = parseRetryAfterNanos(retryAfter, defaultRetryAfterNanos);
+        throttledUntilNanos = Math.max(throttledUntilNanos, now + retryAfterNanos);
+        permitsPerSecond = Math.max(maxPermitsPerSecond * MIN_RATE_RATIO, permitsPerSecond / 2);
+        permits = Math.min(permits, 0);
+        logger.warn("Service throttled " + name + ", pausing for " + TimeUnit.NANOSECONDS.toMillis(retryAfterNanos)
+                + " ms and lowering rate to " + permitsPerSecond + " per second");
+    }
+
+    public synchronized double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    public synchronized long getRejectedRequests() {
+        return rejectedRequests;
+    }
+
+    public synchronized long getThrottledResponses() {
+        return throttledResponses;
+    }
+
+    private synchronized long reserve(long maxWaitNanos) {
+        long now = System.nanoTime();
+        refill(now);
+        long waitNanos = Math.max(0, throttledUntilNanos - now);
+        if (permits < 1) {
+            waitNanos = Math.max(waitNanos, (long) ((1 - permits) / permitsPerSecond * TimeUnit.SECONDS.toNanos(1)));
+        }
+        if (waitNanos > maxWaitNanos) {
+            rejectedRequests++;
+            throw new RateLimitExceededException("Rate limit for " + name + " exceeded");
+        }
+        permits -= 1;
+        return waitNanos;
+    }
+
+    private void refill(long now) {
+        if (now > lastRefillNanos) {
+            permits = Math.min(burst, permits + (now - lastRefillNanos) * permitsPerSecond / TimeUnit.SECONDS.toNanos(1));
+            lastRefillNanos = now;
+        }
+    }
+
+    static long parseRetryAfterNanos(String retryAfter, long defaultNanos) {
+        if (retryAfter == null || retryAfter.trim().isEmpty()) {
+            return defaultNanos;
+        }
+        String value = retryAfter.trim();
+        try {
+            return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            try {
+                long millis = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli() - System.currentTimeMillis();
+                return TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+            } catch (DateTimeParseException ignored) {
+                logger.debug("Ignoring invalid Retry-After header: " + value);
+                return defaultNanos;
+            }
+        }
+    }
+}
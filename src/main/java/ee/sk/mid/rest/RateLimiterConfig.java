@@ -0,0 +1,107 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import java.time.Duration;
+
+public class RateLimiterConfig {
+
+    private double permitsPerSecond;
+    private int burst;
+    private Duration maxWait;
+    private Duration defaultRetryAfter;
+
+    private RateLimiterConfig(RateLimiterConfigBuilder builder) {
+        this.permitsPerSecond = builder.permitsPerSecond;
+        this.burst = builder.burst;
+        this.maxWait = builder.maxWait;
+        this.defaultRetryAfter = builder.defaultRetryAfter;
+    }
+
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    public Duration getMaxWait() {
+        return maxWait;
+    }
+
+    public Duration getDefaultRetryAfter() {
+        return defaultRetryAfter;
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimiterConfig{" +
+                "permitsPerSecond=" + permitsPerSecond +
+                ", burst=" + burst +
+                ", maxWait=" + maxWait +
+                ", defaultRetryAfter=" + defaultRetryAfter +
+                '}';
+    }
+
+    public static RateLimiterConfigBuilder newBuilder() {
+        return new RateLimiterConfigBuilder();
+    }
+
+    public static class RateLimiterConfigBuilder {
+        private double permitsPerSecond = 10;
+        private int burst = 10;
+        private Duration maxWait = Duration.ofSeconds(5);
+        private Duration defaultRetryAfter = Duration.ofSeconds(1);
+
+        private RateLimiterConfigBuilder() {}
+
+        public RateLimiterConfigBuilder withPermitsPerSecond(double permitsPerSecond) {
+            this.permitsPerSecond = permitsPerSecond;
+            return this;
+        }
+
+        public RateLimiterConfigBuilder withBurst(int burst) {
+            this.burst = burst;
+            return this;
+        }
+
+        public RateLimiterConfigBuilder withMaxWait(Duration maxWait) {
+            this.maxWait = maxWait;
+            return this;
+        }
+
+        public RateLimiterConfigBuilder withDefaultRetryAfter(Duration defaultRetryAfter) {
+            this.defaultRetryAfter = defaultRetryAfter;
+            return this;
+        }
+
+        public RateLimiterConfig build() {
+            return new RateLimiterConfig(this);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.exception.SessionNotFoundException;
+import ee.sk.mid.rest.dao.SessionStatus;
+import ee.sk.mid.rest.dao.request.AuthenticationRequest;
+import ee.sk.mid.rest.dao.request.CertificateRequest;
+import ee.sk.mid.rest.dao.request.SessionStatusRequest;
+import ee.sk.mid.rest.dao.request.SignatureRequest;
+import ee.sk.mid.rest.dao.response.AuthenticationResponse;
+import ee.sk.mid.rest.dao.response.CertificateChoiceResponse;
+import ee.sk.mid.rest.dao.response.SignatureResponse;
+
+import javax.ws.rs.WebApplicationException;
+import java.util.function.Supplier;
+
+public class RateLimitingMobileIdConnector implements MobileIdConnector {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int SERVICE_UNAVAILABLE = 503;
+
+    private final MobileIdConnector connector;
+    private final RateLimiter initiationRateLimiter;
+    private final RateLimiter pollingRateLimiter;
+
+    public RateLimitingMobileIdConnector(MobileIdConnector connector) {
+        this(connector, RateLimiterConfig.newBuilder().build(), RateLimiterConfig.newBuilder().build());
+    }
+
+    public RateLimitingMobileIdConnector(MobileIdConnector connector, RateLimiterConfig initiationConfig, RateLimiterConfig pollingConfig) {
+        this.connector = connector;
+        this.initiationRateLimiter = new RateLimiter("initiation requests", initiationConfig);
+        this.pollingRateLimiter = new RateLimiter("session status requests", pollingConfig);
+    }
+
+    public RateLimiter getInitiationRateLimiter() {
+        return initiationRateLimiter;
+    }
+
+    public RateLimiter getPollingRateLimiter() {
+        return pollingRateLimiter;
+    }
+
+    @Override
+    public CertificateChoiceResponse getCertificate(CertificateRequest request) {
+        return execute(initiationRateLimiter, Deadline.none(), () -> connector.getCertificate(request));
+    }
+
+    @Override
+    public SignatureResponse sign(SignatureRequest request) {
+        return sign(request, Deadline.none());
+    }
+
+    @Override
+    public SignatureResponse sign(SignatureRequest request, Deadline deadline) {
+        return execute(initiationRateLimiter, deadline, () -> connector.sign(request, deadline));
+    }
+
+    @Override
+    public AuthenticationResponse authenticate(AuthenticationRequest request) {
+        return authenticate(request, Deadline.none());
+    }
+
+    @Override
+    public AuthenticationResponse authenticate(AuthenticationRequest request, Deadline deadline) {
+        return execute(initiationRateLimiter, deadline, () -> connector.authenticate(request, deadline));
+    }
+
+    @Override
+    public SessionStatus getSessionStatus(SessionStatusRequest request, String path) throws SessionNotFoundException {
+        return getSessionStatus(request, path, Deadline.none());
+    }
+
+    @Override
+    public SessionStatus getSessionStatus(SessionStatusRequest request, String path, Deadline deadline) throws SessionNotFoundException {
+        return execute(pollingRateLimiter, deadline, () -> connector.getSessionStatus(request, path, deadline));
+    }
+
+    @Override
+    public SessionStatus getAuthenticationSessionStatus(SessionStatusRequest request) throws SessionNotFoundException {
+        return getSessionStatus(request, SessionStatusPoller.AUTHENTICATION_SESSION_PATH);
+    }
+
+    @Override
+    public SessionStatus getSignatureSessionStatus(SessionStatusRequest request) throws SessionNotFoundException {
+        return getSessionStatus(request, SessionStatusPoller.SIGNATURE_SESSION_PATH);
+    }
+
+    private static <T> T execute(RateLimiter rateLimiter, Deadline deadline, Supplier<T> request) {
+        rateLimiter.acquire(deadline);
+        try {
+            T response = request.get();
+            rateLimiter.onSuccess();
+            return response;
+        } catch (WebApplicationException e) {
+            int status = e.getResponse().getStatus();
+            if (status == TOO_MANY_REQUESTS || status == SERVICE_UNAVAILABLE) {
+                rateLimiter.onThrottled(e.getResponse().getHeaderString("Retry-After"));
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+
+class RequestBudget {
+
+    private static final int BURST = 10;
+    private static final long TOKEN_SCALE = 1000;
+    private static final long MAX_TOKENS = BURST * TOKEN_SCALE;
+
+    private final long deposit;
+    private final AtomicLong tokens = new AtomicLong(MAX_TOKENS);
+
+    RequestBudget(double ratio) {
+        this.deposit = Math.round(ratio * TOKEN_SCALE);
+    }
+
+    void deposit() {
+        if (deposit > 0 && tokens.get() < MAX_TOKENS) {
+            tokens.updateAndGet(available -> Math.min(MAX_TOKENS, available + deposit));
+        }
+    }
+
+    boolean tryAcquire() {
+        long available;
+        do {
+            available = tokens.get();
+            if (available < TOKEN_SCALE) {
+                return false;
+            }
+        } while (!tokens.compareAndSet(available, available - TOKEN_SCALE));
+        return true;
+    }
+}
@@ -0,0 +1,315 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.exception.SessionNotFoundException;
+import ee.sk.mid.exception.TechnicalErrorException;
+import ee.sk.mid.rest.dao.SessionStatus;
+import ee.sk.mid.rest.dao.request.AuthenticationRequest;
+import ee.sk.mid.rest.dao.request.CertificateRequest;
+import ee.sk.mid.rest.dao.request.SessionStatusRequest;
+import ee.sk.mid.rest.dao.request.SignatureRequest;
+import ee.sk.mid.rest.dao.response.AuthenticationResponse;
+import ee.sk.mid.rest.dao.response.CertificateChoiceResponse;
+import ee.sk.mid.rest.dao.response.SignatureResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class RetryingMobileIdConnector implements MobileIdConnector, MobileIdAsyncConnector {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetryingMobileIdConnector.class);
+
+    private final MobileIdConnector connector;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final RequestBudget retryBudget;
+    private final ScheduledExecutorService scheduler;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder budgetExhaustions = new LongAdder();
+
+    private RetryingMobileIdConnector(RetryingMobileIdConnectorBuilder builder) {
+        if (builder.connector == null) {
+            throw new TechnicalErrorException("Connector to retry requests on must be set");
+        }
+        this.connector = builder.connector;
+        this.maxAttempts = builder.maxAttempts;
+        this.initialBackoffMillis = builder.initialBackoff.toMillis();
+        this.maxBackoffMillis = builder.maxBackoff.toMillis();
+        this.retryBudget = new RequestBudget(builder.retryBudgetRatio);
+        this.scheduler = builder.scheduler;
+    }
+
+    @Override
+    public CertificateChoiceResponse getCertificate(CertificateRequest request) {
+        return connector.getCertificate(request);
+    }
+
+    @Override
+    public SignatureResponse sign(SignatureRequest request) {
+        return connector.sign(request);
+    }
+
+    @Override
+    public SignatureResponse sign(SignatureRequest request, Deadline deadline) {
+        return connector.sign(request, deadline);
+    }
+
+    @Override
+    public AuthenticationResponse authenticate(AuthenticationRequest request) {
+        return connector.authenticate(request);
+    }
+
+    @Override
+    public AuthenticationResponse authenticate(AuthenticationRequest request, Deadline deadline) {
+        return connector.authenticate(request, deadline);
+    }
+
+    @Override
+    public SessionStatus getSessionStatus(SessionStatusRequest request, String path) throws SessionNotFoundException {
+        return getSessionStatus(request, path, Deadline.none());
+    }
+
+    @Override
+    public SessionStatus getSessionStatus(SessionStatusRequest request, String path, Deadline deadline) throws SessionNotFoundException {
+        requests.increment();
+        retryBudget.deposit();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return connector.getSessionStatus(request, path, deadline);
+            } catch (RuntimeException e) {
+                long backoffMillis = getRetryBackoffMillis(attempt, e, deadline);
+                if (backoffMillis < 0) {
+                    throw e;
+                }
+                logger.debug("Session status request for " + request.getSessionID() + " failed, retrying in " + backoffMillis + " ms: " + e.getMessage());
+                sleep(backoffMillis);
+            }
+        }
+    }
+
+    @Override
+    public SessionStatus getAuthenticationSessionStatus(SessionStatusRequest request) throws SessionNotFoundException {
+        return getSessionStatus(request, SessionStatusPoller.AUTHENTICATION_SESSION_PATH);
+    }
+
+    @Override
+    public SessionStatus getSignatureSessionStatus(SessionStatusRequest request) throws SessionNotFoundException {
+        return getSessionStatus(request, SessionStatusPoller.SIGNATURE_SESSION_PATH);
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+        return MobileIdAsyncConnector.supportsAsync(connector);
+    }
+
+    @Override
+    public CompletableFuture<CertificateChoiceResponse> getCertificateAsync(CertificateRequest request) {
+        if (!isAsyncSupported()) {
+            return AsyncCalls.callBlocking(() -> getCertificate(request));
+        }
+        return ((MobileIdAsyncConnector) connector).getCertificateAsync(request);
+    }
+
+    @Override
+    public CompletableFuture<SignatureResponse> signAsync(SignatureRequest request) {
+        return signAsync(request, Deadline.none());
+    }
+
+    @Override
+    public CompletableFuture<SignatureResponse> signAsync(SignatureRequest request, Deadline deadline) {
+        if (!isAsyncSupported()) {
+            return AsyncCalls.callBlocking(() -> sign(request, deadline));
+        }
+        return ((MobileIdAsyncConnector) connector).signAsync(request, deadline);
+    }
+
+    @Override
+    public CompletableFuture<AuthenticationResponse> authenticateAsync(AuthenticationRequest request) {
+        return authenticateAsync(request, Deadline.none());
+    }
+
+    @Override
+    public CompletableFuture<AuthenticationResponse> authenticateAsync(AuthenticationRequest request, Deadline deadline) {
+        if (!isAsyncSupported()) {
+            return AsyncCalls.callBlocking(() -> authenticate(request, deadline));
+        }
+        return ((MobileIdAsyncConnector) connector).authenticateAsync(request, deadline);
+    }
+
+    @Override
+    public CompletableFuture<SessionStatus> getSessionStatusAsync(SessionStatusRequest request, String path) {
+        return getSessionStatusAsync(request, path, Deadline.none());
+    }
+
+    @Override
+    public CompletableFuture<SessionStatus> getSessionStatusAsync(SessionStatusRequest request, String path, Deadline deadline) {
+        if (!isAsyncSupported()) {
+            return AsyncCalls.callBlocking(() -> getSessionStatus(request, path, deadline));
+        }
+        requests.increment();
+        retryBudget.deposit();
+        CompletableFuture<SessionStatus> result = new CompletableFuture<>();
+        attemptAsync((MobileIdAsyncConnector) connector, request, path, deadline, 1, result);
+        return result;
+    }
+
+    public RetryStats getStats() {
+        return new RetryStats(requests.sum(), retries.sum(), budgetExhaustions.sum());
+    }
+
+    private void attemptAsync(MobileIdAsyncConnector asyncConnector, SessionStatusRequest request, String path, Deadline deadline,
+                              int attempt, CompletableFuture<SessionStatus> result) {
+        if (result.isDone()) {
+            return;
+        }
+        CompletableFuture<SessionStatus> response = asyncConnector.getSessionStatusAsync(request, path, deadline);
+        result.whenComplete((sessionStatus, throwable) -> response.cancel(true));
+        response.whenComplete((sessionStatus, throwable) -> {
+            if (throwable == null) {
+                result.complete(sessionStatus);
+                return;
+            }
+            RuntimeException e = AsyncCalls.unwrap(throwable);
+            long backoffMillis = getRetryBackoffMillis(attempt, e, deadline);
+            if (backoffMillis < 0) {
+                result.completeExceptionally(e);
+                return;
+            }
+            logger.debug("Session status request for " + request.getSessionID() + " failed, retrying in " + backoffMillis + " ms: " + e.getMessage());
+            try {
+                getScheduler().schedule(() -> attemptAsync(asyncConnector, request, path, deadline, attempt + 1, result), backoffMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException rejected) {
+                result.completeExceptionally(e);
+            }
+        });
+    }
+
+    private long getRetryBackoffMillis(int attempt, RuntimeException e, Deadline deadline) {
+        if (attempt >= maxAttempts || !ConnectorEndpoint.isEndpointFailure(e)) {
+            return -1;
+        }
+        long backoffMillis = getBackoffMillis(attempt);
+        if (backoffMillis >= deadline.getRemainingMillis() || !tryAcquireRetry()) {
+            return -1;
+        }
+        return backoffMillis;
+    }
+
+    private ScheduledExecutorService getScheduler() {
+        return scheduler != null ? scheduler : BackoffSchedulerHolder.SCHEDULER;
+    }
+
+    private long getBackoffMillis(int attempt) {
+        long maxDelayMillis = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 30));
+        return ThreadLocalRandom.current().nextLong(maxDelayMillis + 1);
+    }
+
+    private boolean tryAcquireRetry() {
+        if (!retryBudget.tryAcquire()) {
+            logger.warn("Retry budget is exhausted, not retrying session status request");
+            budgetExhaustions.increment();
+            return false;
+        }
+        retries.increment();
+        return true;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while waiting to retry session status request: " + e.getMessage());
+            throw new TechnicalErrorException("Interrupted while waiting to retry session status request", e);
+        }
+    }
+
+    private static class BackoffSchedulerHolder {
+        private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("mid-retry-backoff"));
+    }
+
+    public static RetryingMobileIdConnectorBuilder newBuilder() {
+        return new RetryingMobileIdConnectorBuilder();
+    }
+
+    public static class RetryingMobileIdConnectorBuilder {
+        private MobileIdConnector connector;
+        private int maxAttempts = 3;
+        private Duration initialBackoff = Duration.ofMillis(100);
+        private Duration maxBackoff = Duration.ofSeconds(2);
+        private double retryBudgetRatio = 0.1;
+        private ScheduledExecutorService scheduler;
+
+        private RetryingMobileIdConnectorBuilder() {}
+
+        public RetryingMobileIdConnectorBuilder withConnector(MobileIdConnector connector) {
+            this.connector = connector;
+            return this;
+        }
+
+        public RetryingMobileIdConnectorBuilder withMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        public RetryingMobileIdConnectorBuilder withInitialBackoff(Duration initialBackoff) {
+            this.initialBackoff = initialBackoff;
+            return this;
+        }
+
+        public RetryingMobileIdConnectorBuilder withMaxBackoff(Duration maxBackoff) {
+            this.maxBackoff = maxBackoff;
+            return this;
+        }
+
+        public RetryingMobileIdConnectorBuilder withRetryBudgetRatio(double retryBudgetRatio) {
+            this.retryBudgetRatio = retryBudgetRatio;
+            return this;
+        }
+
+        public RetryingMobileIdConnectorBuilder withScheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        public RetryingMobileIdConnector build() {
+            return new RetryingMobileIdConnector(this);
+        }
+    }
+}
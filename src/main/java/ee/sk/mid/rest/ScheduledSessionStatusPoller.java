@@ -0,0 +1,384 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.exception.DeadlineExceededException;
+import ee.sk.mid.exception.TechnicalErrorException;
+import ee.sk.mid.rest.dao.SessionStatus;
+import ee.sk.mid.rest.dao.request.SessionStatusRequest;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import static ee.sk.mid.rest.SessionStatusPoller.AUTHENTICATION_SESSION_PATH;
+import static ee.sk.mid.rest.SessionStatusPoller.SIGNATURE_SESSION_PATH;
+import static org.apache.commons.lang3.StringUtils.equalsIgnoreCase;
+
+public class ScheduledSessionStatusPoller implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScheduledSessionStatusPoller.class);
+    private static final int DEFAULT_POLLING_THREADS = 4;
+    private static final long TIMER_TICK_MILLIS = 10;
+    private static final int TIMER_TICKS_PER_WHEEL = 512;
+
+    private final MobileIdConnector connector;
+    private final MobileIdAsyncConnector asyncConnector;
+    private final HashedWheelTimer timer;
+    private final ExecutorService pollingExecutor;
+    private final SessionIndex<PollingSession> pendingSessions = new SessionIndex<>();
+    private final SessionPollingMetrics pollingMetrics = new SessionPollingMetrics();
+    private volatile PollingStrategy pollingStrategy = new FixedPollingStrategy(Duration.ofSeconds(1));
+    private final AtomicInteger pendingSessionCount = new AtomicInteger();
+    private volatile long maxJitterMillis = 200;
+    private volatile long resultGracePeriodMillis = 5000;
+
+    public ScheduledSessionStatusPoller(MobileIdConnector connector) {
+        this(connector, DEFAULT_POLLING_THREADS);
+    }
+
+    public ScheduledSessionStatusPoller(MobileIdConnector connector, int pollingThreads) {
+        this.connector = connector;
+        this.asyncConnector = MobileIdAsyncConnector.supportsAsync(connector) ? (MobileIdAsyncConnector) connector : null;
+        this.timer = new HashedWheelTimer(new DaemonThreadFactory("mid-session-status-timer"), TIMER_TICK_MILLIS, TIMER_TICKS_PER_WHEEL);
+        this.pollingExecutor = asyncConnector != null ? null
+                : Executors.newFixedThreadPool(pollingThreads, new DaemonThreadFactory("mid-session-status-poller"));
+    }
+
+    public CompletableFuture<SessionStatus> fetchFinalSignatureSessionStatus(String sessionId) {
+        return fetchFinalSessionStatus(sessionId, SIGNATURE_SESSION_PATH);
+    }
+
+    public CompletableFuture<SessionStatus> fetchFinalSignatureSessionStatus(String sessionId, Deadline deadline) {
+        return fetchFinalSessionStatus(sessionId, SIGNATURE_SESSION_PATH, deadline);
+    }
+
+    public CompletableFuture<SessionStatus> fetchFinalAuthenticationSessionStatus(String sessionId) {
+        return fetchFinalSessionStatus(sessionId, AUTHENTICATION_SESSION_PATH);
+    }
+
+    public CompletableFuture<SessionStatus> fetchFinalAuthenticationSessionStatus(String sessionId, Deadline deadline) {
+        return fetchFinalSessionStatus(sessionId, AUTHENTICATION_SESSION_PATH, deadline);
+    }
+
+    public CompletableFuture<SessionStatus> fetchFinalSessionStatus(String sessionId, String path) {
+        return fetchFinalSessionStatus(sessionId, path, Deadline.none());
+    }
+
+    public CompletableFuture<SessionStatus> fetchFinalSessionStatus(String sessionId, String path, Deadline deadline) {
+        return fetchFinalSessionStatus(sessionId, path, deadline, null);
+    }
+
+    public Publisher<SessionStatus> publishSignatureSessionStatus(String sessionId) {
+        return publishSessionStatus(sessionId, SIGNATURE_SESSION_PATH);
+    }
+
+    public Publisher<SessionStatus> publishAuthenticationSessionStatus(String sessionId) {
+        return publishSessionStatus(sessionId, AUTHENTICATION_SESSION_PATH);
+    }
+
+    public Publisher<SessionStatus> publishSessionStatus(String sessionId, String path) {
+        return subscriber -> {
+            SessionStatusSubscription subscription = new SessionStatusSubscription(subscriber);
+            subscriber.onSubscribe(subscription);
+            subscription.start(fetchFinalSessionStatus(sessionId, path, Deadline.none(), subscription));
+        };
+    }
+
+    private CompletableFuture<SessionStatus> fetchFinalSessionStatus(String sessionId, String path, Deadline deadline,
+                                                                    SessionStatusSubscription subscription) {
+        if (deadline.isExpired()) {
+            return deadline.expiredFuture("polling session status");
+        }
+        while (true) {
+            PollingSession session = new PollingSession(sessionId, path, pollingStrategy, deadline);
+            PollingSession pendingSession = pendingSessions.putIfAbsent(path, sessionId, session);
+            if (pendingSession == null) {
+                logger.debug("Scheduling session status polling for session " + sessionId);
+                pendingSessionCount.incrementAndGet();
+                CompletableFuture<SessionStatus> waiter = session.newWaiter(subscription, deadline);
+                session.result.whenComplete(session);
+                schedulePoll(session, session.strategy.getInitialDelay().toMillis() + randomJitter());
+                return waiter;
+            }
+            if (pendingSession.result.isCancelled()) {
+                pendingSessions.remove(path, sessionId, pendingSession);
+                continue;
+            }
+            logger.debug("Session " + sessionId + " is already being polled");
+            return pendingSession.newWaiter(subscription, deadline);
+        }
+    }
+
+    public int getPendingSessionCount() {
+        return pendingSessionCount.get();
+    }
+
+    public void setPollingSleepTimeoutMillis(long pollingSleepTimeoutMillis) {
+        logger.debug("Polling sleep time is " + pollingSleepTimeoutMillis + " millisecond(s)");
+        this.pollingStrategy = new FixedPollingStrategy(Duration.ofMillis(pollingSleepTimeoutMillis));
+    }
+
+    public void setPollingStrategy(PollingStrategy pollingStrategy) {
+        logger.debug("Polling strategy is " + pollingStrategy);
+        this.pollingStrategy = pollingStrategy;
+    }
+
+    public SessionPollingStats getPollingStats() {
+        return pollingMetrics.getStats();
+    }
+
+    public void setMaxJitterMillis(long maxJitterMillis) {
+        this.maxJitterMillis = maxJitterMillis;
+    }
+
+    public void setResultGracePeriodMillis(long resultGracePeriodMillis) {
+        logger.debug("Final session status is kept for " + resultGracePeriodMillis + " millisecond(s)");
+        this.resultGracePeriodMillis = resultGracePeriodMillis;
+    }
+
+    @Override
+    public void close() {
+        logger.debug("Closing session status poller with " + pendingSessionCount.get() + " pending session(s)");
+        timer.close();
+        if (pollingExecutor != null) {
+            pollingExecutor.shutdownNow();
+        }
+        for (PollingSession session : pendingSessions.values()) {
+            session.result.completeExceptionally(new TechnicalErrorException("Session status poller was closed"));
+        }
+    }
+
+    private void schedulePoll(PollingSession session, long delayMillis) {
+        if (session.result.isDone()) {
+            return;
+        }
+        try {
+            session.timeout = timer.newTimeout(session, delayMillis);
+        } catch (RejectedExecutionException e) {
+            session.result.completeExceptionally(new TechnicalErrorException("Session status poller was closed", e));
+        }
+    }
+
+    private void poll(PollingSession session) {
+        if (session.result.isDone()) {
+            return;
+        }
+        SessionStatusRequest request = new SessionStatusRequest(session.getSessionId());
+        long pollTime = System.nanoTime();
+        if (asyncConnector != null) {
+            CompletableFuture<SessionStatus> pendingRequest;
+            try {
+                pendingRequest = asyncConnector.getSessionStatusAsync(request, session.path, session.deadline);
+            } catch (RuntimeException e) {
+                session.result.completeExceptionally(e);
+                return;
+            }
+            session.pendingRequest = pendingRequest;
+            pendingRequest.whenComplete((sessionStatus, throwable) -> {
+                session.pendingRequest = null;
+                if (throwable != null) {
+                    session.result.completeExceptionally(AsyncCalls.unwrap(throwable));
+                } else {
+                    onSessionStatus(session, sessionStatus, pollTime);
+                }
+            });
+            return;
+        }
+        SessionStatus sessionStatus;
+        try {
+            sessionStatus = connector.getSessionStatus(request, session.path, session.deadline);
+        } catch (RuntimeException e) {
+            session.result.completeExceptionally(e);
+            return;
+        }
+        onSessionStatus(session, sessionStatus, pollTime);
+    }
+
+    private void onSessionStatus(PollingSession session, SessionStatus sessionStatus, long pollTime) {
+        String sessionId = session.getSessionId();
+        try {
+            session.polls++;
+            if (equalsIgnoreCase("RUNNING", sessionStatus.getState())) {
+                session.previousPollTime = pollTime;
+                session.publishRunningStatus(sessionStatus);
+                Duration nextDelay = session.strategy.getNextDelay(Duration.ofNanos(System.nanoTime() - session.startTime));
+                schedulePoll(session, nextDelay.toMillis() + randomJitter());
+                return;
+            }
+            logger.debug("Got final session status response for session " + sessionId);
+            session.finalStatusReceived = true;
+            session.strategy.onSessionCompleted(Duration.ofNanos((session.previousPollTime + pollTime) / 2 - session.startTime));
+            pollingMetrics.recordCompletedSession(session.polls, System.nanoTime() - session.startTime);
+            SessionStatusPoller.validateResult(sessionStatus);
+            session.result.complete(sessionStatus);
+        } catch (RuntimeException e) {
+            session.result.completeExceptionally(e);
+        }
+    }
+
+    private long randomJitter() {
+        long maxJitter = maxJitterMillis;
+        return maxJitter > 0 ? ThreadLocalRandom.current().nextLong(maxJitter + 1) : 0;
+    }
+
+    private class PollingSession implements Runnable, BiConsumer<SessionStatus, Throwable> {
+
+        private final long mostSigBits;
+        private final long leastSigBits;
+        private final String nonUuidSessionId;
+        private final String path;
+        private final PollingStrategy strategy;
+        private final long startTime = System.nanoTime();
+        private long previousPollTime = startTime;
+        private int polls;
+        private final CompletableFuture<SessionStatus> result = new CompletableFuture<>();
+        private volatile HashedWheelTimer.Timeout timeout;
+        private volatile CompletableFuture<SessionStatus> pendingRequest;
+        private volatile List<SessionStatusSubscription> subscriptions;
+        private final AtomicInteger waiters = new AtomicInteger();
+        private volatile boolean finalStatusReceived;
+        private volatile Deadline deadline;
+
+        PollingSession(String sessionId, String path, PollingStrategy strategy, Deadline deadline) {
+            boolean uuid = SessionIndex.isUuid(sessionId);
+            this.mostSigBits = uuid ? SessionIndex.mostSigBits(sessionId) : 0;
+            this.leastSigBits = uuid ? SessionIndex.leastSigBits(sessionId) : 0;
+            this.nonUuidSessionId = uuid ? null : sessionId;
+            this.path = path;
+            this.strategy = strategy;
+            this.deadline = deadline;
+        }
+
+        String getSessionId() {
+            return nonUuidSessionId != null ? nonUuidSessionId : SessionIndex.toSessionId(mostSigBits, leastSigBits);
+        }
+
+        CompletableFuture<SessionStatus> newWaiter(SessionStatusSubscription subscription, Deadline waiterDeadline) {
+            addSubscription(subscription);
+            extendDeadline(waiterDeadline);
+            waiters.incrementAndGet();
+            CompletableFuture<SessionStatus> waiter = result.thenApply(Function.identity());
+            HashedWheelTimer.Timeout expiry = scheduleExpiry(waiter, waiterDeadline);
+            waiter.whenComplete((sessionStatus, throwable) -> {
+                if (expiry != null) {
+                    expiry.cancel();
+                }
+                if (!result.isDone() && waiters.decrementAndGet() == 0) {
+                    result.cancel(false);
+                }
+            });
+            return waiter;
+        }
+
+        private synchronized void extendDeadline(Deadline waiterDeadline) {
+            deadline = Deadline.latest(deadline, waiterDeadline);
+        }
+
+        private HashedWheelTimer.Timeout scheduleExpiry(CompletableFuture<SessionStatus> waiter, Deadline waiterDeadline) {
+            if (!waiterDeadline.isBounded()) {
+                return null;
+            }
+            try {
+                return timer.newTimeout(() -> {
+                    if (waiter.completeExceptionally(new DeadlineExceededException("Deadline exceeded while polling session status"))) {
+                        logger.error("Deadline exceeded while polling session " + getSessionId());
+                    }
+                }, waiterDeadline.getRemainingMillis());
+            } catch (RejectedExecutionException e) {
+                return null;
+            }
+        }
+
+        synchronized void addSubscription(SessionStatusSubscription subscription) {
+            if (subscription == null) {
+                return;
+            }
+            if (subscriptions == null) {
+                subscriptions = new CopyOnWriteArrayList<>();
+            }
+            subscriptions.add(subscription);
+        }
+
+        void publishRunningStatus(SessionStatus sessionStatus) {
+            List<SessionStatusSubscription> currentSubscriptions = subscriptions;
+            if (currentSubscriptions != null) {
+                for (SessionStatusSubscription subscription : currentSubscriptions) {
+                    subscription.onRunningStatus(sessionStatus);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            if (asyncConnector != null) {
+                poll(this);
+                return;
+            }
+            try {
+                pollingExecutor.execute(() -> poll(this));
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(new TechnicalErrorException("Session status poller was closed", e));
+            }
+        }
+
+        @Override
+        public void accept(SessionStatus sessionStatus, Throwable throwable) {
+            pendingSessionCount.decrementAndGet();
+            HashedWheelTimer.Timeout scheduledPoll = timeout;
+            if (scheduledPoll != null) {
+                scheduledPoll.cancel();
+            }
+            CompletableFuture<SessionStatus> request = pendingRequest;
+            if (request != null) {
+                request.cancel(true);
+            }
+            long gracePeriod = resultGracePeriodMillis;
+            if (finalStatusReceived && gracePeriod > 0) {
+                try {
+                    timer.newTimeout(() -> pendingSessions.remove(path, getSessionId(), this), gracePeriod);
+                    return;
+                } catch (RejectedExecutionException e) {
+                    logger.debug("Session status poller was closed, releasing session " + getSessionId());
+                }
+            }
+            pendingSessions.remove(path, getSessionId(), this);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class SessionIndex<V> {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final int UUID_LENGTH = 36;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private long[] keys;
+    private String[] paths;
+    private Object[] values;
+    private int size;
+    private final Map<String, V> nonUuidSessions = new HashMap<>();
+
+    SessionIndex() {
+        this(MIN_CAPACITY);
+    }
+
+    SessionIndex(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        keys = new long[capacity * 2];
+        paths = new String[capacity];
+        values = new Object[capacity];
+    }
+
+    synchronized V putIfAbsent(String path, String sessionId, V value) {
+        if (!isUuid(sessionId)) {
+            return nonUuidSessions.putIfAbsent(path + ":" + sessionId, value);
+        }
+        long mostSigBits = mostSigBits(sessionId);
+        long leastSigBits = leastSigBits(sessionId);
+        int slot = findSlot(path, mostSigBits, leastSigBits);
+        if (values[slot] != null) {
+            return valueAt(slot);
+        }
+        keys[slot * 2] = mostSigBits;
+        keys[slot * 2 + 1] = leastSigBits;
+        paths[slot] = path;
+        values[slot] = value;
+        if (++size * 4 > values.length * 3) {
+            resize(values.length * 2);
+        }
+        return null;
+    }
+
+    synchronized V get(String path, String sessionId) {
+        if (!isUuid(sessionId)) {
+            return nonUuidSessions.get(path + ":" + sessionId);
+        }
+        int slot = findSlot(path, sessionId);
+        return values[slot] != null ? valueAt(slot) : null;
+    }
+
+    synchronized boolean remove(String path, String sessionId, V value) {
+        if (!isUuid(sessionId)) {
+            return nonUuidSessions.remove(path + ":" + sessionId, value);
+        }
+        int slot = findSlot(path, sessionId);
+        if (values[slot] == null || values[slot] != value) {
+            return false;
+        }
+        deleteSlot(slot);
+        size--;
+        return true;
+    }
+
+    synchronized int size() {
+        return size + nonUuidSessions.size();
+    }
+
+    synchronized List<V> values() {
+        List<V> result = new ArrayList<>(size());
+        for (int slot = 0; slot < values.length; slot++) {
+            if (values[slot] != null) {
+                result.add(valueAt(slot));
+            }
+        }
+        result.addAll(nonUuidSessions.values());
+        return result;
+    }
+
+    static boolean isUuid(String sessionId) {
+        if (sessionId == null || sessionId.length() != UUID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < UUID_LENGTH; i++) {
+            char c = sessionId.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int findSlot(String path, String sessionId) {
+        return findSlot(path, mostSigBits(sessionId), leastSigBits(sessionId));
+    }
+
+    static long mostSigBits(String sessionId) {
+        return parseHex(sessionId, 0, 8) << 32 | parseHex(sessionId, 9, 13) << 16 | parseHex(sessionId, 14, 18);
+    }
+
+    static long leastSigBits(String sessionId) {
+        return parseHex(sessionId, 19, 23) << 48 | parseHex(sessionId, 24, 36);
+    }
+
+    static String toSessionId(long mostSigBits, long leastSigBits) {
+        char[] chars = new char[UUID_LENGTH];
+        formatHex(chars, 0, mostSigBits >>> 32, 8);
+        chars[8] = '-';
+        formatHex(chars, 9, mostSigBits >>> 16, 4);
+        chars[13] = '-';
+        formatHex(chars, 14, mostSigBits, 4);
+        chars[18] = '-';
+        formatHex(chars, 19, leastSigBits >>> 48, 4);
+        chars[23] = '-';
+        formatHex(chars, 24, leastSigBits, 12);
+        return new String(chars);
+    }
+
+    private int findSlot(String path, long mostSigBits, long leastSigBits) {
+        int mask = values.length - 1;
+        int slot = hash(path, mostSigBits, leastSigBits) & mask;
+        while (values[slot] != null
+                && (keys[slot * 2] != mostSigBits || keys[slot * 2 + 1] != leastSigBits || !paths[slot].equals(path))) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void deleteSlot(int slot) {
+        int mask = values.length - 1;
+        int free = slot;
+        values[free] = null;
+        paths[free] = null;
+        int next = free;
+        while (true) {
+            next = (next + 1) & mask;
+            if (values[next] == null) {
+                return;
+            }
+            int home = hash(paths[next], keys[next * 2], keys[next * 2 + 1]) & mask;
+            boolean homeBetweenFreeAndNext = free <= next ? free < home && home <= next : free < home || home <= next;
+            if (homeBetweenFreeAndNext) {
+                continue;
+            }
+            keys[free * 2] = keys[next * 2];
+            keys[free * 2 + 1] = keys[next * 2 + 1];
+            paths[free] = paths[next];
+            values[free] = values[next];
+            values[next] = null;
+            paths[next] = null;
+            free = next;
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        String[] oldPaths = paths;
+        Object[] oldValues = values;
+        keys = new long[capacity * 2];
+        paths = new String[capacity];
+        values = new Object[capacity];
+        for (int slot = 0; slot < oldValues.length; slot++) {
+            if (oldValues[slot] != null) {
+                int newSlot = findSlot(oldPaths[slot], oldKeys[slot * 2], oldKeys[slot * 2 + 1]);
+                keys[newSlot * 2] = oldKeys[slot * 2];
+                keys[newSlot * 2 + 1] = oldKeys[slot * 2 + 1];
+                paths[newSlot] = oldPaths[slot];
+                values[newSlot] = oldValues[slot];
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int slot) {
+        return (V) values[slot];
+    }
+
+    private static int hash(String path, long mostSigBits, long leastSigBits) {
+        long h = mostSigBits * 0x9E3779B97F4A7C15L ^ leastSigBits ^ path.hashCode();
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private static long parseHex(String value, int beginIndex, int endIndex) {
+        long result = 0;
+        for (int i = beginIndex; i < endIndex; i++) {
+            char c = value.charAt(i);
+            result = result << 4 | (c <= '9' ? c - '0' : c - 'a' + 10);
+        }
+        return result;
+    }
+
+    private static void formatHex(char[] chars, int offset, long value, int digits) {
+        for (int i = digits - 1; i >= 0; i--) {
+            chars[offset + i] = HEX_DIGITS[(int) (value & 0xf)];
+            value >>>= 4;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+public class SessionPollingStats {
+
+    private final long completedSessions;
+    private final long polls;
+    private final long totalTimeToResultMillis;
+
+    public SessionPollingStats(long completedSessions, long polls, long totalTimeToResultMillis) {
+        this.completedSessions = completedSessions;
+        this.polls = polls;
+        this.totalTimeToResultMillis = totalTimeToResultMillis;
+    }
+
+    public long getCompletedSessions() {
+        return completedSessions;
+    }
+
+    public long getPolls() {
+        return polls;
+    }
+
+    public double getPollsPerSession() {
+        return completedSessions == 0 ? 0 : (double) polls / completedSessions;
+    }
+
+    public double getAverageTimeToResultMillis() {
+        return completedSessions == 0 ? 0 : (double) totalTimeToResultMillis / completedSessions;
+    }
+
+    @Override
+    public String toString() {
+        return "SessionPollingStats{" +
+                "completedSessions=" + completedSessions +
+                ", polls=" + polls +
+                ", pollsPerSession=" + getPollsPerSession() +
+                ", averageTimeToResultMillis=" + getAverageTimeToResultMillis() +
+                '}';
+    }
+}
@@ -32,6 +32,7 @@ import ee.sk.mid.rest.dao.request.SessionStatusRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
 import static org.apache.commons.lang3.StringUtils.equalsIgnoreCase;
@@ -42,10 +43,14 @@ public class SessionStatusPoller {
     public static final String AUTHENTICATION_SESSION_PATH = "/mid-api/authentication/session/{sessionId}";
 
     private static final Logger logger = LoggerFactory.getLogger(SessionStatusPoller.class);
+    private static final long DEFAULT_RESULT_GRACE_PERIOD_MILLIS = 5000;
+    private static final long LONG_POLLING_DEADLINE_MARGIN_MILLIS = 1000;
 
     private MobileIdConnector connector;
-    private int pollingSleepTimeoutSeconds = 1;
-
+    private final SessionStatusSingleFlight singleFlight = new SessionStatusSingleFlight(DEFAULT_RESULT_GRACE_PERIOD_MILLIS);
+    private final SessionPollingMetrics pollingMetrics = new SessionPollingMetrics();
+    private volatile PollingStrategy pollingStrategy = new FixedPollingStrategy(Duration.ofSeconds(1));
+    private int longPollingTimeoutSeconds = 0;
 
     public SessionStatusPoller(MobileIdConnector connector) {
         this.connector = connector;
@@ -55,14 +60,26 @@ public class SessionStatusPoller {
         return fetchFinalSessionStatus(sessionId, SIGNATURE_SESSION_PATH);
     }
 
+    public SessionStatus fetchFinalSignatureSessionStatus(String sessionId, Deadline deadline) throws TechnicalErrorException {
+        return fetchFinalSessionStatus(sessionId, SIGNATURE_SESSION_PATH, deadline);
+    }
+
     public SessionStatus fetchFinalAuthenticationSessionStatus(String sessionId) throws TechnicalErrorException {
         return fetchFinalSessionStatus(sessionId, AUTHENTICATION_SESSION_PATH);
     }
 
+    public SessionStatus fetchFinalAuthenticationSessionStatus(String sessionId, Deadline deadline) throws TechnicalErrorException {
+        return fetchFinalSessionStatus(sessionId, AUTHENTICATION_SESSION_PATH, deadline);
+    }
+
     public SessionStatus fetchFinalSessionStatus(String sessionId, String path) throws TechnicalErrorException {
+        return fetchFinalSessionStatus(sessionId, path, Deadline.none());
+    }
+
+    public SessionStatus fetchFinalSessionStatus(String sessionId, String path, Deadline deadline) throws TechnicalErrorException {
         logger.debug("Starting to poll session status for session " + sessionId);
         try {
-            SessionStatus sessionStatus = pollForFinalSessionStatus(sessionId, path);
+            SessionStatus sessionStatus = singleFlight.fetch(sessionId, path, deadline, () -> pollForFinalSessionStatus(sessionId, path, deadline));
             validateResult(sessionStatus);
             return sessionStatus;
         } catch (InterruptedException e) {
@@ -71,31 +88,75 @@ public class SessionStatusPoller {
         }
     }
 
-    private SessionStatus pollForFinalSessionStatus(String sessionId, String path) throws InterruptedException {
+    private SessionStatus pollForFinalSessionStatus(String sessionId, String path, Deadline deadline) throws InterruptedException {
+        PollingStrategy strategy = pollingStrategy;
+        long startTime = System.nanoTime();
+        long previousPollTime = startTime;
+        long pollTime = startTime;
+        int polls = 0;
         SessionStatus sessionStatus = null;
+        if (!isLongPolling()) {
+            sleep(strategy.getInitialDelay(), deadline);
+        }
         while (sessionStatus == null || equalsIgnoreCase("RUNNING", sessionStatus.getState())) {
-            sessionStatus = pollSessionStatus(sessionId, path);
+            previousPollTime = pollTime;
+            pollTime = System.nanoTime();
+            SessionStatusRequest request = createSessionStatusRequest(sessionId, deadline);
+            sessionStatus = pollSessionStatus(request, path, deadline);
+            polls++;
             if (equalsIgnoreCase("COMPLETE", sessionStatus.getState())) {
+                strategy.onSessionCompleted(Duration.ofNanos((previousPollTime + pollTime) / 2 - startTime));
+                pollingMetrics.recordCompletedSession(polls, System.nanoTime() - startTime);
                 break;
             }
-            logger.debug("Sleeping for " + pollingSleepTimeoutSeconds + " seconds");
-            TimeUnit.SECONDS.sleep(pollingSleepTimeoutSeconds);
+            if (!request.isLongPolling() || isEarlyLongPollingResponse(request, System.nanoTime() - pollTime)) {
+                sleep(strategy.getNextDelay(Duration.ofNanos(System.nanoTime() - startTime)), deadline);
+            }
         }
         logger.debug("Got session final session status response");
         return sessionStatus;
     }
 
-    private SessionStatus pollSessionStatus(String sessionId, String path) {
+    private static void sleep(Duration delay, Deadline deadline) throws InterruptedException {
+        long delayMillis = delay.toMillis();
+        long remainingMillis = deadline.getRemainingMillis();
+        if (delayMillis >= remainingMillis) {
+            delayMillis = remainingMillis + 1;
+        }
+        if (delayMillis > 0) {
+            logger.debug("Sleeping for " + delayMillis + " milliseconds");
+            TimeUnit.MILLISECONDS.sleep(delayMillis);
+        }
+        if (deadline.isExpired()) {
+            logger.error("Deadline exceeded while polling session status");
+            throw new DeadlineExceededException("Deadline exceeded while polling session status");
+        }
+    }
+
+    private static boolean isEarlyLongPollingResponse(SessionStatusRequest request, long pollDurationNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(pollDurationNanos) < request.getTimeoutMs() / 2;
+    }
+
+    private SessionStatus pollSessionStatus(SessionStatusRequest request, String path, Deadline deadline) {
         logger.debug("Polling session status");
-        SessionStatusRequest request = createSessionStatusRequest(sessionId);
-        return connector.getSessionStatus(request, path);
+        return connector.getSessionStatus(request, path, deadline);
     }
 
-    private SessionStatusRequest createSessionStatusRequest(String sessionId) {
+    private SessionStatusRequest createSessionStatusRequest(String sessionId, Deadline deadline) {
+        if (isLongPolling()) {
+            long timeoutMs = Math.min(TimeUnit.SECONDS.toMillis(longPollingTimeoutSeconds), deadline.getRemainingMillis() - LONG_POLLING_DEADLINE_MARGIN_MILLIS);
+            if (timeoutMs > 0) {
+                return new SessionStatusRequest(sessionId, (int) timeoutMs);
+            }
+        }
         return new SessionStatusRequest(sessionId);
     }
 
-    private void validateResult(SessionStatus sessionStatus) throws TechnicalErrorException {
+    private boolean isLongPolling() {
+        return longPollingTimeoutSeconds > 0;
+    }
+
+    static void validateResult(SessionStatus sessionStatus) throws TechnicalErrorException {
         String result = sessionStatus.getResult();
         if (result == null) {
             logger.error("Result is missing in the session status response");
@@ -104,7 +165,7 @@ public class SessionStatusPoller {
         validateResult(result);
     }
 
-    private void validateResult(String result) throws MobileIdException {
+    private static void validateResult(String result) throws MobileIdException {
         if (equalsIgnoreCase(result, "TIMEOUT")) {
             logger.error("Session timeout");
             throw new SessionTimeoutException();
@@ -143,6 +204,25 @@ public class SessionStatusPoller {
 
     public void setPollingSleepTimeSeconds(int pollingSleepTimeSeconds) {
         logger.debug("Polling sleep time is " + pollingSleepTimeSeconds + " second(s)");
-        pollingSleepTimeoutSeconds = pollingSleepTimeSeconds;
+        pollingStrategy = new FixedPollingStrategy(Duration.ofSeconds(pollingSleepTimeSeconds));
+    }
+
+    public void setPollingStrategy(PollingStrategy pollingStrategy) {
+        logger.debug("Polling strategy is " + pollingStrategy);
+        this.pollingStrategy = pollingStrategy;
+    }
+
+    public SessionPollingStats getPollingStats() {
+        return pollingMetrics.getStats();
+    }
+
+    public void setResultGracePeriodMillis(long resultGracePeriodMillis) {
+        logger.debug("Final session status is kept for " + resultGracePeriodMillis + " millisecond(s)");
+        singleFlight.setResultGracePeriodMillis(resultGracePeriodMillis);
+    }
+
+    public void setLongPollingTimeoutSeconds(int longPollingTimeoutSeconds) {
+        logger.debug("Long polling timeout is " + longPollingTimeoutSeconds + " second(s)");
+        this.longPollingTimeoutSeconds = longPollingTimeoutSeconds;
     }
 }
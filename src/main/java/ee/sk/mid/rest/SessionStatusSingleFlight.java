@@ -0,0 +1,178 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.exception.DeadlineExceededException;
+import ee.sk.mid.exception.TechnicalErrorException;
+import ee.sk.mid.rest.dao.SessionStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+class SessionStatusSingleFlight {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionStatusSingleFlight.class);
+
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+    private final DelayQueue<Flight> completedFlights = new DelayQueue<>();
+    private volatile long resultGracePeriodMillis;
+
+    SessionStatusSingleFlight(long resultGracePeriodMillis) {
+        this.resultGracePeriodMillis = resultGracePeriodMillis;
+    }
+
+    void setResultGracePeriodMillis(long resultGracePeriodMillis) {
+        this.resultGracePeriodMillis = resultGracePeriodMillis;
+    }
+
+    SessionStatus fetch(String sessionId, String path, Deadline deadline, FinalSessionStatusSupplier poll) throws InterruptedException {
+        String key = path + ":" + sessionId;
+        while (true) {
+            Flight flight = flights.get(key);
+            if (flight != null && flight.isExpired(System.currentTimeMillis())) {
+                flights.remove(key, flight);
+                continue;
+            }
+            if (flight != null) {
+                logger.debug("Waiting for the session status of session " + sessionId + " polled by another thread");
+                try {
+                    return await(flight, deadline);
+                } catch (DeadlineExceededException e) {
+                    if (deadline.isExpired()) {
+                        throw e;
+                    }
+                    logger.debug("Deadline of the thread polling session " + sessionId + " was exceeded, taking over polling");
+                    continue;
+                } catch (LeaderInterruptedException e) {
+                    logger.debug("Thread polling session " + sessionId + " was interrupted, taking over polling");
+                    continue;
+                }
+            }
+            Flight ownFlight = new Flight(key);
+            if (flights.putIfAbsent(key, ownFlight) == null) {
+                return lead(ownFlight, poll);
+            }
+        }
+    }
+
+    int size() {
+        return flights.size();
+    }
+
+    private SessionStatus lead(Flight flight, FinalSessionStatusSupplier poll) throws InterruptedException {
+        try {
+            SessionStatus sessionStatus = poll.get();
+            long gracePeriod = resultGracePeriodMillis;
+            flight.expiresAt = System.currentTimeMillis() + gracePeriod;
+            flight.result.complete(sessionStatus);
+            if (gracePeriod <= 0) {
+                flights.remove(flight.key, flight);
+            } else {
+                completedFlights.add(flight);
+            }
+            return sessionStatus;
+        } catch (InterruptedException | RuntimeException e) {
+            flights.remove(flight.key, flight);
+            flight.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            removeExpiredFlights();
+        }
+    }
+
+    private static SessionStatus await(Flight flight, Deadline deadline) throws InterruptedException {
+        try {
+            if (!deadline.isBounded()) {
+                return flight.result.get();
+            }
+            return flight.result.get(deadline.getRemainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.error("Deadline exceeded while waiting for session status");
+            throw new DeadlineExceededException("Deadline exceeded while waiting for session status", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof InterruptedException || cause != null && cause.getCause() instanceof InterruptedException) {
+                throw new LeaderInterruptedException();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new TechnicalErrorException("Failed to poll session status: " + cause.getMessage(), cause);
+        }
+    }
+
+    private void removeExpiredFlights() {
+        for (Flight flight = completedFlights.poll(); flight != null; flight = completedFlights.poll()) {
+            flights.remove(flight.key, flight);
+        }
+    }
+
+    interface FinalSessionStatusSupplier {
+
+        SessionStatus get() throws InterruptedException;
+    }
+
+    private static class LeaderInterruptedException extends RuntimeException {
+
+        LeaderInterruptedException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static class Flight implements Delayed {
+
+        private final String key;
+        private final CompletableFuture<SessionStatus> result = new CompletableFuture<>();
+        private volatile long expiresAt = Long.MAX_VALUE;
+
+        Flight(String key) {
+            this.key = key;
+        }
+
+        boolean isExpired(long now) {
+            return result.isDone() && now >= expiresAt;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expiresAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(expiresAt, ((Flight) other).expiresAt);
+        }
+    }
+}
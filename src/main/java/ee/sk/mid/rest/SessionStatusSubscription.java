@@ -0,0 +1,135 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.rest.dao.SessionStatus;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.apache.commons.lang3.StringUtils.equalsIgnoreCase;
+
+class SessionStatusSubscription implements Subscription {
+
+    private final Subscriber<? super SessionStatus> subscriber;
+    private final Queue<SessionStatus> pendingStatuses = new ConcurrentLinkedQueue<>();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger drainRequests = new AtomicInteger();
+    private volatile CompletableFuture<SessionStatus> polling;
+    private volatile String lastState;
+    private volatile boolean done;
+    private volatile boolean cancelled;
+    private boolean terminated;
+    private Throwable error;
+
+    SessionStatusSubscription(Subscriber<? super SessionStatus> subscriber) {
+        this.subscriber = subscriber;
+    }
+
+    void start(CompletableFuture<SessionStatus> polling) {
+        this.polling = polling;
+        if (cancelled) {
+            polling.cancel(false);
+            return;
+        }
+        polling.whenComplete((sessionStatus, throwable) -> {
+            if (done) {
+                return;
+            }
+            if (throwable != null) {
+                error = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+            } else {
+                pendingStatuses.add(sessionStatus);
+            }
+            done = true;
+            drain();
+        });
+    }
+
+    void onRunningStatus(SessionStatus sessionStatus) {
+        if (equalsIgnoreCase(lastState, sessionStatus.getState())) {
+            return;
+        }
+        lastState = sessionStatus.getState();
+        pendingStatuses.add(sessionStatus);
+        drain();
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0) {
+            error = new IllegalArgumentException("Requested number of session statuses must be positive, was " + n);
+            done = true;
+            pendingStatuses.clear();
+            cancelPolling();
+        } else {
+            requested.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+        }
+        drain();
+    }
+
+    @Override
+    public void cancel() {
+        cancelled = true;
+        cancelPolling();
+    }
+
+    private void cancelPolling() {
+        CompletableFuture<SessionStatus> currentPolling = polling;
+        if (currentPolling != null) {
+            currentPolling.cancel(false);
+        }
+    }
+
+    private void drain() {
+        if (drainRequests.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (!cancelled && !terminated && requested.get() > 0 && !pendingStatuses.isEmpty()) {
+                requested.decrementAndGet();
+                subscriber.onNext(pendingStatuses.poll());
+            }
+            if (!cancelled && !terminated && done && pendingStatuses.isEmpty()) {
+                terminated = true;
+                if (error != null) {
+                    subscriber.onError(error);
+                } else {
+                    subscriber.onComplete();
+                }
+            }
+            missed = drainRequests.addAndGet(-missed);
+        } while (missed != 0);
+    }
+}
@@ -0,0 +1,74 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+class VegasConcurrencyLimit {
+
+    private static final int PROBE_INTERVAL = 1000;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    private double limit;
+    private long noLoadRttNanos;
+    private long samples;
+
+    VegasConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+    }
+
+    int getLimit() {
+        return (int) limit;
+    }
+
+    long getNoLoadRttNanos() {
+        return noLoadRttNanos;
+    }
+
+    void onSample(long rttNanos, int inFlightRequests, boolean dropped) {
+        if (++samples % PROBE_INTERVAL == 0 || noLoadRttNanos == 0 || rttNanos < noLoadRttNanos) {
+            noLoadRttNanos = Math.max(1, rttNanos);
+        }
+        double step = Math.max(1, Math.log10(limit));
+        double newLimit = limit;
+        if (dropped) {
+            newLimit = limit - step;
+        } else if (inFlightRequests * 2 >= limit) {
+            double queueSize = Math.ceil(limit * (1 - (double) noLoadRttNanos / Math.max(rttNanos, noLoadRttNanos)));
+            if (queueSize <= step) {
+                newLimit = limit + 6 * step;
+            } else if (queueSize < 3 * step) {
+                newLimit = limit + step;
+            } else if (queueSize > 6 * step) {
+                newLimit = limit - step;
+            }
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+}
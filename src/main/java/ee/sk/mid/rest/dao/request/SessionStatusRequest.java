@@ -26,6 +26,7 @@ package ee.sk.mid.rest.dao.request;
  * #L%
  */
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.io.Serializable;
@@ -35,11 +36,35 @@ public class SessionStatusRequest implements Serializable {
     @JsonProperty(value = "sessionId")
     private String sessionID;
 
+    @JsonIgnore
+    private Integer timeoutMs;
+
     public SessionStatusRequest(String sessionID) {
         this.sessionID = sessionID;
     }
 
+    public SessionStatusRequest(String sessionID, int timeoutMs) {
+        this(sessionID);
+        this.timeoutMs = timeoutMs;
+    }
+
     public String getSessionID() {
         return sessionID;
     }
+
+    public Integer getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    public boolean isLongPolling() {
+        return timeoutMs != null && timeoutMs > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "SessionStatusRequest{" +
+                "sessionID='" + sessionID + '\'' +
+                ", timeoutMs=" + timeoutMs +
+                '}';
+    }
 }
@@ -111,6 +111,38 @@ public class AuthenticationResponseValidatorTest {
         assertThat(authenticationResult.getErrors(), contains("Signer's certificate expired"));
     }
 
+    @Test
+    public void validate_withCertificateCache_shouldReuseParsedCertificate() {
+        ParsedCertificateCache certificateCache = ParsedCertificateCache.newBuilder().build();
+        validator = new AuthenticationResponseValidator(certificateCache);
+
+        validator.validate(createValidMobileIdAuthentication());
+        MobileIdAuthenticationResult authenticationResult = validator.validate(createValidMobileIdAuthentication());
+
+        assertThat(authenticationResult.getAuthenticationIdentity().getIdentityCode(), is("60001019906"));
+        assertThat(certificateCache.getStats().getHits(), is(1L));
+        assertThat(certificateCache.getStats().getMisses(), is(1L));
+    }
+
+    @Test
+    public void validate_withParsedCertificate_shouldNotLookUpCertificateAgain() {
+        ParsedCertificateCache certificateCache = ParsedCertificateCache.newBuilder().build();
+        validator = new AuthenticationResponseValidator(certificateCache);
+        MobileIdAuthentication authentication = MobileIdAuthentication.newBuilder()
+                .withResult("OK")
+                .withSignatureValueInBase64(VALID_SIGNATURE_IN_BASE64)
+                .withParsedCertificate(certificateCache.get(AUTH_CERTIFICATE_EE))
+                .withSignedHashInBase64(SIGNED_HASH_IN_BASE64)
+                .withHashType(HashType.SHA512)
+                .build();
+
+        MobileIdAuthenticationResult authenticationResult = validator.validate(authentication);
+
+        assertThat(authenticationResult.getAuthenticationIdentity().getIdentityCode(), is("60001019906"));
+        assertThat(certificateCache.getStats().getHits(), is(0L));
+        assertThat(certificateCache.getStats().getMisses(), is(1L));
+    }
+
     @Test
     public void validate_shouldReturnValidIdentity() {
         MobileIdAuthentication authentication = createValidMobileIdAuthentication();
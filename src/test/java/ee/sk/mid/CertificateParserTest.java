@@ -34,8 +34,12 @@ import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
 
 import static ee.sk.mid.mock.TestData.AUTH_CERTIFICATE_EE;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 public class CertificateParserTest {
 
@@ -49,4 +53,34 @@ public class CertificateParserTest {
     public void parseInvalidCertificate_shouldThrowException() {
         CertificateParser.parseX509Certificate("HACKERMAN");
     }
+
+    @Test
+    public void parseCertificate_withLineBreaks() {
+        String certificateWithLineBreaks = AUTH_CERTIFICATE_EE.replaceAll("(.{64})", "$1\n");
+        X509Certificate x509Certificate = CertificateParser.parseX509Certificate(certificateWithLineBreaks);
+        assertThat(x509Certificate, is(CertificateParser.parseX509Certificate(AUTH_CERTIFICATE_EE)));
+    }
+
+    @Test
+    public void parseCertificate_fromEncodedBytes() throws CertificateEncodingException {
+        X509Certificate x509Certificate = CertificateParser.parseX509Certificate(Base64.decodeBase64(AUTH_CERTIFICATE_EE));
+        assertThat(Base64.encodeBase64String(x509Certificate.getEncoded()), is(AUTH_CERTIFICATE_EE));
+    }
+
+    @Test
+    public void parseInvalidCertificate_shouldNotIncludeCertificateInErrorMessage() {
+        String truncatedCertificate = AUTH_CERTIFICATE_EE.substring(0, 1000);
+        try {
+            CertificateParser.parseX509Certificate(truncatedCertificate);
+            fail("Parsing truncated certificate should fail");
+        } catch (TechnicalErrorException e) {
+            assertThat(e.getMessage(), not(containsString(truncatedCertificate.substring(0, 100))));
+            assertThat(e.getMessage().length(), lessThan(300));
+        }
+    }
+
+    @Test(expected = TechnicalErrorException.class)
+    public void parseMissingCertificate_shouldThrowException() {
+        CertificateParser.parseX509Certificate((String) null);
+    }
 }
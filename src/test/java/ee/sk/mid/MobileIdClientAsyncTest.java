@@ -0,0 +1,249 @@
+package ee.sk.mid;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import ee.sk.mid.exception.TechnicalErrorException;
+import ee.sk.mid.exception.UserCancellationException;
+import ee.sk.mid.mock.MobileIdAsyncConnectorWrapper;
+import ee.sk.mid.mock.MobileIdConcurrentConnectorStub;
+import ee.sk.mid.rest.MobileIdConnector;
+import ee.sk.mid.rest.RetryingMobileIdConnector;
+import ee.sk.mid.rest.dao.request.AuthenticationRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static ee.sk.mid.mock.MobileIdRestServiceRequestDummy.*;
+import static ee.sk.mid.mock.MobileIdRestServiceStub.stubRequestWithResponse;
+import static ee.sk.mid.mock.SessionStatusDummy.createSuccessfulSessionStatus;
+import static ee.sk.mid.mock.TestData.*;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class MobileIdClientAsyncTest {
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule(18089);
+
+    private MobileIdClient client;
+    private ExecutorService fallbackExecutor;
+
+    @Before
+    public void setUp() throws IOException {
+        client = MobileIdClient.newBuilder()
+                .withRelyingPartyUUID(VALID_RELYING_PARTY_UUID)
+                .withRelyingPartyName(VALID_RELYING_PARTY_NAME)
+                .withHostUrl(LOCALHOST_URL)
+                .build();
+        stubRequestWithResponse("/mid-api/signature", "requests/signatureRequest.json", "responses/signatureResponse.json");
+        stubRequestWithResponse("/mid-api/authentication", "requests/authenticationRequestSHA256.json", "responses/authenticationResponse.json");
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+        if (fallbackExecutor != null) {
+            fallbackExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void signAsync() throws Exception {
+        stubRequestWithResponse("/mid-api/signature/session/2c52caf4-13b0-41c4-bdc6-aa268403cc00", "responses/sessionStatusForSuccessfulSigningRequest.json");
+
+        MobileIdSignature signature = client.signAsync(createValidSignatureRequest()).get(5, TimeUnit.SECONDS);
+
+        assertSignatureCreated(signature);
+    }
+
+    @Test
+    public void authenticateAsync() throws Exception {
+        stubRequestWithResponse("/mid-api/authentication/session/1dcc1600-29a6-4e95-a95c-d69b31febcfb", "responses/sessionStatusForSuccessfulAuthenticationRequest.json");
+
+        MobileIdAuthenticationResult result = client.authenticateAsync(createSHA256AuthenticationRequest()).get(5, TimeUnit.SECONDS);
+
+        assertThat(result.getAuthenticationIdentity(), is(notNullValue()));
+        assertThat(result.getAuthenticationIdentity().getIdentityCode(), is(notNullValue()));
+    }
+
+    @Test
+    public void authenticateAsync_whenUserCancelled_shouldCompleteExceptionally() throws Exception {
+        stubRequestWithResponse("/mid-api/authentication/session/1dcc1600-29a6-4e95-a95c-d69b31febcfb", "responses/sessionStatusWhenUserCancelled.json");
+
+        try {
+            client.authenticateAsync(createSHA256AuthenticationRequest()).get(5, TimeUnit.SECONDS);
+            fail("Expected authentication to fail");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(UserCancellationException.class));
+        }
+    }
+
+    @Test
+    public void cancelAuthenticateAsync_shouldStopPolling() throws Exception {
+        MobileIdConcurrentConnectorStub connector = new MobileIdConcurrentConnectorStub(Integer.MAX_VALUE, createSuccessfulSessionStatus());
+        try (MobileIdClient stubClient = MobileIdClient.newBuilder()
+                .withRelyingPartyUUID(VALID_RELYING_PARTY_UUID)
+                .withRelyingPartyName(VALID_RELYING_PARTY_NAME)
+                .withMobileIdConnector(connector)
+                .withPollingSleepTimeoutSeconds(0)
+                .build()) {
+
+            CompletableFuture<MobileIdAuthenticationResult> result = stubClient.authenticateAsync(createSHA256AuthenticationRequest());
+            while (connector.getTotalPollCount() == 0) {
+                Thread.sleep(10);
+            }
+            assertThat(result.cancel(true), is(true));
+            Thread.sleep(50);
+            int pollsAfterCancel = connector.getTotalPollCount();
+            Thread.sleep(200);
+
+            assertThat(connector.getTotalPollCount(), is(pollsAfterCancel));
+            assertThat(stubClient.getScheduledSessionStatusPoller().getPendingSessionCount(), is(0));
+            try {
+                result.join();
+                fail("Expected authentication to be cancelled");
+            } catch (CancellationException expected) {
+                // cancelled by the caller
+            }
+        }
+    }
+
+    @Test
+    public void signAsync_withBlockingConnector_shouldInitiateOnAsyncExecutor() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        Executor asyncExecutor = command -> {
+            executions.incrementAndGet();
+            command.run();
+        };
+        try (MobileIdClient stubClient = createStubClient(new MobileIdConcurrentConnectorStub(0, createSuccessfulSessionStatus()), asyncExecutor)) {
+            stubClient.signAsync(createValidSignatureRequest()).handle((signature, throwable) -> null).get(5, TimeUnit.SECONDS);
+
+            assertThat(executions.get(), is(1));
+        }
+    }
+
+    @Test
+    public void authenticateAsync_withDecoratedAsyncConnector_shouldNotUseAsyncExecutor() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        try (MobileIdAsyncConnectorWrapper asyncConnector = new MobileIdAsyncConnectorWrapper(new MobileIdConcurrentConnectorStub(0, createSuccessfulSessionStatus()));
+             MobileIdClient stubClient = createStubClient(RetryingMobileIdConnector.newBuilder().withConnector(asyncConnector).build(), command -> {
+                 executions.incrementAndGet();
+                 command.run();
+             })) {
+            stubClient.authenticateAsync(createSHA256AuthenticationRequest()).handle((result, throwable) -> null).get(5, TimeUnit.SECONDS);
+
+            assertThat(executions.get(), is(0));
+            assertThat(asyncConnector.getAsyncRequestCount(), is(2));
+        }
+    }
+
+    @Test
+    public void signOnVirtualThread_withPlatformThreadFallback() throws Exception {
+        stubRequestWithResponse("/mid-api/signature/session/2c52caf4-13b0-41c4-bdc6-aa268403cc00", "responses/sessionStatusForSuccessfulSigningRequest.json");
+
+        try (MobileIdClient fallbackClient = createClientWithPlatformThreadFallback()) {
+            MobileIdSignature signature = fallbackClient.signOnVirtualThread(createValidSignatureRequest()).get(5, TimeUnit.SECONDS);
+
+            assertSignatureCreated(signature);
+        }
+    }
+
+    @Test
+    public void authenticateOnVirtualThread_withPlatformThreadFallback() throws Exception {
+        stubRequestWithResponse("/mid-api/authentication/session/1dcc1600-29a6-4e95-a95c-d69b31febcfb", "responses/sessionStatusForSuccessfulAuthenticationRequest.json");
+
+        try (MobileIdClient fallbackClient = createClientWithPlatformThreadFallback()) {
+            MobileIdAuthenticationResult result = fallbackClient.authenticateOnVirtualThread(createSHA256AuthenticationRequest()).get(5, TimeUnit.SECONDS);
+
+            assertThat(result.getAuthenticationIdentity().getIdentityCode(), is(notNullValue()));
+        }
+    }
+
+    @Test
+    public void authenticateOnVirtualThread_whenUserCancelled_shouldCompleteExceptionally() throws Exception {
+        stubRequestWithResponse("/mid-api/authentication/session/1dcc1600-29a6-4e95-a95c-d69b31febcfb", "responses/sessionStatusWhenUserCancelled.json");
+
+        try (MobileIdClient fallbackClient = createClientWithPlatformThreadFallback()) {
+            fallbackClient.authenticateOnVirtualThread(createSHA256AuthenticationRequest()).get(5, TimeUnit.SECONDS);
+            fail("Expected authentication to fail");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(UserCancellationException.class));
+        }
+    }
+
+    @Test(expected = TechnicalErrorException.class)
+    public void authenticateOnVirtualThread_withoutVirtualThreadExecution_shouldThrowException() {
+        client.authenticateOnVirtualThread(createSHA256AuthenticationRequest());
+    }
+
+    private static MobileIdClient createStubClient(MobileIdConnector connector, Executor asyncExecutor) {
+        return MobileIdClient.newBuilder()
+                .withRelyingPartyUUID(VALID_RELYING_PARTY_UUID)
+                .withRelyingPartyName(VALID_RELYING_PARTY_NAME)
+                .withMobileIdConnector(connector)
+                .withPollingSleepTimeoutSeconds(0)
+                .withAsyncExecutor(asyncExecutor)
+                .build();
+    }
+
+    private MobileIdClient createClientWithPlatformThreadFallback() {
+        fallbackExecutor = Executors.newFixedThreadPool(2);
+        return MobileIdClient.newBuilder()
+                .withRelyingPartyUUID(VALID_RELYING_PARTY_UUID)
+                .withRelyingPartyName(VALID_RELYING_PARTY_NAME)
+                .withHostUrl(LOCALHOST_URL)
+                .withPollingSleepTimeoutSeconds(0)
+                .withVirtualThreadExecution(new VirtualThreadExecution(fallbackExecutor))
+                .build();
+    }
+
+    private AuthenticationRequest createSHA256AuthenticationRequest() {
+        return AuthenticationRequest.newBuilder()
+                .withRelyingPartyUUID(VALID_RELYING_PARTY_UUID)
+                .withRelyingPartyName(VALID_RELYING_PARTY_NAME)
+                .withPhoneNumber(VALID_PHONE)
+                .withNationalIdentityNumber(VALID_NAT_IDENTITY)
+                .withAuthenticationHash(createAuthenticationSHA256Hash())
+                .withLanguage(Language.EST)
+                .build();
+    }
+}
@@ -262,6 +262,44 @@ public class MobileIdClientAuthenticationTest {
         assertThat("Duration is " + duration, duration < 3000L, is(true));
     }
 
+    @Test
+    public void setLongPollingTimeoutForAuthentication() {
+        stubFor(get(urlEqualTo("/mid-api/authentication/session/1dcc1600-29a6-4e95-a95c-d69b31febcfb?timeoutMs=2000"))
+                .inScenario("Long polling")
+                .whenScenarioStateIs(STARTED)
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(1200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"state\":\"RUNNING\"}"))
+                .willSetStateTo("COMPLETE"));
+        stubFor(get(urlEqualTo("/mid-api/authentication/session/1dcc1600-29a6-4e95-a95c-d69b31febcfb?timeoutMs=2000"))
+                .inScenario("Long polling")
+                .whenScenarioStateIs("COMPLETE")
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(500)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"state\":\"COMPLETE\",\"result\":\"OK\",\"signature\":{\"value\":\"c2lnbmF0dXJl\",\"algorithm\":\"sha256WithRSAEncryption\"}}")));
+
+        MobileIdClient client = MobileIdClient.newBuilder()
+                .withRelyingPartyUUID(VALID_RELYING_PARTY_UUID)
+                .withRelyingPartyName(VALID_RELYING_PARTY_NAME)
+                .withHostUrl(LOCALHOST_URL)
+                .withPollingSleepTimeoutSeconds(2)
+                .withLongPollingTimeoutSeconds(2)
+                .build();
+
+        long startTime = System.currentTimeMillis();
+        SessionStatus sessionStatus = client.getSessionStatusPoller().fetchFinalAuthenticationSessionStatus("1dcc1600-29a6-4e95-a95c-d69b31febcfb");
+        long duration = System.currentTimeMillis() - startTime;
+
+        assertThat(sessionStatus.getState(), is("COMPLETE"));
+        assertThat("Duration is " + duration, duration >= 1700L, is(true));
+        assertThat("Duration is " + duration, duration < 2700L, is(true));
+        verify(2, getRequestedFor(urlPathEqualTo("/mid-api/authentication/session/1dcc1600-29a6-4e95-a95c-d69b31febcfb")));
+    }
+
     @Test
     public void verifyAuthentication_withNetworkConnectionConfigurationHavingCustomHeader() {
         String headerName = "custom-header";
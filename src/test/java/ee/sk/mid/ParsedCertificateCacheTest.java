@@ -0,0 +1,140 @@
+package ee.sk.mid;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.exception.TechnicalErrorException;
+import org.junit.Test;
+
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ee.sk.mid.mock.CertificateDummy.createCertificateValidFor;
+import static ee.sk.mid.mock.TestData.AUTH_CERTIFICATE_EE;
+import static ee.sk.mid.mock.TestData.AUTH_CERTIFICATE_LV;
+import static ee.sk.mid.mock.TestData.ECC_CERTIFICATE;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ParsedCertificateCacheTest {
+
+    @Test
+    public void get_sameCertificate_shouldReturnCachedInstance() {
+        ParsedCertificateCache cache = ParsedCertificateCache.newBuilder().build();
+
+        ParsedCertificate first = cache.get(AUTH_CERTIFICATE_EE);
+        ParsedCertificate second = cache.get(AUTH_CERTIFICATE_EE);
+
+        assertThat(second, is(sameInstance(first)));
+        assertThat(second.getPublicKey(), is(first.getCertificate().getPublicKey()));
+        assertThat(cache.getStats().getHits(), is(1L));
+        assertThat(cache.getStats().getMisses(), is(1L));
+        assertThat(cache.getStats().getSize(), is(1));
+    }
+
+    @Test
+    public void get_parsedCertificate_shouldFindEntryCachedFromBase64() {
+        ParsedCertificateCache cache = ParsedCertificateCache.newBuilder().build();
+        X509Certificate certificate = cache.get(AUTH_CERTIFICATE_EE).getCertificate();
+
+        ParsedCertificate parsed = cache.get(CertificateParser.parseX509Certificate(AUTH_CERTIFICATE_EE));
+
+        assertThat(parsed.getCertificate(), is(sameInstance(certificate)));
+        assertThat(cache.getStats().getHits(), is(1L));
+    }
+
+    @Test
+    public void getAuthenticationIdentity_shouldReturnIndependentCopies() {
+        ParsedCertificateCache cache = ParsedCertificateCache.newBuilder().build();
+
+        AuthenticationIdentity identity = cache.get(AUTH_CERTIFICATE_EE).getAuthenticationIdentity();
+        identity.setGivenName("CHANGED");
+
+        AuthenticationIdentity cached = cache.get(AUTH_CERTIFICATE_EE).getAuthenticationIdentity();
+        assertThat(cached, is(not(sameInstance(identity))));
+        assertThat(cached.getGivenName(), is("MARY ÄNN"));
+        assertThat(cached.getIdentityCode(), is("60001019906"));
+    }
+
+    @Test
+    public void getECPublicKeyParameters_shouldConvertKeyOnce() {
+        ParsedCertificateCache cache = ParsedCertificateCache.newBuilder().build();
+        ParsedCertificate parsedCertificate = cache.get(ECC_CERTIFICATE);
+
+        assertThat(cache.get(ECC_CERTIFICATE).getECPublicKeyParameters(), is(sameInstance(parsedCertificate.getECPublicKeyParameters())));
+    }
+
+    @Test
+    public void get_moreCertificatesThanMaximumSize_shouldEvictLeastRecentlyUsed() throws Exception {
+        ParsedCertificateCache cache = ParsedCertificateCache.newBuilder()
+                .withMaximumSize(3)
+                .build();
+        for (String certificate : createCertificates(5)) {
+            cache.get(certificate);
+        }
+
+        assertThat(cache.getStats().getSize(), is(3));
+        assertThat(cache.getStats().getEvictions(), is(2L));
+    }
+
+    @Test
+    public void get_frequentlyUsedCertificate_shouldSurviveScanOfNewCertificates() throws Exception {
+        ParsedCertificateCache cache = ParsedCertificateCache.newBuilder()
+                .withMaximumSize(4)
+                .withProtectedRatio(0.5)
+                .build();
+        ParsedCertificate frequent = cache.get(AUTH_CERTIFICATE_LV);
+        cache.get(AUTH_CERTIFICATE_LV);
+
+        for (String certificate : createCertificates(10)) {
+            cache.get(certificate);
+        }
+
+        assertThat(cache.get(AUTH_CERTIFICATE_LV), is(sameInstance(frequent)));
+    }
+
+    @Test(expected = TechnicalErrorException.class)
+    public void get_invalidCertificate_shouldThrowException() {
+        ParsedCertificateCache.newBuilder().build().get("HACKERMAN");
+    }
+
+    @Test(expected = TechnicalErrorException.class)
+    public void build_withoutPositiveMaximumSize_shouldThrowException() {
+        ParsedCertificateCache.newBuilder().withMaximumSize(0).build();
+    }
+
+    private static List<String> createCertificates(int count) throws Exception {
+        List<String> certificates = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            certificates.add(createCertificateValidFor(Duration.ofDays(365)));
+        }
+        return certificates;
+    }
+}
@@ -0,0 +1,136 @@
+package ee.sk.mid;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.exception.TechnicalErrorException;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.lang3.ArrayUtils;
+import org.bouncycastle.crypto.params.ECPublicKeyParameters;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static ee.sk.mid.mock.TestData.ECC_CERTIFICATE;
+import static ee.sk.mid.mock.TestData.INVALID_SIGNATURE_IN_BASE64;
+import static ee.sk.mid.mock.TestData.SIGNED_ECC_HASH_IN_BASE64;
+import static ee.sk.mid.mock.TestData.SIGNED_HASH_IN_BASE64;
+import static ee.sk.mid.mock.TestData.VALID_ECC_SIGNATURE_IN_BASE64;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SignatureVerifierTest {
+
+    private static final PublicKey EC_PUBLIC_KEY = CertificateParser.parseX509Certificate(ECC_CERTIFICATE).getPublicKey();
+
+    private static PublicKey rsaPublicKey;
+    private static String rsaSignatureInBase64;
+
+    @BeforeClass
+    public static void signWithRSA() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        KeyPair keyPair = keyPairGenerator.generateKeyPair();
+        Signature signature = Signature.getInstance("NONEwithRSA");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(ArrayUtils.addAll(HashType.SHA512.getDigestInfoPrefix(), Base64.decodeBase64(SIGNED_HASH_IN_BASE64)));
+        rsaPublicKey = keyPair.getPublic();
+        rsaSignatureInBase64 = Base64.encodeBase64String(signature.sign());
+    }
+
+    @Test
+    public void verifyWithRSA_validSignature() {
+        assertThat(SignatureVerifier.verifyWithRSA(rsaPublicKey, createAuthentication(rsaSignatureInBase64, SIGNED_HASH_IN_BASE64)), is(true));
+    }
+
+    @Test
+    public void verifyWithRSA_signatureOfOtherHash() {
+        assertThat(SignatureVerifier.verifyWithRSA(rsaPublicKey, createAuthentication(rsaSignatureInBase64, SIGNED_ECC_HASH_IN_BASE64)), is(false));
+    }
+
+    @Test
+    public void verifyWithECDSA_validSignature() {
+        assertThat(SignatureVerifier.verifyWithECDSA(EC_PUBLIC_KEY, createAuthentication(VALID_ECC_SIGNATURE_IN_BASE64, SIGNED_ECC_HASH_IN_BASE64)), is(true));
+    }
+
+    @Test
+    public void verifyWithECDSA_invalidSignature() {
+        assertThat(SignatureVerifier.verifyWithECDSA(EC_PUBLIC_KEY, createAuthentication(INVALID_SIGNATURE_IN_BASE64, SIGNED_ECC_HASH_IN_BASE64)), is(false));
+    }
+
+    @Test
+    public void verifyWithECDSA_signatureOfOtherHash() {
+        assertThat(SignatureVerifier.verifyWithECDSA(EC_PUBLIC_KEY, createAuthentication(VALID_ECC_SIGNATURE_IN_BASE64, SIGNED_HASH_IN_BASE64)), is(false));
+    }
+
+    @Test
+    public void verifyWithECDSA_withConvertedKeyParameters_validSignature() {
+        ECPublicKeyParameters keyParameters = SignatureVerifier.toECPublicKeyParameters(EC_PUBLIC_KEY);
+
+        assertThat(SignatureVerifier.verifyWithECDSA(keyParameters, createAuthentication(VALID_ECC_SIGNATURE_IN_BASE64, SIGNED_ECC_HASH_IN_BASE64)), is(true));
+        assertThat(SignatureVerifier.verifyWithECDSA(keyParameters, createAuthentication(INVALID_SIGNATURE_IN_BASE64, SIGNED_ECC_HASH_IN_BASE64)), is(false));
+    }
+
+    @Test(expected = TechnicalErrorException.class)
+    public void verifyWithECDSA_withRSAKey_shouldThrowException() {
+        SignatureVerifier.verifyWithECDSA(rsaPublicKey, createAuthentication(VALID_ECC_SIGNATURE_IN_BASE64, SIGNED_ECC_HASH_IN_BASE64));
+    }
+
+    @Test
+    public void verify_concurrently_shouldReturnSameResults() throws Exception {
+        List<CompletableFuture<Boolean>> verifications = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            verifications.add(CompletableFuture.supplyAsync(() -> {
+                boolean valid = true;
+                for (int j = 0; j < 20; j++) {
+                    valid &= SignatureVerifier.verifyWithRSA(rsaPublicKey, createAuthentication(rsaSignatureInBase64, SIGNED_HASH_IN_BASE64));
+                    valid &= SignatureVerifier.verifyWithECDSA(EC_PUBLIC_KEY, createAuthentication(VALID_ECC_SIGNATURE_IN_BASE64, SIGNED_ECC_HASH_IN_BASE64));
+                    valid &= !SignatureVerifier.verifyWithECDSA(EC_PUBLIC_KEY, createAuthentication(INVALID_SIGNATURE_IN_BASE64, SIGNED_ECC_HASH_IN_BASE64));
+                }
+                return valid;
+            }, command -> new Thread(command).start()));
+        }
+        for (CompletableFuture<Boolean> verification : verifications) {
+            assertThat(verification.get(), is(true));
+        }
+    }
+
+    private static MobileIdAuthentication createAuthentication(String signatureValueInBase64, String signedHashInBase64) {
+        return MobileIdAuthentication.newBuilder()
+                .withResult("OK")
+                .withSignatureValueInBase64(signatureValueInBase64)
+                .withSignedHashInBase64(signedHashInBase64)
+                .withHashType(HashType.SHA512)
+                .build();
+    }
+}
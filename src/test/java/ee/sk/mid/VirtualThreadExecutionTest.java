@@ -0,0 +1,128 @@
+package ee.sk.mid;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.exception.TechnicalErrorException;
+import ee.sk.mid.exception.UserCancellationException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+public class VirtualThreadExecutionTest {
+
+    private VirtualThreadExecution execution;
+
+    @After
+    public void tearDown() {
+        if (execution != null) {
+            execution.close();
+        }
+    }
+
+    @Test(expected = TechnicalErrorException.class)
+    public void create_withoutVirtualThreadSupport_shouldThrowException() {
+        assumeFalse(VirtualThreadExecution.isSupported());
+
+        new VirtualThreadExecution();
+    }
+
+    @Test
+    public void close_withSuppliedExecutor_shouldNotShutDownExecutor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            execution = new VirtualThreadExecution(executor);
+            execution.close();
+
+            assertThat(executor.isShutdown(), is(false));
+            assertThat(executor.submit(() -> "flow").get(5, TimeUnit.SECONDS), is("flow"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void submit_shouldRunFlowOnVirtualThread() throws Exception {
+        assumeTrue(VirtualThreadExecution.isSupported());
+        execution = new VirtualThreadExecution();
+
+        boolean virtual = execution.submit(() -> (Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()))
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(virtual, is(true));
+    }
+
+    @Test
+    public void invokeAll_shouldReturnResultsInOrder() {
+        assumeTrue(VirtualThreadExecution.isSupported());
+        execution = new VirtualThreadExecution();
+
+        List<Callable<String>> flows = Arrays.asList(() -> "first", () -> "second");
+
+        assertThat(execution.invokeAll(flows), contains("first", "second"));
+    }
+
+    @Test
+    public void invokeAll_whenOneFlowFails_shouldCancelOtherFlows() throws Exception {
+        assumeTrue(VirtualThreadExecution.isSupported());
+        execution = new VirtualThreadExecution();
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        List<Callable<String>> flows = Arrays.asList(
+                () -> {
+                    throw new UserCancellationException();
+                },
+                () -> {
+                    try {
+                        Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                    }
+                    return "second";
+                });
+
+        try {
+            execution.invokeAll(flows);
+        } catch (UserCancellationException e) {
+            assertThat(interrupted.await(5, TimeUnit.SECONDS), is(true));
+            return;
+        }
+        throw new AssertionError("Expected the failing flow to fail invokeAll");
+    }
+}
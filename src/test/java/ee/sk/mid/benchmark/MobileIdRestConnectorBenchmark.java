@@ -0,0 +1,110 @@
+package ee.sk.mid.benchmark;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import ee.sk.mid.rest.LoggingFilter;
+import ee.sk.mid.rest.MobileIdRestConnector;
+import ee.sk.mid.rest.dao.SessionStatus;
+import ee.sk.mid.rest.dao.request.SessionStatusRequest;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.UriBuilder;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static ee.sk.mid.rest.SessionStatusPoller.AUTHENTICATION_SESSION_PATH;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MobileIdRestConnectorBenchmark {
+
+    private static final int PORT = 18095;
+    private static final String ENDPOINT_URL = "http://localhost:" + PORT;
+    private static final String SESSION_ID = "97f5058e-e308-4c83-ac14-7712b0eb9d86";
+
+    private WireMockServer wireMockServer;
+    private MobileIdRestConnector connector;
+    private SessionStatusRequest request;
+
+    @Setup
+    public void setUp() {
+        wireMockServer = new WireMockServer(options().port(PORT));
+        wireMockServer.start();
+        wireMockServer.stubFor(get(urlPathMatching("/mid-api/authentication/session/.*"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"state\":\"RUNNING\"}")));
+        connector = new MobileIdRestConnector(ENDPOINT_URL);
+        request = new SessionStatusRequest(SESSION_ID);
+    }
+
+    @TearDown
+    public void tearDown() {
+        connector.close();
+        wireMockServer.stop();
+    }
+
+    @Benchmark
+    public SessionStatus sharedClient() {
+        return connector.getAuthenticationSessionStatus(request);
+    }
+
+    @Benchmark
+    public SessionStatus clientPerRequest() {
+        URI uri = UriBuilder
+                .fromUri(ENDPOINT_URL)
+                .path(AUTHENTICATION_SESSION_PATH)
+                .build(SESSION_ID);
+        return ClientBuilder.newClient()
+                .register(new LoggingFilter())
+                .target(uri)
+                .request()
+                .accept(APPLICATION_JSON_TYPE)
+                .get(SessionStatus.class);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MobileIdRestConnectorBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,121 @@
+package ee.sk.mid.benchmark;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.mock.MobileIdConcurrentConnectorStub;
+import ee.sk.mid.rest.ScheduledSessionStatusPoller;
+import ee.sk.mid.rest.SessionStatusPoller;
+import ee.sk.mid.rest.dao.SessionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static ee.sk.mid.mock.SessionStatusDummy.createSuccessfulSessionStatus;
+import static ee.sk.mid.rest.SessionStatusPoller.AUTHENTICATION_SESSION_PATH;
+
+public class SessionStatusPollerFootprintBenchmark {
+
+    private static final int DEFAULT_SESSION_COUNT = 100000;
+    private static final int THREAD_PER_SESSION_COUNT = 2000;
+
+    public static void main(String[] args) throws Exception {
+        int sessionCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SESSION_COUNT;
+        List<String> sessionIds = createSessionIds(sessionCount);
+
+        System.out.printf("ScheduledSessionStatusPoller: %d bytes per pending session%n",
+                measureScheduledPoller(sessionIds) / sessionCount);
+        List<String> threadSessionIds = sessionIds.subList(0, Math.min(sessionCount, THREAD_PER_SESSION_COUNT));
+        System.out.printf("SessionStatusPoller (thread per session): %d bytes of heap per pending session"
+                        + " plus the reserved thread stack (-Xss, 1 MB by default)%n",
+                measureThreadPerSessionPoller(threadSessionIds) / threadSessionIds.size());
+    }
+
+    private static long measureScheduledPoller(List<String> sessionIds) throws Exception {
+        MobileIdConcurrentConnectorStub connector = new MobileIdConcurrentConnectorStub(Integer.MAX_VALUE, createSuccessfulSessionStatus());
+        try (ScheduledSessionStatusPoller poller = new ScheduledSessionStatusPoller(connector)) {
+            poller.setPollingSleepTimeoutMillis(TimeUnit.HOURS.toMillis(1));
+            poller.setMaxJitterMillis(TimeUnit.HOURS.toMillis(1));
+
+            long before = usedHeapAfterGc();
+            List<CompletableFuture<SessionStatus>> futures = new ArrayList<>(sessionIds.size());
+            for (String sessionId : sessionIds) {
+                futures.add(poller.fetchFinalAuthenticationSessionStatus(sessionId));
+            }
+            Thread.sleep(100);
+            long after = usedHeapAfterGc();
+
+            if (poller.getPendingSessionCount() != sessionIds.size()) {
+                throw new IllegalStateException("Expected all sessions to be pending");
+            }
+            return after - before - referenceArraySize(futures.size());
+        }
+    }
+
+    private static long measureThreadPerSessionPoller(List<String> sessionIds) throws Exception {
+        MobileIdConcurrentConnectorStub connector = new MobileIdConcurrentConnectorStub(Integer.MAX_VALUE, createSuccessfulSessionStatus());
+        SessionStatusPoller poller = new SessionStatusPoller(connector);
+        poller.setPollingSleepTimeSeconds((int) TimeUnit.HOURS.toSeconds(1));
+
+        long before = usedHeapAfterGc();
+        List<Thread> threads = new ArrayList<>(sessionIds.size());
+        for (String sessionId : sessionIds) {
+            Thread thread = new Thread(() -> poller.fetchFinalSessionStatus(sessionId, AUTHENTICATION_SESSION_PATH));
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        while (connector.getTotalPollCount() < sessionIds.size()) {
+            Thread.sleep(10);
+        }
+        long after = usedHeapAfterGc();
+        return after - before - referenceArraySize(threads.size());
+    }
+
+    private static List<String> createSessionIds(int sessionCount) {
+        List<String> sessionIds = new ArrayList<>(sessionCount);
+        for (int i = 0; i < sessionCount; i++) {
+            sessionIds.add(UUID.randomUUID().toString());
+        }
+        return sessionIds;
+    }
+
+    private static long referenceArraySize(int length) {
+        return 16L + 4L * length;
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,128 @@
+package ee.sk.mid.benchmark;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.CertificateParser;
+import ee.sk.mid.HashType;
+import ee.sk.mid.MobileIdAuthentication;
+import ee.sk.mid.SignatureVerifier;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.lang3.ArrayUtils;
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Security;
+import java.security.Signature;
+import java.util.concurrent.TimeUnit;
+
+import static ee.sk.mid.mock.TestData.ECC_CERTIFICATE;
+import static ee.sk.mid.mock.TestData.SIGNED_ECC_HASH_IN_BASE64;
+import static ee.sk.mid.mock.TestData.VALID_ECC_SIGNATURE_IN_BASE64;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignatureVerifierBenchmark {
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64};
+
+    private PublicKey publicKey;
+    private MobileIdAuthentication authentication;
+
+    @Setup
+    public void setUp() {
+        publicKey = CertificateParser.parseX509Certificate(ECC_CERTIFICATE).getPublicKey();
+        authentication = MobileIdAuthentication.newBuilder()
+                .withResult("OK")
+                .withSignatureValueInBase64(VALID_ECC_SIGNATURE_IN_BASE64)
+                .withSignedHashInBase64(SIGNED_ECC_HASH_IN_BASE64)
+                .withHashType(HashType.SHA512)
+                .build();
+    }
+
+    @Benchmark
+    public boolean lightweightSigner() {
+        return SignatureVerifier.verifyWithECDSA(publicKey, authentication);
+    }
+
+    @Benchmark
+    public boolean jdkProvider(JdkSignature jdk) throws GeneralSecurityException, IOException {
+        Signature signature = jdk.signature;
+        signature.initVerify(publicKey);
+        signature.update(Base64.decodeBase64(authentication.getSignedHashInBase64()));
+        return signature.verify(toDerEncoding(authentication.getSignatureValue()));
+    }
+
+    @Benchmark
+    public boolean providerPerCall() throws GeneralSecurityException, IOException {
+        Security.addProvider(new BouncyCastleProvider());
+        Signature signature = Signature.getInstance("NONEwithECDSA", "BC");
+        signature.initVerify(publicKey);
+        signature.update(Base64.decodeBase64(authentication.getSignedHashInBase64()));
+        return signature.verify(toDerEncoding(authentication.getSignatureValue()));
+    }
+
+    private static byte[] toDerEncoding(byte[] cvcEncoding) throws IOException {
+        ASN1EncodableVector sequence = new ASN1EncodableVector();
+        sequence.add(new ASN1Integer(new BigInteger(1, ArrayUtils.subarray(cvcEncoding, 0, cvcEncoding.length / 2))));
+        sequence.add(new ASN1Integer(new BigInteger(1, ArrayUtils.subarray(cvcEncoding, cvcEncoding.length / 2, cvcEncoding.length))));
+        return new DERSequence(sequence).getEncoded(ASN1Encoding.DER);
+    }
+
+    @State(Scope.Thread)
+    public static class JdkSignature {
+        private Signature signature;
+
+        @Setup
+        public void setUp() throws GeneralSecurityException {
+            signature = Signature.getInstance("NONEwithECDSA", "SunEC");
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : THREAD_COUNTS) {
+            new Runner(new OptionsBuilder()
+                    .include(SignatureVerifierBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run();
+        }
+    }
+}
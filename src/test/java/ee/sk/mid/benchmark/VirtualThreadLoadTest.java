@@ -0,0 +1,163 @@
+package ee.sk.mid.benchmark;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.AuthenticationResponseValidator;
+import ee.sk.mid.Language;
+import ee.sk.mid.MobileIdAuthentication;
+import ee.sk.mid.MobileIdAuthenticationHash;
+import ee.sk.mid.MobileIdAuthenticationResult;
+import ee.sk.mid.MobileIdClient;
+import ee.sk.mid.VirtualThreadExecution;
+import ee.sk.mid.mock.MobileIdConcurrentConnectorStub;
+import ee.sk.mid.rest.dao.SessionSignature;
+import ee.sk.mid.rest.dao.SessionStatus;
+import ee.sk.mid.rest.dao.request.AuthenticationRequest;
+import ee.sk.mid.rest.dao.response.AuthenticationResponse;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static ee.sk.mid.mock.MobileIdRestServiceRequestDummy.createAuthenticationSHA256Hash;
+import static ee.sk.mid.mock.TestData.AUTH_CERTIFICATE_EE;
+import static ee.sk.mid.mock.TestData.VALID_NAT_IDENTITY;
+import static ee.sk.mid.mock.TestData.VALID_PHONE;
+
+/*
+ * Run on Java 21 or newer with a small heap, e.g.
+ * java -Xmx512m -cp <test classpath> ee.sk.mid.benchmark.VirtualThreadLoadTest 50000
+ */
+public class VirtualThreadLoadTest {
+
+    private static final int DEFAULT_SESSION_COUNT = 50000;
+    private static final int RUNNING_RESPONSES_PER_SESSION = 2;
+    private static final AtomicInteger pollingSessions = new AtomicInteger();
+    private static final AtomicInteger peakPollingSessions = new AtomicInteger();
+
+    public static void main(String[] args) throws Exception {
+        if (!VirtualThreadExecution.isSupported()) {
+            System.out.println("Virtual threads are not supported by Java " + System.getProperty("java.version") + ", skipping");
+            return;
+        }
+        int sessionCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SESSION_COUNT;
+
+        MobileIdConcurrentConnectorStub connector = new MobileIdConcurrentConnectorStub(RUNNING_RESPONSES_PER_SESSION, createAuthenticationSessionStatus());
+        try (MobileIdClient client = MobileIdClient.newBuilder()
+                .withRelyingPartyUUID("00000000-0000-0000-0000-000000000000")
+                .withRelyingPartyName("DEMO")
+                .withMobileIdConnector(connector)
+                .withPollingSleepTimeoutSeconds(1)
+                .withVirtualThreadExecution(true)
+                .build()) {
+
+            AuthenticationResponseValidator validator = new AuthenticationResponseValidator();
+            List<Callable<Boolean>> flows = new ArrayList<>(sessionCount);
+            for (int i = 0; i < sessionCount; i++) {
+                flows.add(() -> authenticate(client, validator));
+            }
+
+            AtomicLong peakLiveHeap = new AtomicLong();
+            recordHeapUsedAfterGc(peakLiveHeap);
+
+            long start = System.nanoTime();
+            List<Boolean> results = client.getVirtualThreadExecution().invokeAll(flows);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            System.out.printf("Completed %d concurrent authentication flows in %d ms%n", results.size(), elapsedMillis);
+            System.out.printf("Session status polls: %d, peak concurrently polled sessions: %d%n",
+                    connector.getTotalPollCount(), peakPollingSessions.get());
+            System.out.printf("Max heap: %d MB, peak heap used after GC: %d MB (%d bytes per session)%n",
+                    Runtime.getRuntime().maxMemory() / (1024 * 1024), peakLiveHeap.get() / (1024 * 1024), peakLiveHeap.get() / sessionCount);
+            System.out.printf("Peak platform threads: %d%n", ManagementFactory.getThreadMXBean().getPeakThreadCount());
+        }
+    }
+
+    private static Boolean authenticate(MobileIdClient client, AuthenticationResponseValidator validator) {
+        MobileIdAuthenticationHash authenticationHash = createAuthenticationSHA256Hash();
+
+        AuthenticationRequest request = AuthenticationRequest.newBuilder()
+                .withRelyingPartyUUID(client.getRelyingPartyUUID())
+                .withRelyingPartyName(client.getRelyingPartyName())
+                .withPhoneNumber(VALID_PHONE)
+                .withNationalIdentityNumber(VALID_NAT_IDENTITY)
+                .withAuthenticationHash(authenticationHash)
+                .withLanguage(Language.EST)
+                .build();
+
+        AuthenticationResponse response = client.getMobileIdConnector().authenticate(request);
+        peakPollingSessions.accumulateAndGet(pollingSessions.incrementAndGet(), Math::max);
+        SessionStatus sessionStatus;
+        try {
+            sessionStatus = client.getSessionStatusPoller().fetchFinalAuthenticationSessionStatus(response.getSessionID());
+        } finally {
+            pollingSessions.decrementAndGet();
+        }
+        MobileIdAuthentication authentication = client.createMobileIdAuthentication(sessionStatus,
+                authenticationHash.getHashInBase64(), authenticationHash.getHashType());
+        MobileIdAuthenticationResult result = validator.validate(authentication);
+        return result.getAuthenticationIdentity() != null;
+    }
+
+    private static SessionStatus createAuthenticationSessionStatus() {
+        SessionSignature signature = new SessionSignature();
+        signature.setAlgorithm("SHA256WithECEncryption");
+        signature.setValue("c2FtcGxlIHNpZ25hdHVyZQ0K");
+
+        SessionStatus sessionStatus = new SessionStatus();
+        sessionStatus.setState("COMPLETE");
+        sessionStatus.setResult("OK");
+        sessionStatus.setSignature(signature);
+        sessionStatus.setCert(AUTH_CERTIFICATE_EE);
+        return sessionStatus;
+    }
+
+    private static void recordHeapUsedAfterGc(AtomicLong peakHeapUsedAfterGc) {
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) collector).addNotificationListener((notification, handback) -> {
+                if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                    return;
+                }
+                GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                long used = 0;
+                for (MemoryUsage usage : info.getGcInfo().getMemoryUsageAfterGc().values()) {
+                    used += usage.getUsed();
+                }
+                peakHeapUsedAfterGc.accumulateAndGet(used, Math::max);
+            }, null, null);
+        }
+    }
+}
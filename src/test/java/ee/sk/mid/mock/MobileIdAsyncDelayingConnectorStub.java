@@ -0,0 +1,135 @@
+package ee.sk.mid.mock;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.exception.SessionNotFoundException;
+import ee.sk.mid.rest.MobileIdAsyncConnector;
+import ee.sk.mid.rest.MobileIdConnector;
+import ee.sk.mid.rest.SessionStatusPoller;
+import ee.sk.mid.rest.dao.SessionStatus;
+import ee.sk.mid.rest.dao.request.AuthenticationRequest;
+import ee.sk.mid.rest.dao.request.CertificateRequest;
+import ee.sk.mid.rest.dao.request.SessionStatusRequest;
+import ee.sk.mid.rest.dao.request.SignatureRequest;
+import ee.sk.mid.rest.dao.response.AuthenticationResponse;
+import ee.sk.mid.rest.dao.response.CertificateChoiceResponse;
+import ee.sk.mid.rest.dao.response.SignatureResponse;
+
+import java.io.Closeable;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MobileIdAsyncDelayingConnectorStub implements MobileIdConnector, MobileIdAsyncConnector, Closeable {
+
+    private final SessionStatus sessionStatus;
+    private final long delayMillis;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicInteger sessionStatusRequests = new AtomicInteger();
+    private final AtomicInteger cancelledRequests = new AtomicInteger();
+
+    public MobileIdAsyncDelayingConnectorStub(SessionStatus sessionStatus, long delayMillis) {
+        this.sessionStatus = sessionStatus;
+        this.delayMillis = delayMillis;
+    }
+
+    public int getSessionStatusRequestCount() {
+        return sessionStatusRequests.get();
+    }
+
+    public int getCancelledRequestCount() {
+        return cancelledRequests.get();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public CertificateChoiceResponse getCertificate(CertificateRequest request) {
+        return null;
+    }
+
+    @Override
+    public SignatureResponse sign(SignatureRequest request) {
+        return new SignatureResponse(UUID.randomUUID().toString());
+    }
+
+    @Override
+    public AuthenticationResponse authenticate(AuthenticationRequest request) {
+        return new AuthenticationResponse(UUID.randomUUID().toString());
+    }
+
+    @Override
+    public SessionStatus getAuthenticationSessionStatus(SessionStatusRequest request) throws SessionNotFoundException {
+        return getSessionStatus(request, SessionStatusPoller.AUTHENTICATION_SESSION_PATH);
+    }
+
+    @Override
+    public SessionStatus getSignatureSessionStatus(SessionStatusRequest request) {
+        return getSessionStatus(request, SessionStatusPoller.SIGNATURE_SESSION_PATH);
+    }
+
+    @Override
+    public SessionStatus getSessionStatus(SessionStatusRequest request, String path) throws SessionNotFoundException {
+        return getSessionStatusAsync(request, path).join();
+    }
+
+    @Override
+    public CompletableFuture<CertificateChoiceResponse> getCertificateAsync(CertificateRequest request) {
+        return CompletableFuture.completedFuture(getCertificate(request));
+    }
+
+    @Override
+    public CompletableFuture<SignatureResponse> signAsync(SignatureRequest request) {
+        return CompletableFuture.completedFuture(sign(request));
+    }
+
+    @Override
+    public CompletableFuture<AuthenticationResponse> authenticateAsync(AuthenticationRequest request) {
+        return CompletableFuture.completedFuture(authenticate(request));
+    }
+
+    @Override
+    public CompletableFuture<SessionStatus> getSessionStatusAsync(SessionStatusRequest request, String path) {
+        sessionStatusRequests.incrementAndGet();
+        CompletableFuture<SessionStatus> future = new CompletableFuture<>();
+        ScheduledFuture<?> response = scheduler.schedule(() -> future.complete(sessionStatus), delayMillis, TimeUnit.MILLISECONDS);
+        future.whenComplete((value, throwable) -> {
+            if (future.isCancelled()) {
+                cancelledRequests.incrementAndGet();
+                response.cancel(false);
+            }
+        });
+        return future;
+    }
+}
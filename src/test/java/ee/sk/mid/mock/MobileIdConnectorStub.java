@@ -47,6 +47,7 @@ public class MobileIdConnectorStub implements MobileIdConnector {
     private SessionStatusRequest requestUsed;
     private List<SessionStatus> responses = new ArrayList<>();
     private int responseNumber = 0;
+    private long responseDelayMillis = 0;
 
     public String getSessionIdUsed() {
         return sessionIdUsed;
@@ -64,6 +65,10 @@ public class MobileIdConnectorStub implements MobileIdConnector {
         return responseNumber;
     }
 
+    public void setResponseDelayMillis(long responseDelayMillis) {
+        this.responseDelayMillis = responseDelayMillis;
+    }
+
     @Override
     public CertificateChoiceResponse getCertificate(CertificateRequest request) {
         return null;
@@ -93,6 +98,13 @@ public class MobileIdConnectorStub implements MobileIdConnector {
     public SessionStatus getSessionStatus(SessionStatusRequest request, String path) throws SessionNotFoundException {
         sessionIdUsed = request.getSessionID();
         requestUsed = request;
+        if (responseDelayMillis > 0) {
+            try {
+                Thread.sleep(responseDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
         return responses.get(responseNumber++);
     }
 }
@@ -26,6 +26,7 @@ package ee.sk.mid.mock;
  * #L%
  */
 
+import com.github.tomakehurst.wiremock.WireMockServer;
 import org.apache.commons.io.FileUtils;
 
 import java.io.File;
@@ -67,6 +68,79 @@ public class MobileIdRestServiceStub {
                         .withBody(readFileBody(responseFile))));
     }
 
+    public static void stubRequestWithDelayedResponse(String url, String responseFile, int delayMillis) throws IOException {
+        stubFor(get(urlPathEqualTo(url))
+                .withHeader("Accept", equalTo("application/json"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(delayMillis)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(readFileBody(responseFile))));
+    }
+
+    public static void stubRequestWithDelayedResponse(String url, String requestFile, String responseFile, int delayMillis) throws IOException {
+        stubFor(post(urlEqualTo(url))
+                .withHeader("Accept", equalTo("application/json"))
+                .withRequestBody(equalToJson(readFileBody(requestFile)))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(delayMillis)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(readFileBody(responseFile))));
+    }
+
+    public static void stubRequestWithResponse(WireMockServer server, String url, String responseFile) throws IOException {
+        server.stubFor(get(urlPathEqualTo(url))
+                .withHeader("Accept", equalTo("application/json"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(readFileBody(responseFile))));
+    }
+
+    public static void stubRequestWithDelayedResponse(WireMockServer server, String url, String requestFile, String responseFile, int delayMillis) throws IOException {
+        server.stubFor(post(urlEqualTo(url))
+                .withHeader("Accept", equalTo("application/json"))
+                .withRequestBody(equalToJson(readFileBody(requestFile)))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(delayMillis)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(readFileBody(responseFile))));
+    }
+
+    public static void stubInternalServerErrorResponse(WireMockServer server, String url, String requestFile) throws IOException {
+        server.stubFor(post(urlEqualTo(url))
+                .withHeader("Accept", equalTo("application/json"))
+                .withRequestBody(equalToJson(readFileBody(requestFile)))
+                .willReturn(aResponse()
+                        .withStatus(500)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("Internal error")));
+    }
+
+    public static void stubThrottledResponse(String url, String requestFile, int status, String retryAfter) throws IOException {
+        stubFor(post(urlEqualTo(url))
+                .withHeader("Accept", equalTo("application/json"))
+                .withRequestBody(equalToJson(readFileBody(requestFile)))
+                .willReturn(aResponse()
+                        .withStatus(status)
+                        .withHeader("Content-Type", "application/json")
+                        .withHeader("Retry-After", retryAfter)
+                        .withBody("Too many requests")));
+    }
+
+    public static void stubLongPollingRequestWithResponse(String url, int timeoutMs, String responseFile, int delayMillis) throws IOException {
+        stubFor(get(urlPathEqualTo(url))
+                .withQueryParam("timeoutMs", equalTo(String.valueOf(timeoutMs)))
+                .withHeader("Accept", equalTo("application/json"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(delayMillis)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(readFileBody(responseFile))));
+    }
+
     public static void stubSessionStatusWithState(String url, String responseFile, String startState, String endState) throws IOException {
         stubFor(get(urlEqualTo(url))
                 .inScenario("Session status")
@@ -0,0 +1,143 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class AdaptivePollingStrategyTest {
+
+    private static final long MIN_PIN_ENTRY_MILLIS = 5000;
+    private static final long MAX_PIN_ENTRY_MILLIS = 20000;
+
+    @Test
+    public void beforeMinSamples_shouldUseWarmUpStrategy() {
+        AdaptivePollingStrategy strategy = AdaptivePollingStrategy.newBuilder()
+                .withMinSamples(10)
+                .withWarmUpStrategy(new FixedPollingStrategy(Duration.ofMillis(300), Duration.ofMillis(700)))
+                .build();
+        for (int i = 0; i < 9; i++) {
+            strategy.onSessionCompleted(Duration.ofSeconds(10));
+        }
+
+        assertThat(strategy.getSchedule(), is(nullValue()));
+        assertThat(strategy.getInitialDelay(), is(Duration.ofMillis(300)));
+        assertThat(strategy.getNextDelay(Duration.ofSeconds(3)), is(Duration.ofMillis(700)));
+    }
+
+    @Test
+    public void initialDelay_shouldFollowEarlyCompletionTimes() {
+        AdaptivePollingStrategy strategy = createTrainedStrategy(new Random(1));
+
+        assertThat(strategy.getInitialDelay().toMillis(), greaterThanOrEqualTo(MIN_PIN_ENTRY_MILLIS));
+        assertThat(strategy.getInitialDelay().toMillis(), lessThan(MIN_PIN_ENTRY_MILLIS + 1500));
+    }
+
+    @Test
+    public void nextDelay_shouldStayWithinIntervalBounds() {
+        AdaptivePollingStrategy strategy = createTrainedStrategy(new Random(2));
+
+        for (long elapsed = 0; elapsed < 2 * MAX_PIN_ENTRY_MILLIS; elapsed += 37) {
+            long delay = strategy.getNextDelay(Duration.ofMillis(elapsed)).toMillis();
+            assertThat(delay, greaterThanOrEqualTo(200L));
+            assertThat(delay, lessThanOrEqualTo(1000L));
+        }
+    }
+
+    @Test
+    public void completionTimesOutsideSampleWindow_shouldBeForgotten() {
+        AdaptivePollingStrategy strategy = AdaptivePollingStrategy.newBuilder()
+                .withSampleWindow(50)
+                .withMinSamples(10)
+                .build();
+        for (int i = 0; i < 50; i++) {
+            strategy.onSessionCompleted(Duration.ofSeconds(10));
+        }
+        assertThat(strategy.getInitialDelay().toMillis(), greaterThanOrEqualTo(10000L));
+
+        for (int i = 0; i < 50; i++) {
+            strategy.onSessionCompleted(Duration.ofSeconds(2));
+        }
+        assertThat(strategy.getInitialDelay().toMillis(), lessThanOrEqualTo(2100L));
+    }
+
+    @Test
+    public void adaptiveSchedule_shouldPollLessWithoutIncreasingTimeToResult() {
+        Random random = new Random(3);
+        AdaptivePollingStrategy adaptive = createTrainedStrategy(random);
+        FixedPollingStrategy fixed = new FixedPollingStrategy(Duration.ofSeconds(1));
+
+        long adaptivePolls = 0;
+        long fixedPolls = 0;
+        long adaptiveLatency = 0;
+        long fixedLatency = 0;
+        int sessions = 1000;
+        for (int i = 0; i < sessions; i++) {
+            long completionTime = randomPinEntryMillis(random);
+            long[] adaptiveResult = simulate(adaptive, completionTime);
+            long[] fixedResult = simulate(fixed, completionTime);
+            adaptivePolls += adaptiveResult[0];
+            adaptiveLatency += adaptiveResult[1];
+            fixedPolls += fixedResult[0];
+            fixedLatency += fixedResult[1];
+        }
+
+        assertThat(adaptivePolls * 10, lessThanOrEqualTo(fixedPolls * 8));
+        assertThat(adaptiveLatency / sessions, lessThanOrEqualTo(fixedLatency / sessions + 50));
+    }
+
+    private static AdaptivePollingStrategy createTrainedStrategy(Random random) {
+        AdaptivePollingStrategy strategy = AdaptivePollingStrategy.newBuilder().build();
+        for (int i = 0; i < 500; i++) {
+            strategy.onSessionCompleted(Duration.ofMillis(randomPinEntryMillis(random)));
+        }
+        return strategy;
+    }
+
+    private static long randomPinEntryMillis(Random random) {
+        return MIN_PIN_ENTRY_MILLIS + (long) (random.nextDouble() * (MAX_PIN_ENTRY_MILLIS - MIN_PIN_ENTRY_MILLIS));
+    }
+
+    private static long[] simulate(PollingStrategy strategy, long completionTime) {
+        long polls = 1;
+        long pollTime = strategy.getInitialDelay().toMillis();
+        while (pollTime < completionTime) {
+            pollTime += strategy.getNextDelay(Duration.ofMillis(pollTime)).toMillis();
+            polls++;
+        }
+        return new long[]{polls, pollTime - completionTime};
+    }
+}
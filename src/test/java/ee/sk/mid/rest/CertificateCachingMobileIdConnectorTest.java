@@ -0,0 +1,239 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.exception.ResponseRetrievingException;
+import ee.sk.mid.mock.MobileIdAsyncConnectorWrapper;
+import ee.sk.mid.mock.MobileIdCertificateConnectorStub;
+import ee.sk.mid.rest.dao.request.CertificateRequest;
+import ee.sk.mid.rest.dao.response.CertificateChoiceResponse;
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static ee.sk.mid.mock.CertificateDummy.createCertificateValidFor;
+import static ee.sk.mid.mock.MobileIdCertificateConnectorStub.createCertificateChoiceResponse;
+import static ee.sk.mid.mock.MobileIdRestServiceRequestDummy.createCertificateRequest;
+import static ee.sk.mid.mock.MobileIdRestServiceRequestDummy.createValidCertificateRequest;
+import static ee.sk.mid.mock.TestData.AUTH_CERTIFICATE_EE;
+import static ee.sk.mid.mock.TestData.VALID_RELYING_PARTY_NAME;
+import static ee.sk.mid.mock.TestData.VALID_RELYING_PARTY_UUID;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class CertificateCachingMobileIdConnectorTest {
+
+    private CertificateCachingMobileIdConnector connector;
+
+    @After
+    public void tearDown() {
+        if (connector != null) {
+            connector.close();
+        }
+    }
+
+    @Test
+    public void getCertificate_forSameUser_shouldUseCachedResponse() throws Exception {
+        CertificateChoiceResponse response = createCertificateChoiceResponse("OK", createCertificateValidFor(Duration.ofDays(365)));
+        MobileIdCertificateConnectorStub stub = new MobileIdCertificateConnectorStub(response, 0);
+        connector = createConnector(stub, Duration.ofMinutes(10), Duration.ofSeconds(30));
+
+        assertThat(connector.getCertificate(createValidCertificateRequest()), is(sameInstance(response)));
+        assertThat(connector.getCertificate(createValidCertificateRequest()), is(sameInstance(response)));
+        connector.getCertificate(createCertificateRequest(VALID_RELYING_PARTY_UUID, VALID_RELYING_PARTY_NAME, "+37200000766", "60001019928"));
+
+        assertThat(stub.getCertificateRequestCount(), is(2));
+        CertificateCacheStats stats = connector.getStats();
+        assertThat(stats.getHits(), is(1L));
+        assertThat(stats.getMisses(), is(2L));
+        assertThat(stats.getLoads(), is(2L));
+        assertThat(stats.getSize(), is(2));
+    }
+
+    @Test
+    public void getCertificateAsync_withAsyncConnector_shouldLoadOnceAndUseCachedResponse() throws Exception {
+        CertificateChoiceResponse response = createCertificateChoiceResponse("OK", createCertificateValidFor(Duration.ofDays(365)));
+        MobileIdCertificateConnectorStub stub = new MobileIdCertificateConnectorStub(response, 50);
+        try (MobileIdAsyncConnectorWrapper asyncStub = new MobileIdAsyncConnectorWrapper(stub)) {
+            connector = CertificateCachingMobileIdConnector.newBuilder()
+                    .withConnector(asyncStub)
+                    .build();
+
+            CompletableFuture<CertificateChoiceResponse> first = connector.getCertificateAsync(createValidCertificateRequest());
+            CompletableFuture<CertificateChoiceResponse> second = connector.getCertificateAsync(createValidCertificateRequest());
+
+            assertThat(first.get(5, TimeUnit.SECONDS), is(sameInstance(response)));
+            assertThat(second.get(5, TimeUnit.SECONDS), is(sameInstance(response)));
+            assertThat(connector.getCertificate(createValidCertificateRequest()), is(sameInstance(response)));
+            assertThat(asyncStub.getAsyncRequestCount(), is(1));
+            assertThat(stub.getCertificateRequestCount(), is(1));
+            assertThat(connector.getStats().getHits(), is(2L));
+        }
+    }
+
+    @Test
+    public void getCertificate_afterTtl_shouldLoadAgain() throws Exception {
+        MobileIdCertificateConnectorStub stub = new MobileIdCertificateConnectorStub(
+                createCertificateChoiceResponse("OK", createCertificateValidFor(Duration.ofDays(365))), 0);
+        connector = createConnector(stub, Duration.ofMillis(50), Duration.ofSeconds(30));
+
+        connector.getCertificate(createValidCertificateRequest());
+        Thread.sleep(60);
+        connector.getCertificate(createValidCertificateRequest());
+
+        assertThat(stub.getCertificateRequestCount(), is(2));
+    }
+
+    @Test
+    public void getCertificate_whenCertificateExpiresBeforeTtl_shouldNotOutliveCertificate() throws Exception {
+        MobileIdCertificateConnectorStub stub = new MobileIdCertificateConnectorStub(
+                createCertificateChoiceResponse("OK", createCertificateValidFor(Duration.ofSeconds(2))), 0);
+        connector = createConnector(stub, Duration.ofMinutes(10), Duration.ofSeconds(30));
+
+        connector.getCertificate(createValidCertificateRequest());
+        Thread.sleep(2100);
+        connector.getCertificate(createValidCertificateRequest());
+
+        assertThat(stub.getCertificateRequestCount(), is(2));
+    }
+
+    @Test
+    public void getCertificate_whenCertificateHasExpired_shouldNotCache() {
+        MobileIdCertificateConnectorStub stub = new MobileIdCertificateConnectorStub(createCertificateChoiceResponse("OK", AUTH_CERTIFICATE_EE), 0);
+        connector = createConnector(stub, Duration.ofMinutes(10), Duration.ofSeconds(30));
+
+        connector.getCertificate(createValidCertificateRequest());
+        connector.getCertificate(createValidCertificateRequest());
+
+        assertThat(stub.getCertificateRequestCount(), is(2));
+        assertThat(connector.getStats().getSize(), is(0));
+    }
+
+    @Test
+    public void getCertificate_whenNotFound_shouldCacheForNegativeTtl() throws Exception {
+        MobileIdCertificateConnectorStub stub = new MobileIdCertificateConnectorStub(createCertificateChoiceResponse("NOT_FOUND", null), 0);
+        connector = createConnector(stub, Duration.ofMinutes(10), Duration.ofMillis(100));
+
+        connector.getCertificate(createValidCertificateRequest());
+        CertificateChoiceResponse cached = connector.getCertificate(createValidCertificateRequest());
+        assertThat(cached.getResult(), is("NOT_FOUND"));
+        assertThat(stub.getCertificateRequestCount(), is(1));
+
+        Thread.sleep(110);
+        connector.getCertificate(createValidCertificateRequest());
+        assertThat(stub.getCertificateRequestCount(), is(2));
+    }
+
+    @Test
+    public void getCertificate_whenNotActive_shouldCacheForNegativeTtl() {
+        MobileIdCertificateConnectorStub stub = new MobileIdCertificateConnectorStub(createCertificateChoiceResponse("NOT_ACTIVE", null), 0);
+        connector = createConnector(stub, Duration.ofMinutes(10), Duration.ofSeconds(30));
+
+        connector.getCertificate(createValidCertificateRequest());
+        connector.getCertificate(createValidCertificateRequest());
+
+        assertThat(stub.getCertificateRequestCount(), is(1));
+    }
+
+    @Test
+    public void getCertificate_concurrentlyForSameUser_shouldSendOneRequest() throws Exception {
+        MobileIdCertificateConnectorStub stub = new MobileIdCertificateConnectorStub(
+                createCertificateChoiceResponse("OK", createCertificateValidFor(Duration.ofDays(365))), 200);
+        connector = createConnector(stub, Duration.ofMinutes(10), Duration.ofSeconds(30));
+
+        List<CompletableFuture<CertificateChoiceResponse>> lookups = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            lookups.add(CompletableFuture.supplyAsync(() -> connector.getCertificate(createValidCertificateRequest()),
+                    command -> new Thread(command).start()));
+        }
+        for (CompletableFuture<CertificateChoiceResponse> lookup : lookups) {
+            assertThat(lookup.get().getResult(), is("OK"));
+        }
+
+        assertThat(stub.getCertificateRequestCount(), is(1));
+        assertThat(connector.getStats().getAverageLoadTimeMillis(), greaterThan(150.0));
+    }
+
+    @Test
+    public void getCertificate_whenLoadFails_shouldNotCacheFailure() {
+        MobileIdCertificateConnectorStub stub = new MobileIdCertificateConnectorStub(createCertificateChoiceResponse("NOT_FOUND", null), 0);
+        stub.setFailure(new ResponseRetrievingException());
+        connector = createConnector(stub, Duration.ofMinutes(10), Duration.ofSeconds(30));
+
+        try {
+            connector.getCertificate(createValidCertificateRequest());
+            fail("Certificate request should fail");
+        } catch (ResponseRetrievingException expected) {
+        }
+        stub.setFailure(null);
+        connector.getCertificate(createValidCertificateRequest());
+
+        assertThat(stub.getCertificateRequestCount(), is(2));
+        assertThat(connector.getStats().getLoadFailures(), is(1L));
+    }
+
+    @Test
+    public void getCertificate_whenEntryIsNearExpiry_shouldRefreshAhead() throws Exception {
+        MobileIdCertificateConnectorStub stub = new MobileIdCertificateConnectorStub(
+                createCertificateChoiceResponse("OK", createCertificateValidFor(Duration.ofDays(365))), 0);
+        connector = CertificateCachingMobileIdConnector.newBuilder()
+                .withConnector(stub)
+                .withTtl(Duration.ofSeconds(2))
+                .withRefreshAheadRatio(0.5)
+                .build();
+        CertificateRequest request = createValidCertificateRequest();
+        connector.getCertificate(request);
+        CertificateChoiceResponse refreshed = createCertificateChoiceResponse("OK", createCertificateValidFor(Duration.ofDays(365)));
+        stub.setResponse(refreshed);
+
+        Thread.sleep(1100);
+        connector.getCertificate(request);
+        for (int i = 0; i < 100 && connector.getStats().getRefreshes() == 0; i++) {
+            Thread.sleep(5);
+        }
+
+        assertThat(connector.getStats().getRefreshes(), is(1L));
+        assertThat(connector.getCertificate(request), is(sameInstance(refreshed)));
+        assertThat(stub.getCertificateRequestCount(), is(2));
+    }
+
+    private static CertificateCachingMobileIdConnector createConnector(MobileIdCertificateConnectorStub stub, Duration ttl, Duration negativeTtl) {
+        return CertificateCachingMobileIdConnector.newBuilder()
+                .withConnector(stub)
+                .withTtl(ttl)
+                .withNegativeTtl(negativeTtl)
+                .build();
+    }
+}
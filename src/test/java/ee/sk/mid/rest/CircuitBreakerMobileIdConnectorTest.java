@@ -0,0 +1,252 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import ee.sk.mid.exception.CircuitBreakerOpenException;
+import ee.sk.mid.exception.DeadlineExceededException;
+import ee.sk.mid.exception.SessionNotFoundException;
+import ee.sk.mid.mock.MobileIdAsyncConnectorWrapper;
+import ee.sk.mid.mock.MobileIdFailingConnectorStub;
+import ee.sk.mid.rest.dao.request.SessionStatusRequest;
+import org.junit.Rule;
+import org.junit.Test;
+
+import javax.ws.rs.InternalServerErrorException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static ee.sk.mid.mock.MobileIdRestServiceRequestDummy.createValidAuthenticationRequest;
+import static ee.sk.mid.mock.MobileIdRestServiceStub.stubInternalServerErrorResponse;
+import static ee.sk.mid.mock.MobileIdRestServiceStub.stubNotFoundResponse;
+import static ee.sk.mid.mock.MobileIdRestServiceStub.stubRequestWithDelayedResponse;
+import static ee.sk.mid.mock.MobileIdRestServiceStub.stubRequestWithResponse;
+import static ee.sk.mid.mock.SessionStatusDummy.createSuccessfulSessionStatus;
+import static ee.sk.mid.mock.TestData.LOCALHOST_URL;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class CircuitBreakerMobileIdConnectorTest {
+
+    private static final String AUTHENTICATION_PATH = "/mid-api/authentication";
+    private static final String SESSION_ID = "1dcc1600-29a6-4e95-a95c-d69b31febcfb";
+    private static final String SESSION_STATUS_PATH = "/mid-api/authentication/session/" + SESSION_ID;
+    private static final String UNUSED_ENDPOINT_URL = "http://localhost:18099";
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule(18089);
+
+    @Test
+    public void authenticate_whenServerErrorRateExceedsThreshold_shouldFailFast() throws Exception {
+        stubInternalServerErrorResponse(AUTHENTICATION_PATH, "requests/authenticationRequest.json");
+        CircuitBreakerMobileIdConnector connector = createConnector(LOCALHOST_URL, Duration.ofSeconds(10));
+
+        authenticateExpectingFailures(connector, 4);
+
+        assertThat(connector.getInitiationCircuitBreaker().getState(), is(CircuitBreaker.State.OPEN));
+        long startTime = System.currentTimeMillis();
+        try {
+            connector.authenticate(createValidAuthenticationRequest());
+            fail("Circuit breaker should be open");
+        } catch (CircuitBreakerOpenException expected) {
+        }
+        assertThat(System.currentTimeMillis() - startTime, lessThan(100L));
+        assertThat(WireMock.findAll(postRequestedFor(urlEqualTo(AUTHENTICATION_PATH))).size(), is(4));
+        assertThat(connector.getInitiationCircuitBreaker().getRejectedRequests(), is(1L));
+    }
+
+    @Test
+    public void authenticate_whenConnectionIsRefused_shouldOpen() {
+        CircuitBreakerMobileIdConnector connector = createConnector(UNUSED_ENDPOINT_URL, Duration.ofSeconds(10));
+
+        authenticateExpectingFailures(connector, 4);
+
+        assertThat(connector.getInitiationCircuitBreaker().getState(), is(CircuitBreaker.State.OPEN));
+        assertThat(connector.getInitiationCircuitBreaker().getFailureRate(), is(1.0));
+    }
+
+    @Test
+    public void getSessionStatus_whenRequestsTimeOut_shouldOpen() throws Exception {
+        stubRequestWithDelayedResponse(SESSION_STATUS_PATH, "responses/sessionStatusRunning.json", 500);
+        CircuitBreakerMobileIdConnector connector = createConnector(LOCALHOST_URL, Duration.ofSeconds(10));
+
+        for (int i = 0; i < 4; i++) {
+            try {
+                connector.getSessionStatus(new SessionStatusRequest(SESSION_ID), SessionStatusPoller.AUTHENTICATION_SESSION_PATH, Deadline.after(Duration.ofMillis(50)));
+                fail("Request should time out");
+            } catch (DeadlineExceededException expected) {
+            }
+        }
+
+        assertThat(connector.getPollingCircuitBreaker().getState(), is(CircuitBreaker.State.OPEN));
+    }
+
+    @Test
+    public void getSessionStatus_whenInitiationCircuitBreakerIsOpen_shouldStillPollSessions() throws Exception {
+        stubInternalServerErrorResponse(AUTHENTICATION_PATH, "requests/authenticationRequest.json");
+        stubRequestWithResponse(SESSION_STATUS_PATH, "responses/sessionStatusForSuccessfulAuthenticationRequest.json");
+        CircuitBreakerMobileIdConnector connector = createConnector(LOCALHOST_URL, Duration.ofSeconds(10));
+
+        authenticateExpectingFailures(connector, 4);
+
+        assertThat(connector.getInitiationCircuitBreaker().getState(), is(CircuitBreaker.State.OPEN));
+        assertThat(connector.getAuthenticationSessionStatus(new SessionStatusRequest(SESSION_ID)).getState(), is("COMPLETE"));
+        assertThat(connector.getPollingCircuitBreaker().getState(), is(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void getSessionStatus_whenSessionIsNotFound_shouldNotCountAsFailure() {
+        stubNotFoundResponse(SESSION_STATUS_PATH);
+        CircuitBreakerMobileIdConnector connector = createConnector(LOCALHOST_URL, Duration.ofSeconds(10));
+
+        for (int i = 0; i < 6; i++) {
+            try {
+                connector.getAuthenticationSessionStatus(new SessionStatusRequest(SESSION_ID));
+                fail("Session should not be found");
+            } catch (SessionNotFoundException expected) {
+            }
+        }
+
+        assertThat(connector.getPollingCircuitBreaker().getState(), is(CircuitBreaker.State.CLOSED));
+        assertThat(connector.getPollingCircuitBreaker().getFailureRate(), is(0.0));
+    }
+
+    @Test
+    public void authenticate_afterOpenDuration_shouldCloseWhenTrialRequestsSucceed() throws Exception {
+        stubInternalServerErrorResponse(AUTHENTICATION_PATH, "requests/authenticationRequest.json");
+        CircuitBreakerMobileIdConnector connector = createConnector(LOCALHOST_URL, Duration.ofMillis(100));
+        authenticateExpectingFailures(connector, 4);
+
+        wireMockRule.resetAll();
+        stubRequestWithResponse(AUTHENTICATION_PATH, "requests/authenticationRequest.json", "responses/authenticationResponse.json");
+        Thread.sleep(150);
+
+        connector.authenticate(createValidAuthenticationRequest());
+        assertThat(connector.getInitiationCircuitBreaker().getState(), is(CircuitBreaker.State.HALF_OPEN));
+        connector.authenticate(createValidAuthenticationRequest());
+        assertThat(connector.getInitiationCircuitBreaker().getState(), is(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void authenticate_whenTrialRequestFails_shouldOpenAgain() throws Exception {
+        stubInternalServerErrorResponse(AUTHENTICATION_PATH, "requests/authenticationRequest.json");
+        CircuitBreakerMobileIdConnector connector = createConnector(LOCALHOST_URL, Duration.ofMillis(100));
+        authenticateExpectingFailures(connector, 4);
+        Thread.sleep(150);
+
+        authenticateExpectingFailures(connector, 1);
+
+        assertThat(connector.getInitiationCircuitBreaker().getState(), is(CircuitBreaker.State.OPEN));
+        try {
+            connector.authenticate(createValidAuthenticationRequest());
+            fail("Circuit breaker should be open");
+        } catch (CircuitBreakerOpenException expected) {
+        }
+    }
+
+    @Test
+    public void getSessionStatusAsync_whenServerErrorRateExceedsThreshold_shouldFailFast() throws Exception {
+        MobileIdFailingConnectorStub stub = new MobileIdFailingConnectorStub(createSuccessfulSessionStatus(), 100, InternalServerErrorException::new);
+        try (MobileIdAsyncConnectorWrapper asyncStub = new MobileIdAsyncConnectorWrapper(stub)) {
+            CircuitBreakerMobileIdConnector connector = new CircuitBreakerMobileIdConnector(asyncStub, createConfig(Duration.ofSeconds(10)), createConfig(Duration.ofSeconds(10)));
+
+            for (int i = 0; i < 4; i++) {
+                assertThat(getSessionStatusAsyncFailure(connector), instanceOf(InternalServerErrorException.class));
+            }
+
+            assertThat(connector.getPollingCircuitBreaker().getState(), is(CircuitBreaker.State.OPEN));
+            assertThat(getSessionStatusAsyncFailure(connector), instanceOf(CircuitBreakerOpenException.class));
+            assertThat(asyncStub.getAsyncRequestCount(), is(4));
+        }
+    }
+
+    @Test
+    public void getSessionStatusAsync_whenTrialRequestIsCancelled_shouldStayHalfOpenAndReturnPermit() throws Exception {
+        MobileIdFailingConnectorStub stub = new MobileIdFailingConnectorStub(createSuccessfulSessionStatus(), 4, InternalServerErrorException::new);
+        try (MobileIdAsyncConnectorWrapper asyncStub = new MobileIdAsyncConnectorWrapper(stub)) {
+            CircuitBreakerMobileIdConnector connector = new CircuitBreakerMobileIdConnector(asyncStub, createConfig(Duration.ofMillis(100)), createConfig(Duration.ofMillis(100)));
+            for (int i = 0; i < 4; i++) {
+                getSessionStatusAsyncFailure(connector);
+            }
+            Thread.sleep(150);
+
+            CircuitBreaker circuitBreaker = connector.getPollingCircuitBreaker();
+            circuitBreaker.executeAsync(CompletableFuture::new).cancel(true);
+            assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.HALF_OPEN));
+
+            connector.getSessionStatusAsync(new SessionStatusRequest(SESSION_ID), SessionStatusPoller.AUTHENTICATION_SESSION_PATH).get(5, TimeUnit.SECONDS);
+            assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.HALF_OPEN));
+            connector.getSessionStatusAsync(new SessionStatusRequest(SESSION_ID), SessionStatusPoller.AUTHENTICATION_SESSION_PATH).get(5, TimeUnit.SECONDS);
+            assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.CLOSED));
+        }
+    }
+
+    private static Throwable getSessionStatusAsyncFailure(CircuitBreakerMobileIdConnector connector) throws Exception {
+        try {
+            connector.getSessionStatusAsync(new SessionStatusRequest(SESSION_ID), SessionStatusPoller.AUTHENTICATION_SESSION_PATH).get(5, TimeUnit.SECONDS);
+            fail("Session status request should fail");
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+    }
+
+    private static CircuitBreakerMobileIdConnector createConnector(String url, Duration openDuration) {
+        CircuitBreakerConfig config = createConfig(openDuration);
+        return new CircuitBreakerMobileIdConnector(new MobileIdRestConnector(url), config, config);
+    }
+
+    private static CircuitBreakerConfig createConfig(Duration openDuration) {
+        return CircuitBreakerConfig.newBuilder()
+                .withSlidingWindowSize(10)
+                .withMinimumRequests(4)
+                .withFailureRateThreshold(0.5)
+                .withOpenDuration(openDuration)
+                .withHalfOpenRequests(2)
+                .build();
+    }
+
+    private static void authenticateExpectingFailures(CircuitBreakerMobileIdConnector connector, int count) {
+        for (int i = 0; i < count; i++) {
+            try {
+                connector.authenticate(createValidAuthenticationRequest());
+                fail("Authentication should fail");
+            } catch (CircuitBreakerOpenException e) {
+                throw e;
+            } catch (RuntimeException expected) {
+            }
+        }
+    }
+}
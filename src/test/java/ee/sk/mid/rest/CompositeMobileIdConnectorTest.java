@@ -0,0 +1,209 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import ee.sk.mid.exception.ResponseRetrievingException;
+import ee.sk.mid.rest.dao.request.SessionStatusRequest;
+import ee.sk.mid.rest.dao.response.AuthenticationResponse;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static ee.sk.mid.mock.MobileIdRestServiceRequestDummy.createValidAuthenticationRequest;
+import static ee.sk.mid.mock.MobileIdRestServiceStub.stubInternalServerErrorResponse;
+import static ee.sk.mid.mock.MobileIdRestServiceStub.stubRequestWithDelayedResponse;
+import static ee.sk.mid.mock.MobileIdRestServiceStub.stubRequestWithResponse;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class CompositeMobileIdConnectorTest {
+
+    private static final String AUTHENTICATION_PATH = "/mid-api/authentication";
+    private static final String SESSION_ID = "1dcc1600-29a6-4e95-a95c-d69b31febcfb";
+    private static final String SESSION_STATUS_PATH = "/mid-api/authentication/session/" + SESSION_ID;
+    private static final String UNUSED_ENDPOINT_URL = "http://localhost:18099";
+
+    @Rule
+    public WireMockRule firstEndpoint = new WireMockRule(18091);
+
+    @Rule
+    public WireMockRule secondEndpoint = new WireMockRule(18092);
+
+    private CompositeMobileIdConnector connector;
+
+    @After
+    public void tearDown() {
+        if (connector != null) {
+            connector.close();
+        }
+    }
+
+    @Test
+    public void authenticate_shouldPreferEndpointWithLowerLatency() throws Exception {
+        stubAuthentication(firstEndpoint, 0);
+        stubAuthentication(secondEndpoint, 150);
+        connector = CompositeMobileIdConnector.newBuilder()
+                .withEndpoint(url(firstEndpoint))
+                .withEndpoint(url(secondEndpoint))
+                .build();
+
+        for (int i = 0; i < 30; i++) {
+            connector.authenticate(createValidAuthenticationRequest());
+        }
+
+        assertThat(countAuthentications(firstEndpoint), greaterThanOrEqualTo(25));
+        assertThat(connector.getEndpointStats().get(1).getLatencyMillis() >= 150, is(true));
+    }
+
+    @Test
+    public void getSessionStatus_shouldStickToEndpointThatCreatedSession() throws Exception {
+        for (WireMockServer endpoint : new WireMockServer[]{firstEndpoint, secondEndpoint}) {
+            stubAuthentication(endpoint, 0);
+            stubRequestWithResponse(endpoint, SESSION_STATUS_PATH, "responses/sessionStatusRunning.json");
+        }
+        connector = CompositeMobileIdConnector.newBuilder()
+                .withEndpoint(url(firstEndpoint))
+                .withEndpoint(url(secondEndpoint))
+                .build();
+
+        AuthenticationResponse response = connector.authenticate(createValidAuthenticationRequest());
+        for (int i = 0; i < 5; i++) {
+            connector.getAuthenticationSessionStatus(new SessionStatusRequest(response.getSessionID()));
+        }
+
+        WireMockServer sessionEndpoint = countAuthentications(firstEndpoint) == 1 ? firstEndpoint : secondEndpoint;
+        WireMockServer otherEndpoint = sessionEndpoint == firstEndpoint ? secondEndpoint : firstEndpoint;
+        assertThat(countSessionStatusRequests(sessionEndpoint), is(5));
+        assertThat(countSessionStatusRequests(otherEndpoint), is(0));
+        assertThat(connector.getStickySessionCount(), is(1));
+    }
+
+    @Test
+    public void getSessionStatus_whenSessionCompletes_shouldReleaseStickySession() throws Exception {
+        stubAuthentication(firstEndpoint, 0);
+        stubRequestWithResponse(firstEndpoint, SESSION_STATUS_PATH, "responses/sessionStatusForSuccessfulAuthenticationRequest.json");
+        connector = CompositeMobileIdConnector.newBuilder()
+                .withEndpoint(url(firstEndpoint))
+                .build();
+
+        connector.authenticate(createValidAuthenticationRequest());
+        assertThat(connector.getStickySessionCount(), is(1));
+        connector.getAuthenticationSessionStatus(new SessionStatusRequest(SESSION_ID));
+
+        assertThat(connector.getStickySessionCount(), is(0));
+    }
+
+    @Test
+    public void authenticate_whenEndpointRefusesConnections_shouldFailOverAndEjectIt() throws Exception {
+        stubAuthentication(firstEndpoint, 0);
+        connector = CompositeMobileIdConnector.newBuilder()
+                .withEndpoint(UNUSED_ENDPOINT_URL)
+                .withEndpoint(url(firstEndpoint))
+                .withConsecutiveFailuresToEject(1)
+                .build();
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(connector.authenticate(createValidAuthenticationRequest()).getSessionID(), is(SESSION_ID));
+        }
+
+        assertThat(countAuthentications(firstEndpoint), is(10));
+        EndpointStats unusedEndpointStats = connector.getEndpointStats().get(0);
+        assertThat(unusedEndpointStats.isEjected(), is(true));
+        assertThat(unusedEndpointStats.getEjections(), is(1L));
+    }
+
+    @Test
+    public void authenticate_whenEndpointFailsAfterReceivingRequest_shouldNotFailOver() throws Exception {
+        stubInternalServerErrorResponse(firstEndpoint, AUTHENTICATION_PATH, "requests/authenticationRequest.json");
+        stubInternalServerErrorResponse(secondEndpoint, AUTHENTICATION_PATH, "requests/authenticationRequest.json");
+        connector = CompositeMobileIdConnector.newBuilder()
+                .withEndpoint(url(firstEndpoint))
+                .withEndpoint(url(secondEndpoint))
+                .build();
+
+        try {
+            connector.authenticate(createValidAuthenticationRequest());
+            fail("Expected authentication to fail");
+        } catch (ResponseRetrievingException e) {
+            assertThat(countAuthentications(firstEndpoint) + countAuthentications(secondEndpoint), is(1));
+        }
+    }
+
+    @Test
+    public void ejectedEndpoint_shouldBeReadmittedAfterSuccessfulRequest() throws Exception {
+        WireMockServer recoveringEndpoint = new WireMockServer(wireMockConfig().port(18093));
+        connector = CompositeMobileIdConnector.newBuilder()
+                .withEndpoint("http://localhost:18093")
+                .withConsecutiveFailuresToEject(1)
+                .withBaseEjectionTime(Duration.ofMillis(100))
+                .build();
+        try {
+            try {
+                connector.authenticate(createValidAuthenticationRequest());
+                fail("Expected connection to be refused");
+            } catch (RuntimeException e) {
+                assertThat(connector.getEndpointStats().get(0).isEjected(), is(true));
+            }
+
+            recoveringEndpoint.start();
+            stubAuthentication(recoveringEndpoint, 0);
+            Thread.sleep(150);
+            connector.authenticate(createValidAuthenticationRequest());
+
+            assertThat(connector.getEndpointStats().get(0).isEjected(), is(false));
+        } finally {
+            recoveringEndpoint.stop();
+        }
+    }
+
+    private static void stubAuthentication(WireMockServer endpoint, int delayMillis) throws Exception {
+        stubRequestWithDelayedResponse(endpoint, AUTHENTICATION_PATH, "requests/authenticationRequest.json", "responses/authenticationResponse.json", delayMillis);
+    }
+
+    private static int countAuthentications(WireMockServer endpoint) {
+        return endpoint.countRequestsMatching(postRequestedFor(urlEqualTo(AUTHENTICATION_PATH)).build()).getCount();
+    }
+
+    private static int countSessionStatusRequests(WireMockServer endpoint) {
+        return endpoint.countRequestsMatching(getRequestedFor(urlPathEqualTo(SESSION_STATUS_PATH)).build()).getCount();
+    }
+
+    private static String url(WireMockServer endpoint) {
+        return "http://localhost:" + endpoint.port();
+    }
+}
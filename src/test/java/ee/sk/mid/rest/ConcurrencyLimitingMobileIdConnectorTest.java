@@ -0,0 +1,139 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.exception.ConcurrencyLimitExceededException;
+import ee.sk.mid.mock.MobileIdDelayingConnectorStub;
+import ee.sk.mid.mock.MobileIdFailingConnectorStub;
+import ee.sk.mid.rest.dao.SessionStatus;
+import ee.sk.mid.rest.dao.request.SessionStatusRequest;
+import org.junit.Test;
+
+import javax.ws.rs.InternalServerErrorException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static ee.sk.mid.mock.SessionStatusDummy.createSuccessfulSessionStatus;
+import static ee.sk.mid.mock.TestData.AUTHENTICATION_SESSION_PATH;
+import static ee.sk.mid.mock.TestData.SESSION_ID;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ConcurrencyLimitingMobileIdConnectorTest {
+
+    @Test
+    public void getSessionStatus_whenLimitIsReached_shouldShedExcessRequest() throws Exception {
+        MobileIdDelayingConnectorStub stub = new MobileIdDelayingConnectorStub(createSuccessfulSessionStatus(), 300);
+        ConcurrencyLimitingMobileIdConnector connector = createConnector(stub, Duration.ZERO, 10);
+
+        CompletableFuture<SessionStatus> first = CompletableFuture.supplyAsync(() -> getSessionStatus(connector));
+        awaitInFlightRequests(connector, 1);
+        try {
+            getSessionStatus(connector);
+            fail("Request should be rejected");
+        } catch (ConcurrencyLimitExceededException expected) {
+        }
+
+        assertThat(first.get().getResult(), is("OK"));
+        assertThat(stub.getSessionStatusRequestCount(), is(1));
+        assertThat(connector.getStats().getRejectedRequests(), is(1L));
+    }
+
+    @Test
+    public void getSessionStatus_whenLimitIsReached_shouldQueueUntilSlotIsReleased() throws Exception {
+        MobileIdDelayingConnectorStub stub = new MobileIdDelayingConnectorStub(createSuccessfulSessionStatus(), 100);
+        ConcurrencyLimitingMobileIdConnector connector = createConnector(stub, Duration.ofSeconds(2), 10);
+
+        CompletableFuture<SessionStatus> first = CompletableFuture.supplyAsync(() -> getSessionStatus(connector));
+        awaitInFlightRequests(connector, 1);
+
+        assertThat(getSessionStatus(connector).getResult(), is("OK"));
+        assertThat(first.get().getResult(), is("OK"));
+        assertThat(stub.getSessionStatusRequestCount(), is(2));
+        assertThat(connector.getStats().getRejectedRequests(), is(0L));
+    }
+
+    @Test
+    public void getSessionStatus_whenQueueIsFull_shouldShedRequest() throws Exception {
+        MobileIdDelayingConnectorStub stub = new MobileIdDelayingConnectorStub(createSuccessfulSessionStatus(), 300);
+        ConcurrencyLimitingMobileIdConnector connector = createConnector(stub, Duration.ofSeconds(2), 0);
+
+        CompletableFuture<SessionStatus> first = CompletableFuture.supplyAsync(() -> getSessionStatus(connector));
+        awaitInFlightRequests(connector, 1);
+        long startTime = System.currentTimeMillis();
+        try {
+            getSessionStatus(connector);
+            fail("Request should be rejected");
+        } catch (ConcurrencyLimitExceededException expected) {
+        }
+
+        assertThat(System.currentTimeMillis() - startTime, lessThan(100L));
+        first.get();
+    }
+
+    @Test
+    public void getSessionStatus_whenRequestsFail_shouldLowerLimit() {
+        MobileIdFailingConnectorStub stub = new MobileIdFailingConnectorStub(createSuccessfulSessionStatus(), 10, InternalServerErrorException::new);
+        ConcurrencyLimitingMobileIdConnector connector = ConcurrencyLimitingMobileIdConnector.newBuilder()
+                .withConnector(stub)
+                .withInitialLimit(20)
+                .build();
+
+        for (int i = 0; i < 10; i++) {
+            try {
+                getSessionStatus(connector);
+                fail("Request should fail");
+            } catch (InternalServerErrorException expected) {
+            }
+        }
+
+        assertThat(connector.getLimit(), lessThan(20));
+        assertThat(connector.getStats().getInFlightRequests(), is(0));
+    }
+
+    private static ConcurrencyLimitingMobileIdConnector createConnector(MobileIdDelayingConnectorStub stub, Duration maxQueueTime, int maxQueueSize) {
+        return ConcurrencyLimitingMobileIdConnector.newBuilder()
+                .withConnector(stub)
+                .withInitialLimit(1)
+                .withMaxLimit(1)
+                .withMaxQueueTime(maxQueueTime)
+                .withMaxQueueSize(maxQueueSize)
+                .build();
+    }
+
+    private static void awaitInFlightRequests(ConcurrencyLimitingMobileIdConnector connector, int count) throws InterruptedException {
+        for (int i = 0; i < 100 && connector.getStats().getInFlightRequests() < count; i++) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static SessionStatus getSessionStatus(ConcurrencyLimitingMobileIdConnector connector) {
+        return connector.getSessionStatus(new SessionStatusRequest(SESSION_ID), AUTHENTICATION_SESSION_PATH);
+    }
+}
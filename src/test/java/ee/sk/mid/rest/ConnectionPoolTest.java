@@ -0,0 +1,231 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import ee.sk.mid.ClientRequestHeaderFilter;
+import ee.sk.mid.MobileIdClient;
+import ee.sk.mid.rest.dao.SessionStatus;
+import ee.sk.mid.rest.dao.request.SessionStatusRequest;
+import ee.sk.mid.rest.dao.response.AuthenticationResponse;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import javax.ws.rs.ProcessingException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+import static ee.sk.mid.mock.MobileIdRestServiceRequestDummy.createValidAuthenticationRequest;
+import static ee.sk.mid.mock.MobileIdRestServiceStub.stubRequestWithDelayedResponse;
+import static ee.sk.mid.mock.MobileIdRestServiceStub.stubRequestWithResponse;
+import static ee.sk.mid.mock.TestData.*;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ConnectionPoolTest {
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule(18089);
+
+    private ConnectionPool connectionPool;
+    private MobileIdRestConnector connector;
+
+    @Before
+    public void setUp() throws IOException {
+        stubRequestWithResponse("/mid-api/authentication/session/" + SESSION_ID, "responses/sessionStatusRunning.json");
+        ConnectionPoolConfig config = ConnectionPoolConfig.newBuilder()
+                .withMaxTotalConnections(10)
+                .withMaxConnectionsPerRoute(5)
+                .withConnectionTimeToLiveSeconds(30)
+                .withIdleConnectionEvictionSeconds(1)
+                .withValidateAfterInactivityMillis(500)
+                .build();
+        connectionPool = new ConnectionPool(config);
+        connector = new MobileIdRestConnector(LOCALHOST_URL, connectionPool.configure(createUncompressedClientConfig()));
+    }
+
+    @After
+    public void tearDown() {
+        connector.close();
+        connectionPool.close();
+    }
+
+    @Test
+    public void getStats_beforeAnyRequest() {
+        ConnectionPoolStats stats = connectionPool.getStats();
+
+        assertThat(stats.getLeased(), is(0));
+        assertThat(stats.getPending(), is(0));
+        assertThat(stats.getAvailable(), is(0));
+        assertThat(stats.getMax(), is(10));
+    }
+
+    @Test
+    public void getStats_afterRequests_shouldKeepConnectionAlive() {
+        for (int i = 0; i < 3; i++) {
+            SessionStatus sessionStatus = connector.getAuthenticationSessionStatus(new SessionStatusRequest(SESSION_ID));
+            assertThat(sessionStatus.getState(), is("RUNNING"));
+        }
+
+        ConnectionPoolStats stats = connectionPool.getStats();
+        assertThat(stats.getLeased(), is(0));
+        assertThat(stats.getAvailable(), is(1));
+    }
+
+    @Test
+    public void evictIdleConnections() throws InterruptedException {
+        connector.getAuthenticationSessionStatus(new SessionStatusRequest(SESSION_ID));
+        Thread.sleep(1100);
+
+        connectionPool.evictIdleConnections();
+
+        assertThat(connectionPool.getStats().getAvailable(), is(0));
+    }
+
+    @Test
+    public void closeConnector_shouldNotShutDownSharedPool() {
+        connector.close();
+        MobileIdRestConnector otherConnector = new MobileIdRestConnector(LOCALHOST_URL, connectionPool.configure(createUncompressedClientConfig()));
+
+        SessionStatus sessionStatus = otherConnector.getAuthenticationSessionStatus(new SessionStatusRequest(SESSION_ID));
+
+        assertThat(sessionStatus.getState(), is("RUNNING"));
+        otherConnector.close();
+    }
+
+    @Test
+    public void getConnectionPoolStats_fromMobileIdClient() {
+        MobileIdClient client = MobileIdClient.newBuilder()
+                .withRelyingPartyUUID(VALID_RELYING_PARTY_UUID)
+                .withRelyingPartyName(VALID_RELYING_PARTY_NAME)
+                .withHostUrl(LOCALHOST_URL)
+                .withNetworkConnectionConfig(createUncompressedClientConfig())
+                .withConnectionPoolConfig(ConnectionPoolConfig.newBuilder().withMaxTotalConnections(4).build())
+                .build();
+
+        client.getMobileIdConnector().getAuthenticationSessionStatus(new SessionStatusRequest(SESSION_ID));
+        ConnectionPoolStats stats = client.getConnectionPoolStats();
+        client.close();
+
+        assertThat(stats, is(notNullValue()));
+        assertThat(stats.getMax(), is(4));
+        assertThat(stats.getAvailable(), is(1));
+    }
+
+    @Test
+    public void separatePools_whenSessionStatusPoolIsSaturated_shouldNotBlockInitiation() throws Exception {
+        stubRequestWithDelayedResponse("/mid-api/signature/session/" + SESSION_ID, "responses/sessionStatusRunning.json", 1000);
+        stubRequestWithResponse("/mid-api/authentication", "requests/authenticationRequest.json", "responses/authenticationResponse.json");
+        MobileIdClient client = createClientBuilder()
+                .withConnectionPoolConfig(ConnectionPoolConfig.newBuilder().withMaxTotalConnections(1).withMaxConnectionsPerRoute(1).build())
+                .withSessionStatusConnectionPoolConfig(ConnectionPoolConfig.newBuilder().withMaxTotalConnections(1).withMaxConnectionsPerRoute(1).build())
+                .build();
+        MobileIdConnector mobileIdConnector = client.getMobileIdConnector();
+
+        CompletableFuture<SessionStatus> sessionStatus = CompletableFuture.supplyAsync(
+                () -> mobileIdConnector.getSignatureSessionStatus(new SessionStatusRequest(SESSION_ID)));
+        for (int i = 0; i < 100 && client.getSessionStatusConnectionPoolStats().getLeased() == 0; i++) {
+            Thread.sleep(10);
+        }
+        long startTime = System.currentTimeMillis();
+        mobileIdConnector.authenticate(createValidAuthenticationRequest());
+        long authenticationTime = System.currentTimeMillis() - startTime;
+        ConnectionPoolStats sessionStatusStats = client.getSessionStatusConnectionPoolStats();
+        ConnectionPoolStats initiationStats = client.getConnectionPoolStats();
+        sessionStatus.get();
+        client.close();
+
+        assertThat(authenticationTime, lessThan(500L));
+        assertThat(sessionStatusStats.getSaturation(), is(1.0));
+        assertThat(initiationStats.getLeased(), is(0));
+        assertThat(initiationStats.getAvailable(), is(1));
+    }
+
+    @Test
+    public void separateNetworkConnectionConfig_shouldApplyTimeoutsToSessionStatusRequestsOnly() throws Exception {
+        stubRequestWithDelayedResponse("/mid-api/signature/session/" + SESSION_ID, "responses/sessionStatusRunning.json", 500);
+        stubRequestWithDelayedResponse("/mid-api/authentication", "requests/authenticationRequest.json", "responses/authenticationResponse.json", 500);
+        ClientConfig sessionStatusClientConfig = createUncompressedClientConfig();
+        sessionStatusClientConfig.property(ClientProperties.READ_TIMEOUT, 100);
+        MobileIdClient client = createClientBuilder()
+                .withSessionStatusNetworkConnectionConfig(sessionStatusClientConfig)
+                .build();
+
+        try {
+            client.getMobileIdConnector().getSignatureSessionStatus(new SessionStatusRequest(SESSION_ID));
+            fail("Session status request should time out");
+        } catch (ProcessingException expected) {
+        }
+        AuthenticationResponse response = client.getMobileIdConnector().authenticate(createValidAuthenticationRequest());
+        client.close();
+
+        assertThat(response.getSessionID(), is(notNullValue()));
+    }
+
+    @Test
+    public void getSessionStatusConnectionPoolStats_whenSeparatePoolNotConfigured() {
+        MobileIdClient client = createClientBuilder()
+                .withConnectionPoolConfig(ConnectionPoolConfig.newBuilder().build())
+                .build();
+
+        assertThat(client.getSessionStatusConnectionPoolStats(), is(nullValue()));
+        client.close();
+    }
+
+    @Test
+    public void getConnectionPoolStats_whenPoolNotConfigured() {
+        MobileIdClient client = MobileIdClient.newBuilder()
+                .withHostUrl(LOCALHOST_URL)
+                .build();
+
+        assertThat(client.getConnectionPoolStats(), is(nullValue()));
+    }
+
+    private static MobileIdClient.MobileIdClientBuilder createClientBuilder() {
+        return MobileIdClient.newBuilder()
+                .withRelyingPartyUUID(VALID_RELYING_PARTY_UUID)
+                .withRelyingPartyName(VALID_RELYING_PARTY_NAME)
+                .withHostUrl(LOCALHOST_URL)
+                .withNetworkConnectionConfig(createUncompressedClientConfig());
+    }
+
+    private static ClientConfig createUncompressedClientConfig() {
+        // WireMock terminates gzipped chunked responses incorrectly, which prevents connection reuse
+        ClientConfig clientConfig = new ClientConfig();
+        clientConfig.register(new ClientRequestHeaderFilter(Collections.singletonMap("Accept-Encoding", "identity")));
+        return clientConfig;
+    }
+}
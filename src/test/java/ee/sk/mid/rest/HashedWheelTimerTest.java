@@ -0,0 +1,105 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class HashedWheelTimerTest {
+
+    private final HashedWheelTimer timer = new HashedWheelTimer(new DaemonThreadFactory("test-timer"), 10, 8);
+
+    @After
+    public void tearDown() {
+        timer.close();
+    }
+
+    @Test
+    public void newTimeout_shouldRunTaskAfterDelay() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(latch::countDown, 100);
+
+        assertThat(latch.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), greaterThanOrEqualTo(100L));
+        assertThat(timeout.isExpired(), is(true));
+        assertThat(timer.getPendingTimeoutCount(), is(0));
+    }
+
+    @Test
+    public void newTimeout_longerThanWheelRound_shouldWaitRemainingRounds() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        timer.newTimeout(latch::countDown, 250);
+
+        assertThat(latch.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), greaterThanOrEqualTo(250L));
+    }
+
+    @Test
+    public void cancel_shouldPreventTaskFromRunning() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(runs::incrementAndGet, 50);
+
+        assertThat(timeout.cancel(), is(true));
+        assertThat(timeout.cancel(), is(false));
+        Thread.sleep(150);
+        assertThat(runs.get(), is(0));
+        assertThat(timeout.isCancelled(), is(true));
+        assertThat(timer.getPendingTimeoutCount(), is(0));
+    }
+
+    @Test
+    public void manyTimeouts_shouldAllExpire() throws Exception {
+        CountDownLatch latch = new CountDownLatch(100000);
+
+        for (int i = 0; i < 100000; i++) {
+            timer.newTimeout(latch::countDown, i % 200);
+        }
+
+        assertThat(latch.await(10, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void newTimeout_afterClose_shouldBeRejected() {
+        timer.close();
+
+        timer.newTimeout(() -> { }, 10);
+    }
+}
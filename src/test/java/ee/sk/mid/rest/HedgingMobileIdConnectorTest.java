@@ -0,0 +1,252 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.mock.MobileIdAsyncDelayingConnectorStub;
+import ee.sk.mid.mock.MobileIdConnectorSpy;
+import ee.sk.mid.mock.MobileIdDelayingConnectorStub;
+import ee.sk.mid.rest.dao.SessionStatus;
+import ee.sk.mid.rest.dao.request.SessionStatusRequest;
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static ee.sk.mid.mock.SessionStatusDummy.createSuccessfulSessionStatus;
+import static ee.sk.mid.mock.TestData.AUTHENTICATION_SESSION_PATH;
+import static ee.sk.mid.mock.TestData.SESSION_ID;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+public class HedgingMobileIdConnectorTest {
+
+    private final List<MobileIdAsyncDelayingConnectorStub> stubs = new ArrayList<>();
+    private HedgingMobileIdConnector connector;
+
+    @After
+    public void tearDown() {
+        if (connector != null) {
+            connector.close();
+        }
+        stubs.forEach(MobileIdAsyncDelayingConnectorStub::close);
+    }
+
+    @Test
+    public void getSessionStatus_whenResponseIsFast_shouldNotHedge() {
+        MobileIdDelayingConnectorStub stub = new MobileIdDelayingConnectorStub(createSuccessfulSessionStatus(), 0);
+        connector = HedgingMobileIdConnector.newBuilder()
+                .withConnector(stub)
+                .build();
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(getSessionStatus().getResult(), is("OK"));
+        }
+
+        assertThat(stub.getSessionStatusRequestCount(), is(5));
+        assertThat(connector.getStats().getRequests(), is(5L));
+        assertThat(connector.getStats().getHedgedRequests(), is(0L));
+    }
+
+    @Test
+    public void getSessionStatus_whenResponseIsSlow_shouldUseHedgedResponse() {
+        MobileIdAsyncDelayingConnectorStub slowStub = asyncStub(3000);
+        MobileIdDelayingConnectorStub fastStub = new MobileIdDelayingConnectorStub(createSuccessfulSessionStatus(), 0);
+        connector = HedgingMobileIdConnector.newBuilder()
+                .withConnector(slowStub)
+                .withHedgeConnector(fastStub)
+                .withInitialHedgeDelay(Duration.ofMillis(50))
+                .build();
+
+        long startTime = System.currentTimeMillis();
+        assertThat(getSessionStatus().getResult(), is("OK"));
+
+        assertThat(System.currentTimeMillis() - startTime, lessThan(1000L));
+        assertThat(fastStub.getSessionStatusRequestCount(), is(1));
+        HedgingStats stats = connector.getStats();
+        assertThat(stats.getHedgedRequests(), is(1L));
+        assertThat(stats.getHedgeWins(), is(1L));
+        assertThat(stats.getHedgeRate(), is(1.0));
+        assertThat(stats.getWinRate(), is(1.0));
+    }
+
+    @Test
+    public void getSessionStatusAsync_whenResponseIsSlow_shouldHedgeWithoutBlockingCaller() throws Exception {
+        MobileIdAsyncDelayingConnectorStub slowStub = asyncStub(3000);
+        connector = HedgingMobileIdConnector.newBuilder()
+                .withConnector(slowStub)
+                .withHedgeConnector(asyncStub(0))
+                .withInitialHedgeDelay(Duration.ofMillis(200))
+                .build();
+
+        CompletableFuture<SessionStatus> sessionStatus = connector.getSessionStatusAsync(new SessionStatusRequest(SESSION_ID), AUTHENTICATION_SESSION_PATH);
+
+        assertThat(sessionStatus.isDone(), is(false));
+        assertThat(sessionStatus.get(1, TimeUnit.SECONDS).getResult(), is("OK"));
+        assertThat(connector.getStats().getHedgeWins(), is(1L));
+        assertThat(slowStub.getCancelledRequestCount(), is(1));
+    }
+
+    @Test
+    public void getSessionStatus_whenHedgeWins_shouldCancelSlowRequest() {
+        MobileIdAsyncDelayingConnectorStub slowStub = asyncStub(3000);
+        connector = HedgingMobileIdConnector.newBuilder()
+                .withConnector(slowStub)
+                .withHedgeConnector(asyncStub(0))
+                .withInitialHedgeDelay(Duration.ofMillis(50))
+                .build();
+
+        getSessionStatus();
+
+        assertThat(slowStub.getCancelledRequestCount(), is(1));
+    }
+
+    @Test
+    public void getSessionStatus_whenHedgeWins_shouldNotRecordHedgeLatency() {
+        connector = HedgingMobileIdConnector.newBuilder()
+                .withConnector(asyncStub(3000))
+                .withHedgeConnector(asyncStub(200))
+                .withInitialHedgeDelay(Duration.ofMillis(100))
+                .withMinHedgeDelay(Duration.ofMillis(1))
+                .withMinSamples(1)
+                .build();
+
+        getSessionStatus();
+
+        assertThat(connector.getStats().getHedgeWins(), is(1L));
+        assertThat(connector.getStats().getHedgeDelayMillis(), is(100L));
+    }
+
+    @Test
+    public void getSessionStatus_withBlockingConnectors_shouldUseFirstResponseAndInterruptSlowRequest() throws Exception {
+        MobileIdDelayingConnectorStub slowStub = new MobileIdDelayingConnectorStub(createSuccessfulSessionStatus(), 3000);
+        MobileIdDelayingConnectorStub fastStub = new MobileIdDelayingConnectorStub(createSuccessfulSessionStatus(), 0);
+        connector = HedgingMobileIdConnector.newBuilder()
+                .withConnector(slowStub)
+                .withHedgeConnector(fastStub)
+                .withInitialHedgeDelay(Duration.ofMillis(50))
+                .build();
+
+        long startTime = System.currentTimeMillis();
+        assertThat(getSessionStatus().getResult(), is("OK"));
+
+        assertThat(System.currentTimeMillis() - startTime, lessThan(1000L));
+        assertThat(connector.getStats().getHedgeWins(), is(1L));
+        for (int i = 0; i < 100 && slowStub.getInterruptedRequestCount() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(slowStub.getInterruptedRequestCount(), is(1));
+    }
+
+    @Test
+    public void getSessionStatus_withBlockingConnector_shouldNotRunRequestOnCallingThread() {
+        List<Thread> requestThreads = new ArrayList<>();
+        MobileIdConnectorSpy spy = new MobileIdConnectorSpy() {
+            @Override
+            public SessionStatus getSessionStatus(SessionStatusRequest request, String path) {
+                requestThreads.add(Thread.currentThread());
+                return super.getSessionStatus(request, path);
+            }
+        };
+        spy.setSessionStatusToRespond(createSuccessfulSessionStatus());
+        connector = HedgingMobileIdConnector.newBuilder()
+                .withConnector(spy)
+                .build();
+
+        assertThat(getSessionStatus().getResult(), is("OK"));
+        assertThat(requestThreads, not(contains(Thread.currentThread())));
+    }
+
+    @Test
+    public void getSessionStatus_whenHedgingBudgetIsExhausted_shouldWaitForOriginalRequest() {
+        MobileIdDelayingConnectorStub fastStub = new MobileIdDelayingConnectorStub(createSuccessfulSessionStatus(), 0);
+        connector = HedgingMobileIdConnector.newBuilder()
+                .withConnector(new MobileIdDelayingConnectorStub(createSuccessfulSessionStatus(), 60))
+                .withHedgeConnector(fastStub)
+                .withInitialHedgeDelay(Duration.ofMillis(10))
+                .withMaxHedgeRatio(0)
+                .build();
+
+        for (int i = 0; i < 15; i++) {
+            getSessionStatus();
+        }
+
+        assertThat(fastStub.getSessionStatusRequestCount(), is(10));
+        assertThat(connector.getStats().getHedgedRequests(), is(10L));
+        assertThat(connector.getStats().getRequests(), is(15L));
+    }
+
+    @Test
+    public void getSessionStatus_afterObservingLatencies_shouldHedgeAtLatencyPercentile() {
+        connector = HedgingMobileIdConnector.newBuilder()
+                .withConnector(new MobileIdDelayingConnectorStub(createSuccessfulSessionStatus(), 0))
+                .withMinHedgeDelay(Duration.ofMillis(25))
+                .withInitialHedgeDelay(Duration.ofMillis(500))
+                .withMinSamples(10)
+                .build();
+        assertThat(connector.getStats().getHedgeDelayMillis(), is(500L));
+
+        for (int i = 0; i < 10; i++) {
+            getSessionStatus();
+        }
+
+        assertThat(connector.getStats().getHedgeDelayMillis(), is(25L));
+    }
+
+    @Test
+    public void getSessionStatus_withLongPolling_shouldNotHedge() {
+        MobileIdDelayingConnectorStub slowStub = new MobileIdDelayingConnectorStub(createSuccessfulSessionStatus(), 100);
+        MobileIdDelayingConnectorStub hedgeStub = new MobileIdDelayingConnectorStub(createSuccessfulSessionStatus(), 0);
+        connector = HedgingMobileIdConnector.newBuilder()
+                .withConnector(slowStub)
+                .withHedgeConnector(hedgeStub)
+                .withInitialHedgeDelay(Duration.ofMillis(10))
+                .build();
+
+        connector.getSessionStatus(new SessionStatusRequest(SESSION_ID, 30000), AUTHENTICATION_SESSION_PATH);
+
+        assertThat(hedgeStub.getSessionStatusRequestCount(), is(0));
+        assertThat(connector.getStats().getRequests(), is(0L));
+    }
+
+    private MobileIdAsyncDelayingConnectorStub asyncStub(long delayMillis) {
+        MobileIdAsyncDelayingConnectorStub stub = new MobileIdAsyncDelayingConnectorStub(createSuccessfulSessionStatus(), delayMillis);
+        stubs.add(stub);
+        return stub;
+    }
+
+    private SessionStatus getSessionStatus() {
+        return connector.getSessionStatus(new SessionStatusRequest(SESSION_ID), AUTHENTICATION_SESSION_PATH);
+    }
+}
@@ -0,0 +1,170 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import ee.sk.mid.exception.*;
+import ee.sk.mid.rest.dao.SessionStatus;
+import ee.sk.mid.rest.dao.request.SessionStatusRequest;
+import ee.sk.mid.rest.dao.response.AuthenticationResponse;
+import ee.sk.mid.rest.dao.response.CertificateChoiceResponse;
+import ee.sk.mid.rest.dao.response.SignatureResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static ee.sk.mid.mock.MobileIdRestServiceRequestDummy.*;
+import static ee.sk.mid.mock.MobileIdRestServiceStub.*;
+import static ee.sk.mid.mock.SessionStatusDummy.assertSuccessfulSessionStatus;
+import static ee.sk.mid.mock.TestData.LOCALHOST_URL;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class MobileIdRestConnectorAsyncTest {
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule(18089);
+
+    private ExecutorService completionExecutor;
+    private MobileIdRestConnector connector;
+
+    @Before
+    public void setUp() {
+        completionExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "completion-thread"));
+        connector = new MobileIdRestConnector(LOCALHOST_URL, null, completionExecutor);
+    }
+
+    @After
+    public void tearDown() {
+        connector.close();
+        completionExecutor.shutdownNow();
+    }
+
+    @Test
+    public void getCertificateAsync() throws Exception {
+        stubRequestWithResponse("/mid-api/certificate", "requests/certificateChoiceRequest.json", "responses/certificateChoiceResponse.json");
+        CertificateChoiceResponse response = get(connector.getCertificateAsync(createValidCertificateRequest()));
+
+        assertThat(response.getResult(), is("OK"));
+        assertThat(response.getCert(), not(isEmptyOrNullString()));
+    }
+
+    @Test
+    public void signAsync() throws Exception {
+        stubRequestWithResponse("/mid-api/signature", "requests/signatureRequest.json", "responses/signatureResponse.json");
+        SignatureResponse response = get(connector.signAsync(createValidSignatureRequest()));
+
+        assertThat(response.getSessionID(), is("2c52caf4-13b0-41c4-bdc6-aa268403cc00"));
+    }
+
+    @Test
+    public void authenticateAsync() throws Exception {
+        stubRequestWithResponse("/mid-api/authentication", "requests/authenticationRequest.json", "responses/authenticationResponse.json");
+        AuthenticationResponse response = get(connector.authenticateAsync(createValidAuthenticationRequest()));
+
+        assertThat(response.getSessionID(), is("1dcc1600-29a6-4e95-a95c-d69b31febcfb"));
+    }
+
+    @Test
+    public void authenticateAsync_shouldCompleteOnCompletionExecutor() throws Exception {
+        stubRequestWithResponse("/mid-api/authentication", "requests/authenticationRequest.json", "responses/authenticationResponse.json");
+        final AtomicReference<String> completingThread = new AtomicReference<>();
+
+        get(connector.authenticateAsync(createValidAuthenticationRequest())
+                .thenApply(response -> {
+                    completingThread.set(Thread.currentThread().getName());
+                    return response;
+                }));
+
+        assertThat(completingThread.get(), is("completion-thread"));
+    }
+
+    @Test(expected = ResponseRetrievingException.class)
+    public void authenticateAsync_whenGettingResponseFailed_shouldCompleteExceptionally() throws Throwable {
+        stubInternalServerErrorResponse("/mid-api/authentication", "requests/authenticationRequest.json");
+        getCause(connector.authenticateAsync(createValidAuthenticationRequest()));
+    }
+
+    @Test(expected = ResponseNotFoundException.class)
+    public void authenticateAsync_whenResponseNotFound_shouldCompleteExceptionally() throws Throwable {
+        stubNotFoundResponse("/mid-api/authentication", "requests/authenticationRequest.json");
+        getCause(connector.authenticateAsync(createValidAuthenticationRequest()));
+    }
+
+    @Test(expected = ParameterMissingException.class)
+    public void signAsync_withWrongRequestParams_shouldCompleteExceptionally() throws Throwable {
+        stubBadRequestResponse("/mid-api/signature", "requests/signatureRequest.json");
+        getCause(connector.signAsync(createValidSignatureRequest()));
+    }
+
+    @Test(expected = UnauthorizedException.class)
+    public void getCertificateAsync_withWrongAuthenticationParams_shouldCompleteExceptionally() throws Throwable {
+        stubUnauthorizedResponse("/mid-api/certificate", "requests/certificateChoiceRequest.json");
+        getCause(connector.getCertificateAsync(createValidCertificateRequest()));
+    }
+
+    @Test(expected = DeadlineExceededException.class)
+    public void authenticateAsync_whenResponseIsSlowerThanDeadline_shouldCompleteExceptionally() throws Throwable {
+        stubRequestWithDelayedResponse("/mid-api/authentication", "requests/authenticationRequest.json", "responses/authenticationResponse.json", 3000);
+        getCause(connector.authenticateAsync(createValidAuthenticationRequest(), Deadline.after(Duration.ofMillis(300))));
+    }
+
+    @Test
+    public void getAuthenticationSessionStatusAsync() throws Exception {
+        stubRequestWithResponse("/mid-api/authentication/session/de305d54-75b4-431b-adb2-eb6b9e546016", "responses/sessionStatusForSuccessfulAuthenticationRequest.json");
+        SessionStatus sessionStatus = get(connector.getAuthenticationSessionStatusAsync(new SessionStatusRequest("de305d54-75b4-431b-adb2-eb6b9e546016")));
+
+        assertSuccessfulSessionStatus(sessionStatus);
+    }
+
+    @Test(expected = SessionNotFoundException.class)
+    public void getSessionStatusAsync_whenSessionNotFound_shouldCompleteExceptionally() throws Throwable {
+        stubNotFoundResponse("/mid-api/authentication/session/de305d54-75b4-431b-adb2-eb6b9e546016");
+        getCause(connector.getAuthenticationSessionStatusAsync(new SessionStatusRequest("de305d54-75b4-431b-adb2-eb6b9e546016")));
+    }
+
+    private static <T> T get(CompletableFuture<T> future) throws Exception {
+        return future.get(10, TimeUnit.SECONDS);
+    }
+
+    private static void getCause(CompletableFuture<?> future) throws Throwable {
+        try {
+            get(future);
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -30,6 +30,7 @@ import com.github.tomakehurst.wiremock.junit.WireMockRule;
 import ee.sk.mid.ClientRequestHeaderFilter;
 import ee.sk.mid.HashType;
 import ee.sk.mid.Language;
+import ee.sk.mid.exception.DeadlineExceededException;
 import ee.sk.mid.exception.ParameterMissingException;
 import ee.sk.mid.exception.ResponseNotFoundException;
 import ee.sk.mid.exception.ResponseRetrievingException;
@@ -43,6 +44,7 @@ import org.junit.Rule;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -76,6 +78,20 @@ public class MobileIdRestConnectorAuthenticationTest {
         assertThat(response.getSessionID(), is("1dcc1600-29a6-4e95-a95c-d69b31febcfb"));
     }
 
+    @Test(expected = DeadlineExceededException.class)
+    public void authenticate_whenResponseIsSlowerThanDeadline_shouldThrowException() throws IOException {
+        stubRequestWithDelayedResponse("/mid-api/authentication", "requests/authenticationRequest.json", "responses/authenticationResponse.json", 3000);
+        connector.authenticate(createValidAuthenticationRequest(), Deadline.after(Duration.ofMillis(300)));
+    }
+
+    @Test
+    public void authenticate_withinDeadline() throws IOException {
+        stubRequestWithResponse("/mid-api/authentication", "requests/authenticationRequest.json", "responses/authenticationResponse.json");
+        AuthenticationResponse response = connector.authenticate(createValidAuthenticationRequest(), Deadline.after(Duration.ofSeconds(5)));
+
+        assertThat(response.getSessionID(), is("1dcc1600-29a6-4e95-a95c-d69b31febcfb"));
+    }
+
     @Test
     public void authenticate_withDisplayText() throws IOException {
         stubRequestWithResponse("/mid-api/authentication", "requests/authenticationRequestWithDisplayText.json", "responses/authenticationResponse.json");
@@ -27,16 +27,26 @@ package ee.sk.mid.rest;
  */
 
 import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import ee.sk.mid.exception.DeadlineExceededException;
 import ee.sk.mid.exception.SessionNotFoundException;
 import ee.sk.mid.rest.dao.SessionStatus;
 import ee.sk.mid.rest.dao.request.SessionStatusRequest;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import javax.ws.rs.ProcessingException;
 import java.io.IOException;
+import java.time.Duration;
 
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static ee.sk.mid.mock.MobileIdRestServiceStub.stubLongPollingRequestWithResponse;
 import static ee.sk.mid.mock.MobileIdRestServiceStub.stubNotFoundResponse;
+import static ee.sk.mid.mock.MobileIdRestServiceStub.stubRequestWithDelayedResponse;
 import static ee.sk.mid.mock.MobileIdRestServiceStub.stubRequestWithResponse;
 import static ee.sk.mid.mock.SessionStatusDummy.assertErrorSessionStatus;
 import static ee.sk.mid.mock.SessionStatusDummy.assertSuccessfulSessionStatus;
@@ -46,6 +56,7 @@ import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.core.StringStartsWith.startsWith;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 public class MobileIdRestConnectorSessionTest {
 
@@ -66,6 +77,33 @@ public class MobileIdRestConnectorSessionTest {
         connector.getAuthenticationSessionStatus(request);
     }
 
+    @Test
+    public void getSessionStatus_whenResponseIsSlowerThanDeadline_shouldThrowException() throws IOException {
+        stubRequestWithDelayedResponse("/mid-api/authentication/session/de305d54-75b4-431b-adb2-eb6b9e546016", "responses/sessionStatusRunning.json", 3000);
+        SessionStatusRequest request = new SessionStatusRequest("de305d54-75b4-431b-adb2-eb6b9e546016");
+
+        long startTime = System.currentTimeMillis();
+        try {
+            connector.getSessionStatus(request, SessionStatusPoller.AUTHENTICATION_SESSION_PATH, Deadline.after(Duration.ofMillis(300)));
+            fail("Expected deadline to be exceeded");
+        } catch (DeadlineExceededException e) {
+            assertThat(System.currentTimeMillis() - startTime < 2000L, is(true));
+        }
+    }
+
+    @Test
+    public void getSessionStatus_whenDeadlineHasPassed_shouldNotSendRequest() throws IOException {
+        stubRequestWithResponse("/mid-api/authentication/session/de305d54-75b4-431b-adb2-eb6b9e546016", "responses/sessionStatusRunning.json");
+        SessionStatusRequest request = new SessionStatusRequest("de305d54-75b4-431b-adb2-eb6b9e546016");
+
+        try {
+            connector.getSessionStatus(request, SessionStatusPoller.AUTHENTICATION_SESSION_PATH, Deadline.after(Duration.ZERO));
+            fail("Expected deadline to be exceeded");
+        } catch (DeadlineExceededException e) {
+            verify(0, getRequestedFor(urlPathEqualTo("/mid-api/authentication/session/de305d54-75b4-431b-adb2-eb6b9e546016")));
+        }
+    }
+
     @Test
     public void getRunningSessionStatus() throws IOException {
         SessionStatus sessionStatus = getStubbedSessionStatusWithResponse("responses/sessionStatusRunning.json");
@@ -146,6 +184,56 @@ public class MobileIdRestConnectorSessionTest {
         assertErrorSessionStatus(sessionStatus, "SIGNATURE_HASH_MISMATCH");
     }
 
+    @Test
+    public void getSessionStatus_forDifferentSessionsWithSameConnector() throws IOException {
+        stubRequestWithResponse("/mid-api/authentication/session/de305d54-75b4-431b-adb2-eb6b9e546016", "responses/sessionStatusRunning.json");
+        stubRequestWithResponse("/mid-api/authentication/session/97f5058e-e308-4c83-ac14-7712b0eb9d86", "responses/sessionStatusWhenTimeout.json");
+
+        SessionStatus runningStatus = connector.getAuthenticationSessionStatus(new SessionStatusRequest("de305d54-75b4-431b-adb2-eb6b9e546016"));
+        SessionStatus timeoutStatus = connector.getAuthenticationSessionStatus(new SessionStatusRequest("97f5058e-e308-4c83-ac14-7712b0eb9d86"));
+
+        assertThat(runningStatus.getState(), is("RUNNING"));
+        assertErrorSessionStatus(timeoutStatus, "TIMEOUT");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void getSessionStatus_whenConnectorClosed_shouldThrowException() throws IOException {
+        ((MobileIdRestConnector) connector).close();
+        getStubbedSessionStatusWithResponse("responses/sessionStatusRunning.json");
+    }
+
+    @Test
+    public void getSessionStatus_withLongPolling_shouldWaitForDelayedResponse() throws IOException {
+        stubLongPollingRequestWithResponse("/mid-api/authentication/session/de305d54-75b4-431b-adb2-eb6b9e546016", 1000, "responses/sessionStatusForSuccessfulAuthenticationRequest.json", 800);
+        SessionStatusRequest request = new SessionStatusRequest("de305d54-75b4-431b-adb2-eb6b9e546016", 1000);
+
+        long startTime = System.currentTimeMillis();
+        SessionStatus sessionStatus = connector.getAuthenticationSessionStatus(request);
+        long duration = System.currentTimeMillis() - startTime;
+
+        assertSuccessfulSessionStatus(sessionStatus);
+        assertThat("Duration is " + duration, duration >= 800L, is(true));
+    }
+
+    @Test
+    public void getSessionStatus_withLongPollingAndDeadline_shouldNotBeLimitedByConfiguredReadTimeout() throws IOException {
+        ClientConfig clientConfig = new ClientConfig().property(ClientProperties.READ_TIMEOUT, 200);
+        MobileIdConnector shortTimeoutConnector = new MobileIdRestConnector(LOCALHOST_URL, clientConfig);
+        stubLongPollingRequestWithResponse("/mid-api/authentication/session/de305d54-75b4-431b-adb2-eb6b9e546016", 1000, "responses/sessionStatusForSuccessfulAuthenticationRequest.json", 800);
+        SessionStatusRequest request = new SessionStatusRequest("de305d54-75b4-431b-adb2-eb6b9e546016", 1000);
+
+        SessionStatus sessionStatus = shortTimeoutConnector.getSessionStatus(request, SessionStatusPoller.AUTHENTICATION_SESSION_PATH, Deadline.after(Duration.ofSeconds(5)));
+
+        assertSuccessfulSessionStatus(sessionStatus);
+    }
+
+    @Test(expected = ProcessingException.class)
+    public void getSessionStatus_whenLongPollingResponseExceedsReadTimeout_shouldThrowException() throws IOException {
+        stubLongPollingRequestWithResponse("/mid-api/authentication/session/de305d54-75b4-431b-adb2-eb6b9e546016", 100, "responses/sessionStatusRunning.json", 3000);
+        SessionStatusRequest request = new SessionStatusRequest("de305d54-75b4-431b-adb2-eb6b9e546016", 100);
+        connector.getAuthenticationSessionStatus(request);
+    }
+
     private SessionStatus getStubbedSessionStatusWithResponse(String responseFile) throws IOException {
         stubRequestWithResponse("/mid-api/authentication/session/de305d54-75b4-431b-adb2-eb6b9e546016", responseFile);
         SessionStatusRequest request = new SessionStatusRequest("de305d54-75b4-431b-adb2-eb6b9e546016");
@@ -0,0 +1,243 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.exception.RequestShedException;
+import ee.sk.mid.mock.MobileIdConnectorSpy;
+import ee.sk.mid.mock.MobileIdDelayingConnectorStub;
+import ee.sk.mid.rest.dao.request.AuthenticationRequest;
+import ee.sk.mid.rest.dao.request.SessionStatusRequest;
+import ee.sk.mid.rest.dao.response.AuthenticationResponse;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+
+import static ee.sk.mid.mock.MobileIdRestServiceRequestDummy.createValidAuthenticationRequest;
+import static ee.sk.mid.mock.MobileIdRestServiceRequestDummy.createValidSignatureRequest;
+import static ee.sk.mid.mock.SessionStatusDummy.createSuccessfulSessionStatus;
+import static ee.sk.mid.mock.TestData.SESSION_ID;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class PriorityDispatcherTest {
+
+    private final BlockingAuthenticationConnector blockingConnector = new BlockingAuthenticationConnector();
+
+    @Test
+    public void authenticate_whenSlotIsFree_shouldRunImmediately() {
+        PriorityDispatcher dispatcher = PriorityDispatcher.newBuilder()
+                .withConnector(new MobileIdDelayingConnectorStub(createSuccessfulSessionStatus(), 0))
+                .build();
+
+        AuthenticationResponse response = dispatcher.forPriority(RequestPriority.BATCH).authenticate(createValidAuthenticationRequest());
+
+        assertThat(response.getSessionID(), is(notNullValue()));
+        assertThat(dispatcher.getStats().getInFlightRequests(), is(0));
+    }
+
+    @Test
+    public void authenticate_whenSlotIsReleased_shouldRunInteractiveBeforeBatch() throws Exception {
+        PriorityDispatcher dispatcher = createDispatcher(5, 5);
+        CompletableFuture<AuthenticationResponse> running = authenticateAsync(dispatcher, RequestPriority.BATCH);
+        awaitQueued(dispatcher, RequestPriority.BATCH, 0);
+
+        CompletableFuture<AuthenticationResponse> batch = authenticateAsync(dispatcher, RequestPriority.BATCH);
+        awaitQueued(dispatcher, RequestPriority.BATCH, 1);
+        CompletableFuture<AuthenticationResponse> interactive = authenticateAsync(dispatcher, RequestPriority.INTERACTIVE);
+        awaitQueued(dispatcher, RequestPriority.INTERACTIVE, 1);
+
+        blockingConnector.release(2);
+        running.get();
+        interactive.get();
+        assertThat(batch.isDone(), is(false));
+
+        blockingConnector.release(1);
+        batch.get();
+    }
+
+    @Test
+    public void authenticate_whenInteractiveQueueIsFull_shouldShedBatchRequestAndAdmitInteractiveRequest() throws Exception {
+        PriorityDispatcher dispatcher = createDispatcher(1, 1);
+        CompletableFuture<AuthenticationResponse> running = authenticateAsync(dispatcher, RequestPriority.INTERACTIVE);
+        awaitQueued(dispatcher, RequestPriority.INTERACTIVE, 0);
+        CompletableFuture<AuthenticationResponse> batch = authenticateAsync(dispatcher, RequestPriority.BATCH);
+        awaitQueued(dispatcher, RequestPriority.BATCH, 1);
+        CompletableFuture<AuthenticationResponse> firstInteractive = authenticateAsync(dispatcher, RequestPriority.INTERACTIVE);
+        awaitQueued(dispatcher, RequestPriority.INTERACTIVE, 1);
+
+        CompletableFuture<AuthenticationResponse> secondInteractive = authenticateAsync(dispatcher, RequestPriority.INTERACTIVE);
+
+        assertShed(batch);
+        awaitQueued(dispatcher, RequestPriority.INTERACTIVE, 2);
+        assertThat(dispatcher.getStats().getQueuedRequests(RequestPriority.BATCH), is(0));
+        blockingConnector.release(3);
+        running.get();
+        firstInteractive.get();
+        secondInteractive.get();
+        assertThat(dispatcher.getStats().getShedRequests(RequestPriority.BATCH), is(1L));
+        assertThat(dispatcher.getStats().getShedRequests(RequestPriority.INTERACTIVE), is(0L));
+    }
+
+    @Test
+    public void authenticate_whenInteractiveQueueIsFullAndNoBatchRequestIsQueued_shouldRejectInteractiveRequest() throws Exception {
+        PriorityDispatcher dispatcher = createDispatcher(1, 1);
+        CompletableFuture<AuthenticationResponse> running = authenticateAsync(dispatcher, RequestPriority.INTERACTIVE);
+        awaitQueued(dispatcher, RequestPriority.INTERACTIVE, 0);
+        CompletableFuture<AuthenticationResponse> firstInteractive = authenticateAsync(dispatcher, RequestPriority.INTERACTIVE);
+        awaitQueued(dispatcher, RequestPriority.INTERACTIVE, 1);
+
+        assertShed(authenticateAsync(dispatcher, RequestPriority.INTERACTIVE));
+
+        assertThat(dispatcher.getStats().getQueuedRequests(RequestPriority.INTERACTIVE), is(1));
+        blockingConnector.release(2);
+        running.get();
+        firstInteractive.get();
+        assertThat(dispatcher.getStats().getShedRequests(RequestPriority.INTERACTIVE), is(1L));
+    }
+
+    @Test
+    public void authenticate_whenSharedQueueBoundIsReached_shouldShedBatchRequest() throws Exception {
+        PriorityDispatcher dispatcher = PriorityDispatcher.newBuilder()
+                .withConnector(blockingConnector)
+                .withMaxConcurrentRequests(1)
+                .withMaxQueuedRequests(1)
+                .build();
+        CompletableFuture<AuthenticationResponse> running = authenticateAsync(dispatcher, RequestPriority.BATCH);
+        awaitQueued(dispatcher, RequestPriority.BATCH, 0);
+        CompletableFuture<AuthenticationResponse> batch = authenticateAsync(dispatcher, RequestPriority.BATCH);
+        awaitQueued(dispatcher, RequestPriority.BATCH, 1);
+
+        CompletableFuture<AuthenticationResponse> interactive = authenticateAsync(dispatcher, RequestPriority.INTERACTIVE);
+
+        assertShed(batch);
+        awaitQueued(dispatcher, RequestPriority.INTERACTIVE, 1);
+        blockingConnector.release(2);
+        running.get();
+        interactive.get();
+    }
+
+    @Test
+    public void sign_whenBatchQueueIsFull_shouldRejectImmediately() throws Exception {
+        PriorityDispatcher dispatcher = createDispatcher(1, 0);
+        CompletableFuture<AuthenticationResponse> running = authenticateAsync(dispatcher, RequestPriority.INTERACTIVE);
+        awaitQueued(dispatcher, RequestPriority.INTERACTIVE, 0);
+
+        long startTime = System.currentTimeMillis();
+        try {
+            dispatcher.forPriority(RequestPriority.BATCH).sign(createValidSignatureRequest());
+            fail("Request should be shed");
+        } catch (RequestShedException expected) {
+        }
+
+        assertThat(System.currentTimeMillis() - startTime, lessThan(100L));
+        blockingConnector.release(1);
+        running.get();
+    }
+
+    @Test
+    public void authenticate_whenQueueTimeRunsOut_shouldShedRequest() throws Exception {
+        PriorityDispatcher dispatcher = PriorityDispatcher.newBuilder()
+                .withConnector(blockingConnector)
+                .withMaxConcurrentRequests(1)
+                .withMaxQueueTime(Duration.ofMillis(50))
+                .build();
+        CompletableFuture<AuthenticationResponse> running = authenticateAsync(dispatcher, RequestPriority.INTERACTIVE);
+        awaitQueued(dispatcher, RequestPriority.INTERACTIVE, 0);
+
+        assertShed(authenticateAsync(dispatcher, RequestPriority.INTERACTIVE));
+
+        assertThat(dispatcher.getStats().getQueuedRequests(RequestPriority.INTERACTIVE), is(0));
+        blockingConnector.release(1);
+        running.get();
+    }
+
+    @Test
+    public void getSessionStatus_shouldNotBeQueued() throws Exception {
+        PriorityDispatcher dispatcher = createDispatcher(0, 0);
+        CompletableFuture<AuthenticationResponse> running = authenticateAsync(dispatcher, RequestPriority.BATCH);
+        awaitQueued(dispatcher, RequestPriority.BATCH, 0);
+
+        dispatcher.forPriority(RequestPriority.BATCH).getAuthenticationSessionStatus(new SessionStatusRequest(SESSION_ID));
+
+        blockingConnector.release(1);
+        running.get();
+    }
+
+    private PriorityDispatcher createDispatcher(int interactiveQueueCapacity, int batchQueueCapacity) {
+        return PriorityDispatcher.newBuilder()
+                .withConnector(blockingConnector)
+                .withMaxConcurrentRequests(1)
+                .withQueueCapacity(RequestPriority.INTERACTIVE, interactiveQueueCapacity)
+                .withQueueCapacity(RequestPriority.BATCH, batchQueueCapacity)
+                .build();
+    }
+
+    private static CompletableFuture<AuthenticationResponse> authenticateAsync(PriorityDispatcher dispatcher, RequestPriority priority) {
+        return CompletableFuture.supplyAsync(() -> dispatcher.forPriority(priority).authenticate(createValidAuthenticationRequest()), command -> new Thread(command).start());
+    }
+
+    private static void awaitQueued(PriorityDispatcher dispatcher, RequestPriority priority, int count) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            PriorityDispatcherStats stats = dispatcher.getStats();
+            if (stats.getInFlightRequests() > 0 && stats.getQueuedRequests(priority) == count) {
+                return;
+            }
+            Thread.sleep(5);
+        }
+        fail("Expected " + count + " queued " + priority + " requests");
+    }
+
+    private static void assertShed(CompletableFuture<AuthenticationResponse> future) throws InterruptedException {
+        try {
+            future.get();
+            fail("Request should be shed");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), is(instanceOf(RequestShedException.class)));
+        }
+    }
+
+    private static class BlockingAuthenticationConnector extends MobileIdConnectorSpy {
+        private final Semaphore permits = new Semaphore(0);
+
+        void release(int count) {
+            permits.release(count);
+        }
+
+        @Override
+        public AuthenticationResponse authenticate(AuthenticationRequest request) {
+            permits.acquireUninterruptibly();
+            return new AuthenticationResponse(SESSION_ID);
+        }
+    }
+}
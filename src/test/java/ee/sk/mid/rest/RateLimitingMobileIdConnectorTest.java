@@ -0,0 +1,204 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import ee.sk.mid.exception.RateLimitExceededException;
+import ee.sk.mid.mock.MobileIdDelayingConnectorStub;
+import ee.sk.mid.rest.dao.SessionStatus;
+import ee.sk.mid.rest.dao.request.SessionStatusRequest;
+import org.junit.Rule;
+import org.junit.Test;
+
+import javax.ws.rs.WebApplicationException;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static ee.sk.mid.mock.MobileIdRestServiceRequestDummy.createValidAuthenticationRequest;
+import static ee.sk.mid.mock.MobileIdRestServiceStub.stubThrottledResponse;
+import static ee.sk.mid.mock.SessionStatusDummy.createSuccessfulSessionStatus;
+import static ee.sk.mid.mock.TestData.AUTHENTICATION_SESSION_PATH;
+import static ee.sk.mid.mock.TestData.LOCALHOST_URL;
+import static ee.sk.mid.mock.TestData.SESSION_ID;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class RateLimitingMobileIdConnectorTest {
+
+    private static final String AUTHENTICATION_PATH = "/mid-api/authentication";
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule(18089);
+
+    @Test
+    public void getSessionStatus_whenBurstIsUsedUp_shouldWaitForPermit() {
+        RateLimiterConfig pollingConfig = RateLimiterConfig.newBuilder()
+                .withPermitsPerSecond(20)
+                .withBurst(2)
+                .build();
+        RateLimitingMobileIdConnector connector = createConnector(RateLimiterConfig.newBuilder().build(), pollingConfig);
+
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < 4; i++) {
+            getSessionStatus(connector, Deadline.none());
+        }
+
+        assertThat(System.currentTimeMillis() - startTime, greaterThanOrEqualTo(90L));
+    }
+
+    @Test
+    public void getSessionStatus_withoutMaxWait_shouldRejectImmediately() {
+        MobileIdDelayingConnectorStub stub = new MobileIdDelayingConnectorStub(createSuccessfulSessionStatus(), 0);
+        RateLimiterConfig pollingConfig = RateLimiterConfig.newBuilder()
+                .withPermitsPerSecond(1)
+                .withBurst(2)
+                .withMaxWait(Duration.ZERO)
+                .build();
+        RateLimitingMobileIdConnector connector = new RateLimitingMobileIdConnector(stub, RateLimiterConfig.newBuilder().build(), pollingConfig);
+
+        getSessionStatus(connector, Deadline.none());
+        getSessionStatus(connector, Deadline.none());
+        try {
+            getSessionStatus(connector, Deadline.none());
+            fail("Request should be rejected");
+        } catch (RateLimitExceededException expected) {
+        }
+
+        assertThat(stub.getSessionStatusRequestCount(), is(2));
+        assertThat(connector.getPollingRateLimiter().getRejectedRequests(), is(1L));
+    }
+
+    @Test
+    public void getSessionStatus_whenPermitIsNotAvailableBeforeDeadline_shouldRejectWithoutWaiting() {
+        RateLimiterConfig pollingConfig = RateLimiterConfig.newBuilder()
+                .withPermitsPerSecond(1)
+                .withBurst(1)
+                .build();
+        RateLimitingMobileIdConnector connector = createConnector(RateLimiterConfig.newBuilder().build(), pollingConfig);
+        getSessionStatus(connector, Deadline.none());
+
+        long startTime = System.currentTimeMillis();
+        try {
+            getSessionStatus(connector, Deadline.after(Duration.ofMillis(100)));
+            fail("Request should be rejected");
+        } catch (RateLimitExceededException expected) {
+        }
+
+        assertThat(System.currentTimeMillis() - startTime, lessThan(50L));
+    }
+
+    @Test
+    public void getSessionStatus_whenInitiationLimitIsReached_shouldStillPoll() {
+        RateLimiterConfig initiationConfig = RateLimiterConfig.newBuilder()
+                .withPermitsPerSecond(1)
+                .withBurst(1)
+                .withMaxWait(Duration.ZERO)
+                .build();
+        RateLimitingMobileIdConnector connector = createConnector(initiationConfig, RateLimiterConfig.newBuilder().build());
+
+        connector.authenticate(createValidAuthenticationRequest());
+        try {
+            connector.authenticate(createValidAuthenticationRequest());
+            fail("Request should be rejected");
+        } catch (RateLimitExceededException expected) {
+        }
+
+        assertThat(getSessionStatus(connector, Deadline.none()).getResult(), is("OK"));
+    }
+
+    @Test
+    public void authenticate_whenServiceRespondsTooManyRequests_shouldPauseForRetryAfter() throws Exception {
+        stubThrottledResponse(AUTHENTICATION_PATH, "requests/authenticationRequest.json", 429, "1");
+        RateLimiterConfig initiationConfig = RateLimiterConfig.newBuilder()
+                .withPermitsPerSecond(10)
+                .withMaxWait(Duration.ZERO)
+                .build();
+        RateLimitingMobileIdConnector connector = new RateLimitingMobileIdConnector(new MobileIdRestConnector(LOCALHOST_URL), initiationConfig, RateLimiterConfig.newBuilder().build());
+
+        try {
+            connector.authenticate(createValidAuthenticationRequest());
+            fail("Request should be throttled");
+        } catch (WebApplicationException e) {
+            assertThat(e.getResponse().getStatus(), is(429));
+        }
+        try {
+            connector.authenticate(createValidAuthenticationRequest());
+            fail("Request should be rejected while throttled");
+        } catch (RateLimitExceededException expected) {
+        }
+
+        assertThat(WireMock.findAll(postRequestedFor(urlEqualTo(AUTHENTICATION_PATH))).size(), is(1));
+        assertThat(connector.getInitiationRateLimiter().getThrottledResponses(), is(1L));
+        assertThat(connector.getInitiationRateLimiter().getPermitsPerSecond(), is(5.0));
+    }
+
+    @Test
+    public void getSessionStatus_afterThrottling_shouldRecoverRate() {
+        RateLimitingMobileIdConnector connector = createConnector(RateLimiterConfig.newBuilder().build(),
+                RateLimiterConfig.newBuilder().withPermitsPerSecond(1000).withBurst(100).build());
+        connector.getPollingRateLimiter().onThrottled("0");
+        assertThat(connector.getPollingRateLimiter().getPermitsPerSecond(), is(500.0));
+
+        for (int i = 0; i < 10; i++) {
+            getSessionStatus(connector, Deadline.none());
+        }
+
+        assertThat(connector.getPollingRateLimiter().getPermitsPerSecond(), is(1000.0));
+    }
+
+    @Test
+    public void parseRetryAfter_shouldAcceptSecondsAndHttpDate() {
+        long defaultNanos = TimeUnit.SECONDS.toNanos(7);
+        String httpDate = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(30));
+
+        assertThat(RateLimiter.parseRetryAfterNanos("120", defaultNanos), is(TimeUnit.SECONDS.toNanos(120)));
+        assertThat(RateLimiter.parseRetryAfterNanos(httpDate, defaultNanos),
+                allOf(greaterThan(TimeUnit.SECONDS.toNanos(28)), lessThanOrEqualTo(TimeUnit.SECONDS.toNanos(30))));
+        assertThat(RateLimiter.parseRetryAfterNanos("soon", defaultNanos), is(defaultNanos));
+        assertThat(RateLimiter.parseRetryAfterNanos(null, defaultNanos), is(defaultNanos));
+    }
+
+    private static RateLimitingMobileIdConnector createConnector(RateLimiterConfig initiationConfig, RateLimiterConfig pollingConfig) {
+        return new RateLimitingMobileIdConnector(new MobileIdDelayingConnectorStub(createSuccessfulSessionStatus(), 0), initiationConfig, pollingConfig);
+    }
+
+    private static SessionStatus getSessionStatus(RateLimitingMobileIdConnector connector, Deadline deadline) {
+        return connector.getSessionStatus(new SessionStatusRequest(SESSION_ID), AUTHENTICATION_SESSION_PATH, deadline);
+    }
+}
@@ -0,0 +1,228 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.exception.SessionNotFoundException;
+import ee.sk.mid.mock.MobileIdAsyncConnectorWrapper;
+import ee.sk.mid.mock.MobileIdFailingConnectorStub;
+import ee.sk.mid.rest.dao.SessionStatus;
+import ee.sk.mid.rest.dao.request.SessionStatusRequest;
+import org.junit.Test;
+
+import javax.ws.rs.InternalServerErrorException;
+import javax.ws.rs.ProcessingException;
+import java.net.SocketException;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static ee.sk.mid.mock.MobileIdRestServiceRequestDummy.createValidAuthenticationRequest;
+import static ee.sk.mid.mock.MobileIdRestServiceRequestDummy.createValidSignatureRequest;
+import static ee.sk.mid.mock.SessionStatusDummy.createSuccessfulSessionStatus;
+import static ee.sk.mid.mock.TestData.AUTHENTICATION_SESSION_PATH;
+import static ee.sk.mid.mock.TestData.SESSION_ID;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class RetryingMobileIdConnectorTest {
+
+    @Test
+    public void getSessionStatus_afterTransientServerErrors_shouldRetry() {
+        MobileIdFailingConnectorStub stub = new MobileIdFailingConnectorStub(createSuccessfulSessionStatus(), 2, InternalServerErrorException::new);
+        RetryingMobileIdConnector connector = createConnector(stub, 3);
+
+        assertThat(getSessionStatus(connector).getResult(), is("OK"));
+
+        assertThat(stub.getSessionStatusRequestCount(), is(3));
+        assertThat(connector.getStats().getRetries(), is(2L));
+    }
+
+    @Test
+    public void getSessionStatus_afterConnectionReset_shouldRetry() {
+        MobileIdFailingConnectorStub stub = new MobileIdFailingConnectorStub(createSuccessfulSessionStatus(), 1,
+                () -> new ProcessingException(new SocketException("Connection reset")));
+        RetryingMobileIdConnector connector = createConnector(stub, 3);
+
+        assertThat(getSessionStatus(connector).getResult(), is("OK"));
+        assertThat(stub.getSessionStatusRequestCount(), is(2));
+    }
+
+    @Test(expected = InternalServerErrorException.class)
+    public void getSessionStatus_whenAttemptsAreExhausted_shouldThrowLastError() {
+        MobileIdFailingConnectorStub stub = new MobileIdFailingConnectorStub(createSuccessfulSessionStatus(), 5, InternalServerErrorException::new);
+
+        getSessionStatus(createConnector(stub, 3));
+    }
+
+    @Test
+    public void getSessionStatus_whenSessionIsNotFound_shouldNotRetry() {
+        MobileIdFailingConnectorStub stub = new MobileIdFailingConnectorStub(createSuccessfulSessionStatus(), 1, SessionNotFoundException::new);
+        RetryingMobileIdConnector connector = createConnector(stub, 3);
+
+        try {
+            getSessionStatus(connector);
+            fail("Session should not be found");
+        } catch (SessionNotFoundException expected) {
+        }
+        assertThat(stub.getSessionStatusRequestCount(), is(1));
+    }
+
+    @Test
+    public void getSessionStatus_whenRetryBudgetIsExhausted_shouldNotRetry() {
+        MobileIdFailingConnectorStub stub = new MobileIdFailingConnectorStub(createSuccessfulSessionStatus(), 100, InternalServerErrorException::new);
+        RetryingMobileIdConnector connector = RetryingMobileIdConnector.newBuilder()
+                .withConnector(stub)
+                .withMaxAttempts(3)
+                .withInitialBackoff(Duration.ofMillis(1))
+                .withRetryBudgetRatio(0)
+                .build();
+
+        for (int i = 0; i < 20; i++) {
+            try {
+                getSessionStatus(connector);
+                fail("Session status request should fail");
+            } catch (InternalServerErrorException expected) {
+            }
+        }
+
+        assertThat(connector.getStats().getRetries(), is(10L));
+        assertThat(stub.getSessionStatusRequestCount(), is(30));
+        assertThat(connector.getStats().getBudgetExhaustions() > 0, is(true));
+    }
+
+    @Test
+    public void getSessionStatus_whenOutageFollowsManySuccesses_shouldKeepRetriesBounded() {
+        MobileIdFailingConnectorStub stub = new MobileIdFailingConnectorStub(createSuccessfulSessionStatus(), 0, InternalServerErrorException::new);
+        RetryingMobileIdConnector connector = RetryingMobileIdConnector.newBuilder()
+                .withConnector(stub)
+                .withMaxAttempts(3)
+                .withInitialBackoff(Duration.ofMillis(1))
+                .withRetryBudgetRatio(0.1)
+                .build();
+
+        for (int i = 0; i < 1000; i++) {
+            getSessionStatus(connector);
+        }
+        stub.setFailing(true);
+        for (int i = 0; i < 100; i++) {
+            try {
+                getSessionStatus(connector);
+                fail("Session status request should fail");
+            } catch (InternalServerErrorException expected) {
+            }
+        }
+
+        assertThat(connector.getStats().getRetries(), lessThanOrEqualTo(20L));
+        assertThat(stub.getSessionStatusRequestCount(), lessThanOrEqualTo(1120));
+    }
+
+    @Test
+    public void getSessionStatus_whenBackoffExceedsDeadline_shouldNotRetry() {
+        MobileIdFailingConnectorStub stub = new MobileIdFailingConnectorStub(createSuccessfulSessionStatus(), 1, InternalServerErrorException::new);
+        RetryingMobileIdConnector connector = RetryingMobileIdConnector.newBuilder()
+                .withConnector(stub)
+                .withInitialBackoff(Duration.ofSeconds(10))
+                .withMaxBackoff(Duration.ofSeconds(10))
+                .build();
+
+        long startTime = System.currentTimeMillis();
+        try {
+            connector.getSessionStatus(new SessionStatusRequest(SESSION_ID), AUTHENTICATION_SESSION_PATH, Deadline.after(Duration.ofMillis(1)));
+        } catch (InternalServerErrorException expected) {
+        }
+
+        assertThat(System.currentTimeMillis() - startTime, lessThan(1000L));
+        assertThat(stub.getSessionStatusRequestCount(), is(1));
+    }
+
+    @Test
+    public void signAndAuthenticate_shouldNeverBeRetried() {
+        MobileIdFailingConnectorStub stub = new MobileIdFailingConnectorStub(createSuccessfulSessionStatus(), 0, InternalServerErrorException::new);
+        RetryingMobileIdConnector connector = createConnector(stub, 5);
+
+        try {
+            connector.sign(createValidSignatureRequest());
+            fail("Signature request should fail");
+        } catch (InternalServerErrorException expected) {
+        }
+        try {
+            connector.authenticate(createValidAuthenticationRequest());
+            fail("Authentication request should fail");
+        } catch (InternalServerErrorException expected) {
+        }
+
+        assertThat(stub.getInitiationRequestCount(), is(2));
+        assertThat(connector.getStats().getRetries(), is(0L));
+    }
+
+    @Test
+    public void getSessionStatusAsync_withAsyncConnector_shouldRetryWithoutBlocking() throws Exception {
+        MobileIdFailingConnectorStub stub = new MobileIdFailingConnectorStub(createSuccessfulSessionStatus(), 2, InternalServerErrorException::new);
+        try (MobileIdAsyncConnectorWrapper asyncStub = new MobileIdAsyncConnectorWrapper(stub)) {
+            RetryingMobileIdConnector connector = createConnector(asyncStub, 3);
+
+            SessionStatus sessionStatus = connector.getSessionStatusAsync(new SessionStatusRequest(SESSION_ID), AUTHENTICATION_SESSION_PATH)
+                    .get(5, TimeUnit.SECONDS);
+
+            assertThat(sessionStatus.getResult(), is("OK"));
+            assertThat(asyncStub.getAsyncRequestCount(), is(3));
+            assertThat(connector.getStats().getRetries(), is(2L));
+        }
+    }
+
+    @Test
+    public void getSessionStatusAsync_whenAttemptsAreExhausted_shouldCompleteWithLastError() throws Exception {
+        MobileIdFailingConnectorStub stub = new MobileIdFailingConnectorStub(createSuccessfulSessionStatus(), 5, InternalServerErrorException::new);
+        try (MobileIdAsyncConnectorWrapper asyncStub = new MobileIdAsyncConnectorWrapper(stub)) {
+            RetryingMobileIdConnector connector = createConnector(asyncStub, 3);
+
+            try {
+                connector.getSessionStatusAsync(new SessionStatusRequest(SESSION_ID), AUTHENTICATION_SESSION_PATH).get(5, TimeUnit.SECONDS);
+                fail("Session status request should fail");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause(), instanceOf(InternalServerErrorException.class));
+            }
+            assertThat(stub.getSessionStatusRequestCount(), is(3));
+        }
+    }
+
+    private static RetryingMobileIdConnector createConnector(MobileIdConnector stub, int maxAttempts) {
+        return RetryingMobileIdConnector.newBuilder()
+                .withConnector(stub)
+                .withMaxAttempts(maxAttempts)
+                .withInitialBackoff(Duration.ofMillis(10))
+                .build();
+    }
+
+    private static SessionStatus getSessionStatus(RetryingMobileIdConnector connector) {
+        return connector.getSessionStatus(new SessionStatusRequest(SESSION_ID), AUTHENTICATION_SESSION_PATH);
+    }
+}
@@ -0,0 +1,302 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.exception.DeadlineExceededException;
+import ee.sk.mid.exception.TechnicalErrorException;
+import ee.sk.mid.exception.UserCancellationException;
+import ee.sk.mid.mock.MobileIdAsyncConnectorWrapper;
+import ee.sk.mid.mock.MobileIdConcurrentConnectorStub;
+import ee.sk.mid.rest.dao.SessionStatus;
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static ee.sk.mid.mock.SessionStatusDummy.createSuccessfulSessionStatus;
+import static ee.sk.mid.mock.SessionStatusDummy.createUserCancellationStatus;
+import static ee.sk.mid.mock.TestData.AUTHENTICATION_SESSION_PATH;
+import static ee.sk.mid.mock.TestData.SESSION_ID;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ScheduledSessionStatusPollerTest {
+
+    private static final int POLLING_THREADS = 2;
+
+    private MobileIdConcurrentConnectorStub connector;
+    private ScheduledSessionStatusPoller poller;
+
+    @After
+    public void tearDown() {
+        if (poller != null) {
+            poller.close();
+        }
+    }
+
+    @Test
+    public void getFirstCompleteResponse() throws Exception {
+        createPoller(0, createSuccessfulSessionStatus());
+
+        SessionStatus sessionStatus = poller.fetchFinalSessionStatus(SESSION_ID, AUTHENTICATION_SESSION_PATH).get(5, TimeUnit.SECONDS);
+
+        assertThat(sessionStatus.getState(), is("COMPLETE"));
+        assertThat(sessionStatus.getResult(), is("OK"));
+        assertThat(connector.getPollCount(SESSION_ID), is(1));
+        assertThat(awaitPendingSessionCount(0), is(0));
+    }
+
+    @Test
+    public void pollAndGetThirdCompleteResponse() throws Exception {
+        createPoller(2, createSuccessfulSessionStatus());
+
+        SessionStatus sessionStatus = poller.fetchFinalAuthenticationSessionStatus(SESSION_ID).get(5, TimeUnit.SECONDS);
+
+        assertThat(sessionStatus.getResult(), is("OK"));
+        assertThat(connector.getPollCount(SESSION_ID), is(3));
+    }
+
+    @Test
+    public void getUserCancellationResponse_shouldCompleteExceptionally() throws Exception {
+        createPoller(1, createUserCancellationStatus());
+
+        assertThat(awaitFailure(poller.fetchFinalSignatureSessionStatus(SESSION_ID)), instanceOf(UserCancellationException.class));
+    }
+
+    @Test
+    public void pollManyConcurrentSessions_shouldUseConstantNumberOfThreads() throws Exception {
+        int threadsBefore = countPollerThreads();
+        createPoller(3, createSuccessfulSessionStatus());
+
+        List<CompletableFuture<SessionStatus>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            futures.add(poller.fetchFinalAuthenticationSessionStatus("session-" + i));
+        }
+        assertThat(countPollerThreads() - threadsBefore, lessThanOrEqualTo(1 + POLLING_THREADS));
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+
+        assertThat(connector.getTotalPollCount(), is(4000));
+        assertThat(awaitPendingSessionCount(0), is(0));
+        assertThat(countPollerThreads() - threadsBefore, lessThanOrEqualTo(1 + POLLING_THREADS));
+    }
+
+    @Test
+    public void pollSameSessionTwice_shouldShareSinglePollingSession() throws Exception {
+        createPoller(2, createSuccessfulSessionStatus());
+
+        CompletableFuture<SessionStatus> first = poller.fetchFinalAuthenticationSessionStatus(SESSION_ID);
+        CompletableFuture<SessionStatus> second = poller.fetchFinalAuthenticationSessionStatus(SESSION_ID);
+
+        assertThat(second.get(5, TimeUnit.SECONDS).getResult(), is("OK"));
+        assertThat(first.get(5, TimeUnit.SECONDS).getResult(), is("OK"));
+        assertThat(connector.getPollCount(SESSION_ID), is(3));
+    }
+
+    @Test
+    public void pollSameSessionIdOnDifferentPaths_shouldPollEachPath() throws Exception {
+        createPoller(0, createSuccessfulSessionStatus());
+
+        poller.fetchFinalAuthenticationSessionStatus(SESSION_ID).get(5, TimeUnit.SECONDS);
+        poller.fetchFinalSignatureSessionStatus(SESSION_ID).get(5, TimeUnit.SECONDS);
+
+        assertThat(connector.getPollCount(SESSION_ID), is(2));
+    }
+
+    @Test
+    public void cancelSession_shouldStopPolling() throws Exception {
+        createPoller(Integer.MAX_VALUE, createSuccessfulSessionStatus());
+
+        CompletableFuture<SessionStatus> future = poller.fetchFinalAuthenticationSessionStatus(SESSION_ID);
+        Thread.sleep(100);
+        future.cancel(false);
+        Thread.sleep(50);
+        int pollsAfterCancel = connector.getPollCount(SESSION_ID);
+        Thread.sleep(200);
+
+        assertThat(connector.getPollCount(SESSION_ID), is(pollsAfterCancel));
+        assertThat(awaitPendingSessionCount(0), is(0));
+    }
+
+    @Test
+    public void cancelOneOfSharedWaiters_shouldKeepPollingForOthers() throws Exception {
+        createPoller(5, createSuccessfulSessionStatus());
+
+        CompletableFuture<SessionStatus> first = poller.fetchFinalAuthenticationSessionStatus(SESSION_ID);
+        CompletableFuture<SessionStatus> second = poller.fetchFinalAuthenticationSessionStatus(SESSION_ID);
+        first.cancel(false);
+
+        assertThat(second.get(5, TimeUnit.SECONDS).getResult(), is("OK"));
+        assertThat(connector.getPollCount(SESSION_ID), is(6));
+    }
+
+    @Test
+    public void fetchCompletedSessionWithinGracePeriod_shouldNotPollAgain() throws Exception {
+        createPoller(1, createSuccessfulSessionStatus());
+
+        poller.fetchFinalAuthenticationSessionStatus(SESSION_ID).get(5, TimeUnit.SECONDS);
+        assertThat(awaitPendingSessionCount(0), is(0));
+        SessionStatus sessionStatus = poller.fetchFinalAuthenticationSessionStatus(SESSION_ID).get(5, TimeUnit.SECONDS);
+
+        assertThat(sessionStatus.getResult(), is("OK"));
+        assertThat(connector.getPollCount(SESSION_ID), is(2));
+    }
+
+    @Test
+    public void fetchCompletedSessionAfterGracePeriod_shouldPollAgain() throws Exception {
+        createPoller(0, createSuccessfulSessionStatus());
+        poller.setResultGracePeriodMillis(20);
+
+        poller.fetchFinalAuthenticationSessionStatus(SESSION_ID).get(5, TimeUnit.SECONDS);
+        Thread.sleep(200);
+        poller.fetchFinalAuthenticationSessionStatus(SESSION_ID).get(5, TimeUnit.SECONDS);
+
+        assertThat(connector.getPollCount(SESSION_ID), is(2));
+    }
+
+    @Test
+    public void getPollingStats_shouldCountPollsPerCompletedSession() throws Exception {
+        createPoller(2, createSuccessfulSessionStatus());
+
+        List<CompletableFuture<SessionStatus>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(poller.fetchFinalAuthenticationSessionStatus("session-" + i));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+        SessionPollingStats stats = poller.getPollingStats();
+        assertThat(stats.getCompletedSessions(), is(10L));
+        assertThat(stats.getPolls(), is(30L));
+        assertThat(stats.getPollsPerSession(), is(3.0));
+    }
+
+    @Test
+    public void setPollingStrategy_shouldDelayFirstPoll() throws Exception {
+        createPoller(0, createSuccessfulSessionStatus());
+        poller.setPollingStrategy(new FixedPollingStrategy(Duration.ofMillis(300), Duration.ofMillis(10)));
+
+        long startTime = System.currentTimeMillis();
+        poller.fetchFinalAuthenticationSessionStatus(SESSION_ID).get(5, TimeUnit.SECONDS);
+
+        assertThat(System.currentTimeMillis() - startTime, greaterThanOrEqualTo(300L));
+        assertThat(poller.getPollingStats().getAverageTimeToResultMillis(), greaterThanOrEqualTo(290.0));
+    }
+
+    @Test
+    public void pollRunningSessionPastDeadline_shouldCompleteExceptionallyAndStopPolling() throws Exception {
+        createPoller(Integer.MAX_VALUE, createSuccessfulSessionStatus());
+
+        CompletableFuture<SessionStatus> future = poller.fetchFinalAuthenticationSessionStatus(SESSION_ID, Deadline.after(Duration.ofMillis(200)));
+
+        assertThat(awaitFailure(future), instanceOf(DeadlineExceededException.class));
+        assertThat(awaitPendingSessionCount(0), is(0));
+        int pollsAfterDeadline = connector.getPollCount(SESSION_ID);
+        Thread.sleep(100);
+        assertThat(connector.getPollCount(SESSION_ID), is(pollsAfterDeadline));
+    }
+
+    @Test
+    public void sharedSessionPastDeadlineOfOneWaiter_shouldKeepPollingForOthers() throws Exception {
+        createPoller(20, createSuccessfulSessionStatus());
+
+        CompletableFuture<SessionStatus> shortDeadline = poller.fetchFinalAuthenticationSessionStatus(SESSION_ID, Deadline.after(Duration.ofMillis(50)));
+        CompletableFuture<SessionStatus> noDeadline = poller.fetchFinalAuthenticationSessionStatus(SESSION_ID);
+
+        assertThat(awaitFailure(shortDeadline), instanceOf(DeadlineExceededException.class));
+        assertThat(noDeadline.get(5, TimeUnit.SECONDS).getResult(), is("OK"));
+    }
+
+    @Test
+    public void pollWithAsyncConnector_shouldNotUsePollingThreads() throws Exception {
+        int threadsBefore = countPollerThreads();
+        connector = new MobileIdConcurrentConnectorStub(2, createSuccessfulSessionStatus());
+        try (MobileIdAsyncConnectorWrapper asyncConnector = new MobileIdAsyncConnectorWrapper(connector)) {
+            poller = new ScheduledSessionStatusPoller(asyncConnector, POLLING_THREADS);
+            poller.setPollingSleepTimeoutMillis(10);
+            poller.setMaxJitterMillis(5);
+
+            SessionStatus sessionStatus = poller.fetchFinalAuthenticationSessionStatus(SESSION_ID).get(5, TimeUnit.SECONDS);
+
+            assertThat(sessionStatus.getResult(), is("OK"));
+            assertThat(asyncConnector.getAsyncRequestCount(), is(3));
+            assertThat(countPollerThreads() - threadsBefore, lessThanOrEqualTo(1));
+        }
+    }
+
+    @Test
+    public void close_shouldFailPendingSessions() throws Exception {
+        createPoller(Integer.MAX_VALUE, createSuccessfulSessionStatus());
+
+        CompletableFuture<SessionStatus> future = poller.fetchFinalAuthenticationSessionStatus(SESSION_ID);
+        poller.close();
+
+        assertThat(awaitFailure(future), instanceOf(TechnicalErrorException.class));
+    }
+
+    private void createPoller(int runningResponsesPerSession, SessionStatus finalSessionStatus) {
+        connector = new MobileIdConcurrentConnectorStub(runningResponsesPerSession, finalSessionStatus);
+        poller = new ScheduledSessionStatusPoller(connector, POLLING_THREADS);
+        poller.setPollingSleepTimeoutMillis(10);
+        poller.setMaxJitterMillis(5);
+    }
+
+    private int awaitPendingSessionCount(int expectedCount) throws InterruptedException {
+        for (int i = 0; i < 100 && poller.getPendingSessionCount() != expectedCount; i++) {
+            Thread.sleep(10);
+        }
+        return poller.getPendingSessionCount();
+    }
+
+    private static Throwable awaitFailure(CompletableFuture<SessionStatus> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Expected session status polling to fail");
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+    }
+
+    private static int countPollerThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().startsWith("mid-session-status-")) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,126 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class SessionIndexTest {
+
+    private static final String PATH = SessionStatusPoller.AUTHENTICATION_SESSION_PATH;
+    private static final String SESSION_ID = "97f5058e-e308-4c83-ac14-7712b0eb9d86";
+
+    private final SessionIndex<String> index = new SessionIndex<>();
+
+    @Test
+    public void putIfAbsent_shouldStoreValueByUuid() {
+        assertThat(index.putIfAbsent(PATH, SESSION_ID, "first"), is(nullValue()));
+        assertThat(index.putIfAbsent(PATH, SESSION_ID, "second"), is("first"));
+
+        assertThat(index.get(PATH, SESSION_ID), is("first"));
+        assertThat(index.size(), is(1));
+    }
+
+    @Test
+    public void remove_shouldOnlyRemoveMatchingValue() {
+        index.putIfAbsent(PATH, SESSION_ID, "first");
+
+        assertThat(index.remove(PATH, SESSION_ID, "second"), is(false));
+        assertThat(index.remove(PATH, SESSION_ID, "first"), is(true));
+        assertThat(index.get(PATH, SESSION_ID), is(nullValue()));
+        assertThat(index.size(), is(0));
+    }
+
+    @Test
+    public void nonUuidSessionIds_shouldBeIndexedSeparately() {
+        index.putIfAbsent(PATH, "session-1", "first");
+        index.putIfAbsent(PATH, SESSION_ID.toUpperCase(), "second");
+
+        assertThat(index.get(PATH, "session-1"), is("first"));
+        assertThat(index.get(PATH, SESSION_ID.toUpperCase()), is("second"));
+        assertThat(index.get(PATH, SESSION_ID), is(nullValue()));
+        assertThat(index.size(), is(2));
+    }
+
+    @Test
+    public void sameSessionIdOnDifferentPaths_shouldBeIndexedSeparately() {
+        index.putIfAbsent(PATH, SESSION_ID, "authentication");
+        index.putIfAbsent(SessionStatusPoller.SIGNATURE_SESSION_PATH, SESSION_ID, "signature");
+        index.putIfAbsent(PATH, "session-1", "non-uuid authentication");
+        index.putIfAbsent(SessionStatusPoller.SIGNATURE_SESSION_PATH, "session-1", "non-uuid signature");
+
+        assertThat(index.get(PATH, SESSION_ID), is("authentication"));
+        assertThat(index.get(SessionStatusPoller.SIGNATURE_SESSION_PATH, SESSION_ID), is("signature"));
+        assertThat(index.get(PATH, "session-1"), is("non-uuid authentication"));
+        assertThat(index.remove(PATH, SESSION_ID, "authentication"), is(true));
+        assertThat(index.get(SessionStatusPoller.SIGNATURE_SESSION_PATH, SESSION_ID), is("signature"));
+        assertThat(index.size(), is(3));
+    }
+
+    @Test
+    public void manySessions_shouldSurviveResizeAndRemoval() {
+        List<String> sessionIds = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            String sessionId = UUID.randomUUID().toString();
+            sessionIds.add(sessionId);
+            index.putIfAbsent(PATH, sessionId, sessionId);
+        }
+        for (int i = 0; i < sessionIds.size(); i += 2) {
+            assertThat(index.remove(PATH, sessionIds.get(i), sessionIds.get(i)), is(true));
+        }
+
+        assertThat(index.size(), is(5000));
+        for (int i = 0; i < sessionIds.size(); i++) {
+            assertThat(index.get(PATH, sessionIds.get(i)), is(i % 2 == 0 ? null : sessionIds.get(i)));
+        }
+    }
+
+    @Test
+    public void values_shouldReturnAllSessions() {
+        index.putIfAbsent(PATH, SESSION_ID, "first");
+        index.putIfAbsent(PATH, "session-1", "second");
+
+        assertThat(index.values(), containsInAnyOrder("first", "second"));
+    }
+
+    @Test
+    public void toSessionId_shouldFormatUuidBits() {
+        UUID uuid = UUID.fromString(SESSION_ID);
+
+        assertThat(SessionIndex.mostSigBits(SESSION_ID), is(uuid.getMostSignificantBits()));
+        assertThat(SessionIndex.leastSigBits(SESSION_ID), is(uuid.getLeastSignificantBits()));
+        assertThat(SessionIndex.toSessionId(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()), is(SESSION_ID));
+    }
+}
@@ -27,16 +27,23 @@ package ee.sk.mid.rest;
  */
 
 import ee.sk.mid.exception.*;
+import ee.sk.mid.mock.MobileIdConcurrentConnectorStub;
 import ee.sk.mid.mock.MobileIdConnectorStub;
 import ee.sk.mid.rest.dao.SessionStatus;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 import static ee.sk.mid.mock.SessionStatusDummy.*;
 import static ee.sk.mid.mock.TestData.AUTHENTICATION_SESSION_PATH;
 import static ee.sk.mid.mock.TestData.SESSION_ID;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 public class SessionStatusPollerTest {
 
@@ -83,6 +90,145 @@ public class SessionStatusPollerTest {
         assertThat(duration < 10100L, is(true));
     }
 
+    @Test
+    public void setLongPollingTimeout_shouldPassTimeoutAndNotSleep() {
+        poller.setPollingSleepTimeSeconds(2);
+        poller.setLongPollingTimeoutSeconds(1);
+        connector.setResponseDelayMillis(600);
+        connector.getResponses().add(createRunningSessionStatus());
+        connector.getResponses().add(createRunningSessionStatus());
+        connector.getResponses().add(createSuccessfulSessionStatus());
+        long duration = measurePollingDuration();
+
+        assertThat(connector.getResponseNumber(), is(3));
+        assertThat(connector.getRequestUsed().getTimeoutMs(), is(1000));
+        assertThat("Duration is " + duration, duration < 3000L, is(true));
+    }
+
+    @Test
+    public void setLongPollingTimeout_whenServerRespondsEarly_shouldSleepBetweenPolls() {
+        poller.setPollingStrategy(new FixedPollingStrategy(Duration.ofMillis(200)));
+        poller.setLongPollingTimeoutSeconds(30);
+        addMultipleRunningSessionResponses();
+        connector.getResponses().add(createSuccessfulSessionStatus());
+        long duration = measurePollingDuration();
+
+        assertThat(connector.getResponseNumber(), is(6));
+        assertThat(connector.getRequestUsed().getTimeoutMs(), is(30000));
+        assertThat("Duration is " + duration, duration >= 1000L, is(true));
+    }
+
+    @Test
+    public void setLongPollingTimeout_whenDeadlineIsBelowMargin_shouldSleepBetweenShortPolls() {
+        MobileIdConcurrentConnectorStub concurrentConnector = new MobileIdConcurrentConnectorStub(Integer.MAX_VALUE, createSuccessfulSessionStatus());
+        SessionStatusPoller deadlinePoller = new SessionStatusPoller(concurrentConnector);
+        deadlinePoller.setPollingStrategy(new FixedPollingStrategy(Duration.ofMillis(100)));
+        deadlinePoller.setLongPollingTimeoutSeconds(30);
+
+        try {
+            deadlinePoller.fetchFinalSessionStatus(SESSION_ID, AUTHENTICATION_SESSION_PATH, Deadline.after(Duration.ofMillis(350)));
+            fail("Expected deadline to be exceeded");
+        } catch (DeadlineExceededException e) {
+            assertThat(concurrentConnector.getPollCount(SESSION_ID) <= 5, is(true));
+        }
+    }
+
+    @Test
+    public void withoutLongPolling_shouldNotPassTimeout() {
+        connector.getResponses().add(createSuccessfulSessionStatus());
+        poller.fetchFinalSessionStatus(SESSION_ID, AUTHENTICATION_SESSION_PATH);
+
+        assertThat(connector.getRequestUsed().getTimeoutMs(), is(nullValue()));
+    }
+
+    @Test
+    public void setPollingStrategy_shouldUseStrategyDelays() {
+        poller.setPollingStrategy(new FixedPollingStrategy(Duration.ofMillis(200), Duration.ofMillis(100)));
+        addMultipleRunningSessionResponses();
+        connector.getResponses().add(createSuccessfulSessionStatus());
+        long duration = measurePollingDuration();
+
+        assertThat(duration >= 700L, is(true));
+        assertThat(duration < 1000L, is(true));
+    }
+
+    @Test
+    public void getPollingStats_shouldCountPollsPerCompletedSession() {
+        poller.setPollingStrategy(new FixedPollingStrategy(Duration.ofMillis(10)));
+        connector.getResponses().add(createRunningSessionStatus());
+        connector.getResponses().add(createRunningSessionStatus());
+        connector.getResponses().add(createSuccessfulSessionStatus());
+        poller.fetchFinalSessionStatus(SESSION_ID, AUTHENTICATION_SESSION_PATH);
+
+        SessionPollingStats stats = poller.getPollingStats();
+        assertThat(stats.getCompletedSessions(), is(1L));
+        assertThat(stats.getPolls(), is(3L));
+        assertThat(stats.getPollsPerSession(), is(3.0));
+    }
+
+    @Test
+    public void pollRunningSessionPastDeadline_shouldThrowException() {
+        MobileIdConcurrentConnectorStub concurrentConnector = new MobileIdConcurrentConnectorStub(Integer.MAX_VALUE, createSuccessfulSessionStatus());
+        SessionStatusPoller deadlinePoller = new SessionStatusPoller(concurrentConnector);
+        deadlinePoller.setPollingStrategy(new FixedPollingStrategy(Duration.ofMillis(100)));
+
+        long startTime = System.currentTimeMillis();
+        try {
+            deadlinePoller.fetchFinalSessionStatus(SESSION_ID, AUTHENTICATION_SESSION_PATH, Deadline.after(Duration.ofMillis(350)));
+            fail("Expected deadline to be exceeded");
+        } catch (DeadlineExceededException e) {
+            long duration = System.currentTimeMillis() - startTime;
+            assertThat(duration >= 350L, is(true));
+            assertThat(duration < 1000L, is(true));
+            assertThat(concurrentConnector.getPollCount(SESSION_ID) <= 4, is(true));
+        }
+    }
+
+    @Test
+    public void pollSameSessionConcurrently_shouldShareSinglePollLoop() throws Exception {
+        MobileIdConcurrentConnectorStub concurrentConnector = new MobileIdConcurrentConnectorStub(1, createSuccessfulSessionStatus());
+        SessionStatusPoller sharedPoller = new SessionStatusPoller(concurrentConnector);
+
+        CompletableFuture<SessionStatus> first = CompletableFuture.supplyAsync(() -> sharedPoller.fetchFinalSessionStatus(SESSION_ID, AUTHENTICATION_SESSION_PATH));
+        CompletableFuture<SessionStatus> second = CompletableFuture.supplyAsync(() -> sharedPoller.fetchFinalSessionStatus(SESSION_ID, AUTHENTICATION_SESSION_PATH));
+
+        assertCompleteSessionStatus(first.get(5, TimeUnit.SECONDS));
+        assertCompleteSessionStatus(second.get(5, TimeUnit.SECONDS));
+        assertThat(concurrentConnector.getPollCount(SESSION_ID), is(2));
+    }
+
+    @Test
+    public void fetchCompletedSessionWithinGracePeriod_shouldNotPollAgain() {
+        connector.getResponses().add(createSuccessfulSessionStatus());
+        poller.fetchFinalSessionStatus(SESSION_ID, AUTHENTICATION_SESSION_PATH);
+        SessionStatus sessionStatus = poller.fetchFinalSessionStatus(SESSION_ID, AUTHENTICATION_SESSION_PATH);
+
+        assertThat(connector.getResponseNumber(), is(1));
+        assertCompleteSessionStatus(sessionStatus);
+    }
+
+    @Test(expected = UserCancellationException.class)
+    public void fetchCancelledSessionWithinGracePeriod_shouldThrowSameException() {
+        connector.getResponses().add(createUserCancellationStatus());
+        try {
+            poller.fetchFinalSessionStatus(SESSION_ID, AUTHENTICATION_SESSION_PATH);
+        } catch (UserCancellationException e) {
+            assertThat(connector.getResponseNumber(), is(1));
+        }
+        poller.fetchFinalSessionStatus(SESSION_ID, AUTHENTICATION_SESSION_PATH);
+    }
+
+    @Test
+    public void setResultGracePeriodToZero_shouldPollAgain() {
+        poller.setResultGracePeriodMillis(0);
+        connector.getResponses().add(createSuccessfulSessionStatus());
+        connector.getResponses().add(createSuccessfulSessionStatus());
+        poller.fetchFinalSessionStatus(SESSION_ID, AUTHENTICATION_SESSION_PATH);
+        poller.fetchFinalSessionStatus(SESSION_ID, AUTHENTICATION_SESSION_PATH);
+
+        assertThat(connector.getResponseNumber(), is(2));
+    }
+
     @Test(expected = SessionTimeoutException.class)
     public void getUserTimeoutResponse_shouldThrowException() {
         connector.getResponses().add(createTimeoutSessionStatus());
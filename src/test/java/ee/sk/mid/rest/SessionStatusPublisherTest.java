@@ -0,0 +1,224 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.exception.UserCancellationException;
+import ee.sk.mid.mock.MobileIdConcurrentConnectorStub;
+import ee.sk.mid.rest.dao.SessionStatus;
+import org.junit.After;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static ee.sk.mid.mock.SessionStatusDummy.createSuccessfulSessionStatus;
+import static ee.sk.mid.mock.SessionStatusDummy.createUserCancellationStatus;
+import static ee.sk.mid.mock.TestData.SESSION_ID;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class SessionStatusPublisherTest {
+
+    private MobileIdConcurrentConnectorStub connector;
+    private ScheduledSessionStatusPoller poller;
+
+    @After
+    public void tearDown() {
+        poller.close();
+    }
+
+    @Test
+    public void publishSessionStatus_shouldEmitStateChangesAndFinalStatus() throws Exception {
+        createPoller(3, createSuccessfulSessionStatus());
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+
+        poller.publishAuthenticationSessionStatus(SESSION_ID).subscribe(subscriber);
+
+        assertThat(subscriber.awaitTermination(), is(true));
+        assertThat(subscriber.statuses.size(), is(2));
+        assertThat(subscriber.statuses.get(0).getState(), is("RUNNING"));
+        assertThat(subscriber.statuses.get(1).getState(), is("COMPLETE"));
+        assertThat(subscriber.statuses.get(1).getResult(), is("OK"));
+        assertThat(subscriber.completed, is(true));
+        assertThat(connector.getPollCount(SESSION_ID), is(4));
+    }
+
+    @Test
+    public void publishSessionStatus_shouldRespectRequestedAmount() throws Exception {
+        createPoller(1, createSuccessfulSessionStatus());
+        RecordingSubscriber subscriber = new RecordingSubscriber(1);
+
+        poller.publishAuthenticationSessionStatus(SESSION_ID).subscribe(subscriber);
+        while (connector.getPollCount(SESSION_ID) < 2) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+
+        assertThat(subscriber.statuses.size(), is(1));
+        assertThat(subscriber.completed, is(false));
+
+        subscriber.subscription.request(1);
+
+        assertThat(subscriber.awaitTermination(), is(true));
+        assertThat(subscriber.statuses.size(), is(2));
+        assertThat(subscriber.completed, is(true));
+    }
+
+    @Test
+    public void publishSessionStatus_whenResultIsError_shouldSignalMobileIdException() throws Exception {
+        createPoller(1, createUserCancellationStatus());
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+
+        poller.publishSignatureSessionStatus(SESSION_ID).subscribe(subscriber);
+
+        assertThat(subscriber.awaitTermination(), is(true));
+        assertThat(subscriber.statuses.size(), is(1));
+        assertThat(subscriber.error, instanceOf(UserCancellationException.class));
+    }
+
+    @Test
+    public void publishSessionStatus_withNonPositiveRequest_shouldSignalError() throws Exception {
+        createPoller(Integer.MAX_VALUE, createSuccessfulSessionStatus());
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+
+        poller.publishAuthenticationSessionStatus(SESSION_ID).subscribe(subscriber);
+
+        assertThat(subscriber.awaitTermination(), is(true));
+        assertThat(subscriber.error, instanceOf(IllegalArgumentException.class));
+    }
+
+    @Test
+    public void cancelSubscription_shouldStopPolling() throws Exception {
+        createPoller(Integer.MAX_VALUE, createSuccessfulSessionStatus());
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+
+        poller.publishAuthenticationSessionStatus(SESSION_ID).subscribe(subscriber);
+        while (subscriber.statuses.isEmpty()) {
+            Thread.sleep(10);
+        }
+        subscriber.subscription.cancel();
+        Thread.sleep(50);
+        int pollsAfterCancel = connector.getPollCount(SESSION_ID);
+        Thread.sleep(200);
+
+        assertThat(connector.getPollCount(SESSION_ID), is(pollsAfterCancel));
+        assertThat(subscriber.error, is(nullValue()));
+        assertThat(subscriber.completed, is(false));
+    }
+
+    @Test
+    public void listenerSubscriber_shouldForwardStatusesToListener() throws Exception {
+        createPoller(2, createSuccessfulSessionStatus());
+        RecordingListener listener = new RecordingListener();
+
+        poller.publishAuthenticationSessionStatus(SESSION_ID).subscribe(new SessionStatusListenerSubscriber(listener));
+
+        assertThat(listener.finished.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(listener.statuses.size(), is(2));
+        assertThat(listener.finalStatus.getResult(), is("OK"));
+        assertThat(listener.error, is(nullValue()));
+    }
+
+    private void createPoller(int runningResponsesPerSession, SessionStatus finalSessionStatus) {
+        connector = new MobileIdConcurrentConnectorStub(runningResponsesPerSession, finalSessionStatus);
+        poller = new ScheduledSessionStatusPoller(connector, 2);
+        poller.setPollingSleepTimeoutMillis(10);
+        poller.setMaxJitterMillis(5);
+    }
+
+    private static class RecordingSubscriber implements Subscriber<SessionStatus> {
+
+        private final long initialRequest;
+        private final List<SessionStatus> statuses = new CopyOnWriteArrayList<>();
+        private final CountDownLatch terminated = new CountDownLatch(1);
+        private volatile Subscription subscription;
+        private volatile boolean completed;
+        private volatile Throwable error;
+
+        RecordingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(SessionStatus sessionStatus) {
+            statuses.add(sessionStatus);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error = error;
+            terminated.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            terminated.countDown();
+        }
+
+        boolean awaitTermination() throws InterruptedException {
+            return terminated.await(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static class RecordingListener implements SessionStatusListener {
+
+        private final List<SessionStatus> statuses = new CopyOnWriteArrayList<>();
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile SessionStatus finalStatus;
+        private volatile Throwable error;
+
+        @Override
+        public void onSessionStatus(SessionStatus sessionStatus) {
+            statuses.add(sessionStatus);
+        }
+
+        @Override
+        public void onFinalSessionStatus(SessionStatus sessionStatus) {
+            finalStatus = sessionStatus;
+            finished.countDown();
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error = error;
+            finished.countDown();
+        }
+    }
+}
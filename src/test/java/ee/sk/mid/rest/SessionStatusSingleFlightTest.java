@@ -0,0 +1,118 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import ee.sk.mid.mock.SessionStatusDummy;
+import ee.sk.mid.rest.dao.SessionStatus;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static ee.sk.mid.mock.SessionStatusDummy.createSuccessfulSessionStatus;
+import static ee.sk.mid.mock.TestData.AUTHENTICATION_SESSION_PATH;
+import static ee.sk.mid.mock.TestData.SESSION_ID;
+import static ee.sk.mid.mock.TestData.SIGNATURE_SESSION_PATH;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class SessionStatusSingleFlightTest {
+
+    private final SessionStatusSingleFlight singleFlight = new SessionStatusSingleFlight(0);
+
+    @Test
+    public void fetchSameSessionOnDifferentPaths_shouldPollEachPath() throws Exception {
+        CountDownLatch authenticationPolling = new CountDownLatch(1);
+        CountDownLatch signaturePolled = new CountDownLatch(1);
+        AtomicInteger polls = new AtomicInteger();
+        SessionStatus signatureStatus = createSuccessfulSessionStatus();
+
+        CompletableFuture<SessionStatus> authentication = CompletableFuture.supplyAsync(() -> fetch(AUTHENTICATION_SESSION_PATH, () -> {
+            polls.incrementAndGet();
+            authenticationPolling.countDown();
+            signaturePolled.await(5, TimeUnit.SECONDS);
+            return createSuccessfulSessionStatus();
+        }));
+        authenticationPolling.await(5, TimeUnit.SECONDS);
+
+        SessionStatus sessionStatus = fetch(SIGNATURE_SESSION_PATH, () -> {
+            polls.incrementAndGet();
+            signaturePolled.countDown();
+            return signatureStatus;
+        });
+
+        assertThat(sessionStatus, is(sameInstance(signatureStatus)));
+        authentication.get(5, TimeUnit.SECONDS);
+        assertThat(polls.get(), is(2));
+    }
+
+    @Test
+    public void interruptLeader_shouldLetWaiterTakeOverPolling() throws Exception {
+        CountDownLatch leaderPolling = new CountDownLatch(1);
+        SessionStatus takeoverStatus = createSuccessfulSessionStatus();
+
+        Thread leader = new Thread(() -> fetch(AUTHENTICATION_SESSION_PATH, () -> {
+            leaderPolling.countDown();
+            new CountDownLatch(1).await();
+            return createSuccessfulSessionStatus();
+        }));
+        leader.start();
+        leaderPolling.await(5, TimeUnit.SECONDS);
+
+        CompletableFuture<SessionStatus> waiter = CompletableFuture.supplyAsync(() -> fetch(AUTHENTICATION_SESSION_PATH, () -> takeoverStatus));
+        Thread.sleep(200);
+        leader.interrupt();
+
+        assertThat(waiter.get(5, TimeUnit.SECONDS), is(sameInstance(takeoverStatus)));
+        leader.join(5000);
+        assertThat(singleFlight.size(), is(0));
+    }
+
+    @Test
+    public void completedFlights_shouldBeRemovedAfterGracePeriod() throws Exception {
+        SessionStatusSingleFlight graceSingleFlight = new SessionStatusSingleFlight(50);
+        graceSingleFlight.fetch("session-1", AUTHENTICATION_SESSION_PATH, Deadline.none(), SessionStatusDummy::createSuccessfulSessionStatus);
+        graceSingleFlight.fetch("session-2", AUTHENTICATION_SESSION_PATH, Deadline.none(), SessionStatusDummy::createSuccessfulSessionStatus);
+        assertThat(graceSingleFlight.size(), is(2));
+
+        Thread.sleep(100);
+        graceSingleFlight.fetch("session-3", AUTHENTICATION_SESSION_PATH, Deadline.none(), SessionStatusDummy::createSuccessfulSessionStatus);
+
+        assertThat(graceSingleFlight.size(), is(1));
+    }
+
+    private SessionStatus fetch(String path, SessionStatusSingleFlight.FinalSessionStatusSupplier poll) {
+        try {
+            return singleFlight.fetch(SESSION_ID, path, Deadline.none(), poll);
+        } catch (InterruptedException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package ee.sk.mid.rest;
+
+/*-
+ * #%L
+ * Mobile ID sample Java client
+ * %%
+ * Copyright (C) 2018 - 2019 SK ID Solutions AS
+ * %%
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class VegasConcurrencyLimitTest {
+
+    private static final long RTT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    public void onSample_whenLatencyStaysAtNoLoadRtt_shouldIncreaseLimit() {
+        VegasConcurrencyLimit limit = new VegasConcurrencyLimit(10, 1, 100);
+
+        for (int i = 0; i < 10; i++) {
+            limit.onSample(RTT_NANOS, limit.getLimit(), false);
+        }
+
+        assertThat(limit.getLimit(), greaterThan(10));
+    }
+
+    @Test
+    public void onSample_whenLatencyGrows_shouldDecreaseLimit() {
+        VegasConcurrencyLimit limit = new VegasConcurrencyLimit(50, 1, 100);
+        limit.onSample(RTT_NANOS, 50, false);
+        int limitAtNoLoad = limit.getLimit();
+
+        for (int i = 0; i < 10; i++) {
+            limit.onSample(RTT_NANOS * 2, limit.getLimit(), false);
+        }
+
+        assertThat(limit.getLimit(), lessThan(limitAtNoLoad));
+    }
+
+    @Test
+    public void onSample_whenRequestsAreFew_shouldNotIncreaseLimit() {
+        VegasConcurrencyLimit limit = new VegasConcurrencyLimit(20, 1, 100);
+
+        for (int i = 0; i < 10; i++) {
+            limit.onSample(RTT_NANOS, 2, false);
+        }
+
+        assertThat(limit.getLimit(), is(20));
+    }
+
+    @Test
+    public void onSample_whenRequestIsDropped_shouldDecreaseLimitDownToMinimum() {
+        VegasConcurrencyLimit limit = new VegasConcurrencyLimit(10, 3, 100);
+
+        limit.onSample(RTT_NANOS, 10, true);
+        assertThat(limit.getLimit(), is(9));
+
+        for (int i = 0; i < 20; i++) {
+            limit.onSample(RTT_NANOS, 10, true);
+        }
+        assertThat(limit.getLimit(), is(3));
+    }
+
+    @Test
+    public void onSample_shouldNotExceedMaximumLimit() {
+        VegasConcurrencyLimit limit = new VegasConcurrencyLimit(10, 1, 15);
+
+        for (int i = 0; i < 20; i++) {
+            limit.onSample(RTT_NANOS, 15, false);
+        }
+
+        assertThat(limit.getLimit(), is(15));
+    }
+}